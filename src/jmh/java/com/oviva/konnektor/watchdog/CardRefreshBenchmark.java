@@ -0,0 +1,166 @@
+package com.oviva.konnektor.watchdog;
+
+import com.oviva.epa.client.KonnektorService;
+import com.oviva.epa.client.model.PinStatus;
+import com.oviva.epa.client.model.SmcbCard;
+import com.oviva.konnektor.watchdog.probe.CardState;
+import com.oviva.konnektor.watchdog.probe.CardStatusChecker;
+import com.oviva.konnektor.watchdog.probe.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Refreshes the cards of a Konnektor against an in-memory {@link KonnektorService} that answers
+ * every call after {@code latencyMillis}, once listing the full inventory and once only checking
+ * the PIN status of all cards concurrently.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CardRefreshBenchmark {
+
+  @Param({"10", "100"})
+  int cards;
+
+  @Param({"0", "5"})
+  int latencyMillis;
+
+  private ExecutorService executor;
+  private KonnektorProbe inventory;
+  private KonnektorProbe pinChecks;
+
+  @Setup
+  public void setup() {
+    executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    var service = new StubKonnektorService(cards, Duration.ofMillis(latencyMillis));
+
+    // lists all cards on every probe
+    inventory = probe(service, Duration.ofNanos(1), Duration.ofDays(1));
+
+    // lists once, then checks the PIN status of every card on each probe
+    pinChecks = probe(service, Duration.ofDays(1), Duration.ofNanos(1));
+    pinChecks.probe();
+  }
+
+  @TearDown
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Benchmark
+  public List<CardState> listInventory() {
+    return inventory.probe();
+  }
+
+  @Benchmark
+  public List<CardState> checkPinStatus() {
+    return pinChecks.probe();
+  }
+
+  private KonnektorProbe probe(
+      KonnektorService service, Duration inventoryInterval, Duration verifiedCardInterval) {
+    var konnektor = "https://10.0.0.1:443";
+    var config =
+        new Main.KonnektorConfig(
+            URI.create(konnektor),
+            "127.0.0.1",
+            3128,
+            new Main.Credentials(Path.of("credentials.p12"), "0000"),
+            "a",
+            "m",
+            "c",
+            "admin",
+            4,
+            Duration.ofSeconds(10),
+            Duration.ofSeconds(60),
+            inventoryInterval,
+            verifiedCardInterval,
+            Duration.ofDays(1),
+            Duration.ofSeconds(5),
+            Duration.ofSeconds(15),
+            3,
+            Duration.ofMinutes(5));
+
+    var clock = Clock.systemUTC();
+    var registry = new SimpleMeterRegistry();
+    var operations =
+        new OperationMetrics(konnektor, new OperationMetrics.Config(List.of(), false), registry);
+    var connections =
+        new ConnectionCache(
+            konnektor, () -> null, conn -> service, Duration.ofDays(1), clock, operations, registry);
+
+    return new KonnektorProbe(
+        config,
+        connections,
+        new CardStatusChecker(
+            executor, config.cardParallelism(), config.cardTimeout(), Duration.ofMinutes(10)),
+        new CircuitBreaker(konnektor, 3, Duration.ofMinutes(5), clock, registry),
+        operations,
+        clock);
+  }
+
+  private static final class StubKonnektorService implements KonnektorService {
+
+    private final List<SmcbCard> cards;
+    private final Duration latency;
+
+    private StubKonnektorService(int cards, Duration latency) {
+      this.cards =
+          IntStream.range(0, cards)
+              .mapToObj(
+                  i ->
+                      new SmcbCard(
+                          "card-handle-%08d".formatted(i),
+                          "1-SMC-B-Testkarte-883110000%06d".formatted(i),
+                          "Praxis Dr. med. Erika Mustermann %d".formatted(i),
+                          null,
+                          null,
+                          true))
+              .toList();
+      this.latency = latency;
+    }
+
+    @Override
+    public List<SmcbCard> listSmcbCards() {
+      // the real client reads certificates and PIN status card by card
+      cards.forEach(c -> sleep());
+      return cards;
+    }
+
+    @Override
+    public PinStatus verifySmcPin(String handle) {
+      sleep();
+      return PinStatus.VERIFIED;
+    }
+
+    @Override
+    public byte[] authSignRsaPss(String handle, byte[] bytesToSign) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public byte[] authSignEcdsa(String handle, byte[] bytesToSign) {
+      throw new UnsupportedOperationException();
+    }
+
+    private void sleep() {
+      if (!latency.isZero()) {
+        LockSupport.parkNanos(latency.toNanos());
+      }
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package com.oviva.konnektor.watchdog;
+
+import com.oviva.konnektor.watchdog.handlers.ExpositionFormat;
+import com.oviva.konnektor.watchdog.handlers.RegistryMetrics;
+import com.oviva.konnektor.watchdog.handlers.ScrapeCache;
+import com.oviva.konnektor.watchdog.probe.CardState;
+import com.oviva.konnektor.watchdog.probe.CardStatus;
+import com.oviva.konnektor.watchdog.probe.ProbeSnapshot;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Renders {@code /metrics} for a Konnektor with the given number of {@code card_status} series, as
+ * {@link com.oviva.konnektor.watchdog.handlers.MetricsHandler} does through its {@link ScrapeCache}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScrapeBenchmark {
+
+  @Param({"10", "1000", "10000"})
+  int cards;
+
+  private ProbeSnapshot snapshot;
+  // the same cards, one of them with a different status
+  private ProbeSnapshot changed;
+  private CardCheckGauges gauges;
+  private RegistryMetrics metrics;
+  private ScrapeCache cache;
+  private final AtomicLong generation = new AtomicLong();
+
+  @Setup
+  public void setup() {
+    var konnektor = "https://10.0.0.1:443";
+    var now = Instant.now();
+    snapshot =
+        new ProbeSnapshot(
+            konnektor,
+            1,
+            true,
+            IntStream.range(0, cards).mapToObj(ScrapeBenchmark::card).toList(),
+            now,
+            now);
+
+    var registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    gauges =
+        new CardCheckGauges(
+            konnektor,
+            registry,
+            new SeriesLimits(
+                "card_status", new SeriesLimits.Config(cards, cards), registry));
+    gauges.accept(snapshot);
+
+    var cards = new ArrayList<>(snapshot.cards());
+    var first = cards.get(0);
+    cards.set(
+        0,
+        new CardState(
+            first.handle(), first.holderName(), first.telematikId(), CardStatus.UNKNOWN));
+    changed = new ProbeSnapshot(konnektor, 2, true, cards, now, now);
+
+    metrics = new RegistryMetrics(registry.getPrometheusRegistry());
+    cache = new ScrapeCache(metrics, generation::get, Duration.ofDays(1), Clock.systemUTC());
+  }
+
+  @Benchmark
+  public byte[] renderText() {
+    return metrics.scrape(ExpositionFormat.TEXT);
+  }
+
+  @Benchmark
+  public byte[] renderOpenMetrics() {
+    return metrics.scrape(ExpositionFormat.OPENMETRICS);
+  }
+
+  @Benchmark
+  public byte[] renderProtobuf() {
+    return metrics.scrape(ExpositionFormat.PROTOBUF);
+  }
+
+  /** a scrape after a probe changed something, renders and gzips */
+  @Benchmark
+  public ScrapeCache.Payload scrapeChanged() {
+    generation.incrementAndGet();
+    return cache.get(ExpositionFormat.TEXT);
+  }
+
+  /** a scrape while nothing changed */
+  @Benchmark
+  public ScrapeCache.Payload scrapeUnchanged() {
+    return cache.get(ExpositionFormat.TEXT);
+  }
+
+  /** a probe that found the same cards */
+  @Benchmark
+  public void refreshUnchanged() {
+    gauges.accept(snapshot);
+  }
+
+  /** a probe that found one card in a different status, and the next one that reverted it */
+  @Benchmark
+  public void refreshChanged() {
+    gauges.accept(changed);
+    gauges.accept(snapshot);
+  }
+
+  private static CardState card(int i) {
+    return new CardState(
+        "card-handle-%08d".formatted(i),
+        "Praxis Dr. med. Erika Mustermann-Lüdenscheid %d".formatted(i),
+        "1-SMC-B-Testkarte-883110000%06d".formatted(i),
+        i % 10 == 0 ? CardStatus.NOT_VERIFIED : CardStatus.VERIFIED);
+  }
+}
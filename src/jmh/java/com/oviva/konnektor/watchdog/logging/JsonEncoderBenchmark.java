@@ -0,0 +1,102 @@
+package com.oviva.konnektor.watchdog.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.slf4j.event.KeyValuePair;
+
+/**
+ * Throughput of {@link JsonEncoder#encode}, run with {@code -prof gc} to see the allocation rate
+ * per event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonEncoderBenchmark {
+
+  private final JsonEncoder encoder = new JsonEncoder();
+
+  private LoggingEvent plain;
+  private LoggingEvent keyValue;
+  private LoggingEvent stackTrace;
+
+  @Setup
+  public void setup() {
+    encoder.headerBytes();
+
+    var context = new LoggerContext();
+    // without an MDC adapter every event would take the encoder's fallback path
+    context.setMDCAdapter(new LogbackMDCAdapter());
+    var logger = context.getLogger("com.oviva.konnektor.watchdog.probe.ProbeEngine");
+
+    plain =
+        new LoggingEvent(
+            null,
+            logger,
+            Level.INFO,
+            "updated cards of konnektor {}, found {} cards",
+            null,
+            new Object[] {"https://10.0.0.1:443", 12});
+
+    keyValue =
+        new LoggingEvent(
+            null,
+            logger,
+            Level.INFO,
+            "probing konnektor {} again in {}",
+            null,
+            new Object[] {"https://10.0.0.1:443", "PT3M"});
+    keyValue.addKeyValuePair(new KeyValuePair("konnektor", "https://10.0.0.1:443"));
+    keyValue.addKeyValuePair(new KeyValuePair("card_handle", "card-handle-00000001"));
+
+    stackTrace =
+        new LoggingEvent(
+            null,
+            logger,
+            Level.ERROR,
+            "failed to probe konnektor {}",
+            new IllegalStateException("connection refused", new RuntimeException("proxy down")),
+            new Object[] {"https://10.0.0.1:443"});
+    stackTrace.addKeyValuePair(new KeyValuePair("konnektor", "https://10.0.0.1:443"));
+    stackTrace.setCallerData(new Throwable().getStackTrace());
+
+    // formatted lazily and then cached by the event, as in the appender
+    plain.getFormattedMessage();
+    keyValue.getFormattedMessage();
+    stackTrace.getFormattedMessage();
+  }
+
+  @TearDown
+  public void tearDown() {
+    encoder.footerBytes();
+  }
+
+  @Benchmark
+  public byte[] plain() {
+    return encoder.encode(plain);
+  }
+
+  /** as written by {@link JsonConsoleAppender}, without copying the encoded event */
+  @Benchmark
+  public void plainToSink(Blackhole blackhole) throws IOException {
+    encoder.encode(plain, (bytes, offset, length) -> blackhole.consume(bytes));
+  }
+
+  @Benchmark
+  public byte[] keyValue() {
+    return encoder.encode(keyValue);
+  }
+
+  @Benchmark
+  public byte[] stackTrace() {
+    return encoder.encode(stackTrace);
+  }
+}
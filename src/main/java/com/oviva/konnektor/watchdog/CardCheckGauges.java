@@ -1,111 +1,246 @@
 package com.oviva.konnektor.watchdog;
 
-import com.oviva.epa.client.KonnektorService;
-import com.oviva.epa.client.KonnektorServiceBuilder;
-import com.oviva.epa.client.konn.KonnektorConnection;
-import com.oviva.epa.client.konn.KonnektorConnectionFactory;
-import com.oviva.epa.client.model.KonnektorException;
-import com.oviva.epa.client.model.SmcbCard;
-import io.micrometer.core.instrument.MultiGauge;
+import com.oviva.konnektor.watchdog.probe.CardState;
+import com.oviva.konnektor.watchdog.probe.CardStatus;
+import com.oviva.konnektor.watchdog.probe.ProbeSnapshot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Tags;
-import jakarta.ws.rs.ProcessingException;
 import java.util.*;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-class CardCheckGauges implements Iterable<MultiGauge.Row<?>> {
-
-  private Logger logger = LoggerFactory.getLogger(CardCheckGauges.class);
-
-  private final Main.KonnektorConfig config;
-  private final KonnektorConnectionFactory konnektorFactory;
-
-  CardCheckGauges(Main.KonnektorConfig config, KonnektorConnectionFactory konnektorFactory) {
-    this.config = config;
-    this.konnektorFactory = konnektorFactory;
+import java.util.function.Consumer;
+
+/**
+ * The {@code card_status} gauges of a Konnektor. Every snapshot is diffed against the previous one
+ * by card handle, only rows of inserted or removed cards are (de)registered, all others are updated
+ * in place. Changes of the inventory are counted, unless they are caused by a failed probe.
+ *
+ * <p>Rows are bounded by the {@link SeriesLimits} shared with all other Konnektors. Cards with a
+ * row keep it, cards that do not get one are reported together in one overflow row with the worst
+ * of their statuses, and get a row of their own once a slot is free again.
+ *
+ * <p>Snapshots of one Konnektor are published one at a time, {@link #close()} may be called
+ * concurrently.
+ */
+class CardCheckGauges implements Consumer<ProbeSnapshot>, AutoCloseable {
+
+  private static final Comparator<CardState> BY_HANDLE = Comparator.comparing(CardState::handle);
+
+  private final String konnektor;
+  private final MeterRegistry registry;
+  private final SeriesLimits limits;
+
+  private final Counter inserted;
+  private final Counter removed;
+  private final Map<CardStatus, Counter> pinStateChanges = new EnumMap<>(CardStatus.class);
+
+  private final Map<String, Row> rows = new HashMap<>();
+
+  // cards without a row, each counted as dropped once
+  private Set<String> overflowed = Set.of();
+  private Row overflow;
+
+  // cards of the last successful (or restored) probe, null until there was one
+  private Map<String, CardState> inventory;
+
+  CardCheckGauges(String konnektor, MeterRegistry registry, SeriesLimits limits) {
+    this.konnektor = konnektor;
+    this.registry = registry;
+    this.limits = limits;
+
+    inserted =
+        Counter.builder("card_inserted")
+            .description("cards that appeared in the konnektor")
+            .tag("konnektor", konnektor)
+            .register(registry);
+    removed =
+        Counter.builder("card_removed")
+            .description("cards that disappeared from the konnektor")
+            .tag("konnektor", konnektor)
+            .register(registry);
+    for (var status : CardStatus.values()) {
+      pinStateChanges.put(
+          status,
+          Counter.builder("card_pin_state_changes")
+              .description("changes of the status of a card, by the new status")
+              .tag("konnektor", konnektor)
+              .tag("to", status.name().toLowerCase(Locale.ROOT))
+              .register(registry));
+    }
   }
 
   @Override
-  public Iterator<MultiGauge.Row<?>> iterator() {
-    try {
-      logger.atDebug().log("connecting to {}", config.konnektorUri());
-      var conn = konnektorFactory.connect();
-
-      var konnektorService = buildService(config, conn);
-
-      logger.atDebug().log("fetching cards from {}", config.konnektorUri());
-      var cards = konnektorService.listSmcbCards();
+  public synchronized void accept(ProbeSnapshot snapshot) {
+    if (!konnektor.equals(snapshot.konnektor())) {
+      return;
+    }
+    if (!snapshot.up() && !snapshot.stale()) {
+      // the cards are unknown, not removed
+      removeRows(Set.copyOf(rows.keySet()));
+      // keeps the overflowed cards, they are not counted as dropped again
+      removeOverflow();
+      return;
+    }
 
-      var l =
-          cards.stream()
-              .map(this::checkCard)
-              // explicit .collect(...) to make Java generics work
-              .collect(ArrayList<MultiGauge.Row<?>>::new, ArrayList::add, ArrayList::addAll);
+    var cards = new HashMap<String, CardState>(snapshot.cards().size());
+    for (var card : snapshot.cards()) {
+      cards.put(card.handle(), card);
+    }
+    if (inventory != null) {
+      countChanges(inventory, cards);
+    }
+    inventory = cards;
+
+    var gone = new HashSet<>(rows.keySet());
+    gone.removeAll(cards.keySet());
+    removeRows(gone);
+
+    var added = new ArrayList<CardState>();
+    for (var card : cards.values()) {
+      var row = rows.get(card.handle());
+      if (row == null) {
+        added.add(card);
+      } else if (!row.sameTags(card)) {
+        // tags changed, e.g. the card was renamed, the row keeps its slot
+        registry.remove(row.gauge);
+        rows.put(card.handle(), register(card));
+      } else {
+        row.update(card);
+      }
+    }
 
-      logger.atInfo().log(
-          "updated cards of konnektor {}, found {} cards", config.konnektorUri(), l.size());
+    // in a stable order, the same cards get the free slots on every probe
+    added.sort(BY_HANDLE);
+    var excess = new ArrayList<CardState>();
+    for (var card : added) {
+      if (rows.size() < limits.maxPerKonnektor() && limits.tryAcquire()) {
+        rows.put(card.handle(), register(card));
+      } else {
+        excess.add(card);
+      }
+    }
+    updateOverflow(excess);
+  }
 
-      return l.iterator();
-    } catch (KonnektorException | ProcessingException e) {
-      logger
-          .atError()
-          .setCause(e)
-          .log("failed to update cards of konnektor {}", config.konnektorUri());
-      return Collections.emptyIterator();
+  private void countChanges(Map<String, CardState> before, Map<String, CardState> after) {
+    for (var card : after.values()) {
+      var previous = before.get(card.handle());
+      if (previous == null) {
+        inserted.increment();
+      } else if (previous.status() != card.status()) {
+        pinStateChanges.get(card.status()).increment();
+      }
+    }
+    for (var handle : before.keySet()) {
+      if (!after.containsKey(handle)) {
+        removed.increment();
+      }
     }
   }
 
-  private KonnektorService buildService(Main.KonnektorConfig cfg, KonnektorConnection conn) {
+  private void updateOverflow(List<CardState> excess) {
+    if (excess.isEmpty()) {
+      overflowed = Set.of();
+      removeOverflow();
+      return;
+    }
+
+    var handles = new HashSet<String>(excess.size());
+    var worst = CardStatus.VERIFIED;
+    for (var card : excess) {
+      handles.add(card.handle());
+      if (!overflowed.contains(card.handle())) {
+        limits.dropped();
+      }
+      worst = worse(worst, card.status());
+    }
+    overflowed = handles;
 
-    var userAgent = userAgent();
-    logger.atDebug().log("client using user-agent: {}", userAgent);
+    if (overflow == null) {
+      overflow = new Row(SeriesLimits.OVERFLOW, SeriesLimits.OVERFLOW, worst);
+      overflow.gauge = register(overflow, SeriesLimits.OVERFLOW);
+    } else {
+      overflow.value = worst.value();
+    }
+  }
 
-    return KonnektorServiceBuilder.newBuilder()
-        .connection(conn)
-        .workplaceId(cfg.workplaceId())
-        .clientSystemId(cfg.clientSystemId())
-        .mandantId(cfg.mandantId())
-        .userId(cfg.userId())
-        .build();
+  private void removeOverflow() {
+    if (overflow != null) {
+      registry.remove(overflow.gauge);
+      overflow = null;
+    }
   }
 
-  private String userAgent() {
-    var agent =
-        Optional.ofNullable(Main.class.getPackage().getImplementationTitle())
-            .orElse("konnektor-watchdog")
-            .toUpperCase(Locale.ROOT)
-            .replaceAll("[^A-Z0-9]", "_");
+  // a card that is not verified needs action, an unknown one maybe
+  private static CardStatus worse(CardStatus a, CardStatus b) {
+    if (a == CardStatus.NOT_VERIFIED || b == CardStatus.NOT_VERIFIED) {
+      return CardStatus.NOT_VERIFIED;
+    }
+    if (a == CardStatus.UNKNOWN || b == CardStatus.UNKNOWN) {
+      return CardStatus.UNKNOWN;
+    }
+    return CardStatus.VERIFIED;
+  }
 
-    var version =
-        Optional.ofNullable(Main.class.getPackage().getImplementationVersion()).orElse("0.0.1");
-    return "%s/%s".formatted(agent, version);
+  private Row register(CardState card) {
+    var row =
+        new Row(limits.label(card.holderName()), limits.label(card.telematikId()), card.status());
+    row.gauge = register(row, card.handle());
+    return row;
   }
 
-  private MultiGauge.Row<SmcbCard> checkCard(SmcbCard card) {
+  private Gauge register(Row row, String handle) {
     var tags =
         Tags.of(
             "holder",
-            card.holderName(),
+            row.holder,
             "card_handle",
-            card.handle(),
+            handle,
             "telematik_id",
-            card.telematikId());
-    try {
-      return MultiGauge.Row.of(
-          tags,
-          card,
-          (SmcbCard c) -> {
-            try {
-              if (card.pinVerified()) {
-                return 1.0;
-              }
-              return 0.0;
-            } catch (KonnektorException e) {
-              return 0.0;
-            }
-          });
-    } catch (Exception e) {
-      return MultiGauge.Row.of(tags, null, s -> 0.0);
+            row.telematikId,
+            "konnektor",
+            konnektor);
+    return Gauge.builder("card_status", row, r -> r.value)
+        .description("the status of all plugged in cards")
+        .tags(tags)
+        .strongReference(true)
+        .register(registry);
+  }
+
+  private void removeRows(Set<String> handles) {
+    for (var handle : handles) {
+      registry.remove(rows.remove(handle).gauge);
+    }
+    limits.release(handles.size());
+  }
+
+  /** removes all rows and returns their slots, e.g. once the Konnektor was removed */
+  @Override
+  public synchronized void close() {
+    removeRows(Set.copyOf(rows.keySet()));
+    updateOverflow(List.of());
+  }
+
+  private final class Row {
+    // interned, compared on every probe
+    private final String holder;
+    private final String telematikId;
+    private volatile double value;
+    private Gauge gauge;
+
+    private Row(String holder, String telematikId, CardStatus status) {
+      this.holder = holder;
+      this.telematikId = telematikId;
+      this.value = status.value();
+    }
+
+    private boolean sameTags(CardState card) {
+      return holder.equals(limits.label(card.holderName()))
+          && telematikId.equals(limits.label(card.telematikId()));
+    }
+
+    private void update(CardState card) {
+      this.value = card.status().value();
     }
   }
 }
@@ -0,0 +1,271 @@
+package com.oviva.konnektor.watchdog;
+
+import com.oviva.epa.client.konn.KonnektorConnectionFactory;
+import com.oviva.epa.client.model.KonnektorException;
+import com.oviva.konnektor.watchdog.events.CardEvent;
+import com.oviva.konnektor.watchdog.logging.RepeatingErrorLog;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import javax.xml.datatype.XMLGregorianCalendar;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+import telematik.ws.conn.connectorcommon.xsd.v5_0.Status;
+import telematik.ws.conn.connectorcontext.xsd.v2_0.ContextType;
+import telematik.ws.conn.eventservice.wsdl.v6_1.EventServicePortType;
+import telematik.ws.conn.eventservice.wsdl.v6_1.FaultMessage;
+import telematik.ws.conn.eventservice.xsd.v6_1.RenewSubscriptions;
+import telematik.ws.conn.eventservice.xsd.v6_1.Subscribe;
+import telematik.ws.conn.eventservice.xsd.v6_1.SubscriptionType;
+import telematik.ws.conn.eventservice.xsd.v6_1.Unsubscribe;
+
+/**
+ * Keeps a subscription for the card events of a Konnektor, events are delivered to the watchdog's
+ * {@link com.oviva.konnektor.watchdog.events.CetpReceiver CETP receiver} and routed back here by
+ * their subscription ID. The subscription is renewed half way to its termination, a failed
+ * subscription is retried every minute. Events may have been missed while there was no
+ * subscription, {@code onResubscribed} runs once there is one again.
+ *
+ * <p>Subscribing is rare, every call connects to the Konnektor anew instead of sharing the
+ * connection of the probes.
+ */
+class CardEventSubscription implements AutoCloseable {
+
+  static final String TOPIC = "CARD";
+
+  private static final Logger logger = LoggerFactory.getLogger(CardEventSubscription.class);
+
+  private static final Duration RETRY = Duration.ofMinutes(1);
+  // if the Konnektor does not say how long the subscription lasts
+  private static final Duration DEFAULT_RENEWAL = Duration.ofMinutes(30);
+
+  /** routes the events of all Konnektors to their subscription by subscription ID */
+  static class Router implements Consumer<CardEvent> {
+
+    private final Map<String, Consumer<CardEvent>> routes = new ConcurrentHashMap<>();
+
+    @Override
+    public void accept(CardEvent event) {
+      var route = event.subscriptionId() == null ? null : routes.get(event.subscriptionId());
+      if (route == null) {
+        logger.atDebug().log("ignoring event of unknown subscription {}", event.subscriptionId());
+        return;
+      }
+      route.accept(event);
+    }
+  }
+
+  private final String konnektor;
+  private final KonnektorConnectionFactory factory;
+  private final ContextType context;
+  private final String eventTo;
+  private final Router router;
+  private final Consumer<CardEvent> handler;
+  private final Runnable onResubscribed;
+  private final ExecutorService executor;
+  private final ScheduledExecutorService scheduler;
+  private final OperationMetrics operations;
+  private final Clock clock;
+  private final RepeatingErrorLog errors;
+
+  // refresh() runs one at a time, close() concurrently to it
+  private volatile String subscriptionId;
+  private volatile ScheduledFuture<?> next;
+  private volatile boolean closed;
+  // events may have been missed since
+  private boolean lapsed;
+
+  CardEventSubscription(
+      String konnektor,
+      KonnektorConnectionFactory factory,
+      ContextType context,
+      String eventTo,
+      Router router,
+      Consumer<CardEvent> handler,
+      Runnable onResubscribed,
+      ExecutorService executor,
+      ScheduledExecutorService scheduler,
+      OperationMetrics operations,
+      Clock clock,
+      Duration errorWindow) {
+    this.konnektor = konnektor;
+    this.factory = factory;
+    this.context = context;
+    this.eventTo = eventTo;
+    this.router = router;
+    this.handler = handler;
+    this.onResubscribed = onResubscribed;
+    this.executor = executor;
+    this.scheduler = scheduler;
+    this.operations = operations;
+    this.clock = clock;
+    this.errors = new RepeatingErrorLog(logger, Level.WARN, "konnektor", errorWindow, clock);
+  }
+
+  void start() {
+    executor.execute(this::refresh);
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    var scheduled = next;
+    if (scheduled != null) {
+      scheduled.cancel(false);
+    }
+    var id = subscriptionId;
+    if (id == null) {
+      return;
+    }
+    router.routes.remove(id);
+    try {
+      call(
+          port ->
+              port.unsubscribe(
+                      new Unsubscribe()
+                          .withContext(context)
+                          .withSubscriptionID(id)
+                          .withEventTo(eventTo))
+                  .getStatus());
+    } catch (RuntimeException e) {
+      // it expires anyway
+      logger.atDebug().log("failed to unsubscribe from konnektor {}: {}", konnektor, e.toString());
+    }
+  }
+
+  /** renews the subscription or subscribes anew, then schedules the next refresh */
+  private void refresh() {
+    if (closed) {
+      return;
+    }
+    Duration delay;
+    try {
+      var terminates = subscriptionId == null ? subscribe() : renewOrSubscribe();
+      errors.resolved(konnektor);
+      delay = renewalDelay(terminates);
+    } catch (RuntimeException e) {
+      errors.log(konnektor, e, "failed to subscribe to events of konnektor {}", konnektor);
+      lapsed = true;
+      delay = RETRY;
+    }
+    schedule(delay);
+  }
+
+  private Instant renewOrSubscribe() {
+    var id = subscriptionId;
+    try {
+      var renewals =
+          operations.record(
+              OperationMetrics.SUBSCRIBE,
+              () ->
+                  call(
+                      port ->
+                          port.renewSubscriptions(
+                              new RenewSubscriptions()
+                                  .withContext(context)
+                                  .withSubscriptionID(id))));
+      checkOk(renewals.getStatus());
+      if (renewals.getSubscribeRenewals() != null) {
+        for (var r : renewals.getSubscribeRenewals().getSubscriptionRenewal()) {
+          if (id.equals(r.getSubscriptionID())) {
+            return instant(r.getTerminationTime());
+          }
+        }
+      }
+      throw new KonnektorException("subscription %s was not renewed".formatted(id));
+    } catch (RuntimeException e) {
+      logger
+          .atInfo()
+          .addKeyValue("konnektor", konnektor)
+          .log("renewing subscription {} failed, subscribing again: {}", id, e.toString());
+      router.routes.remove(id);
+      subscriptionId = null;
+      lapsed = true;
+      return subscribe();
+    }
+  }
+
+  private Instant subscribe() {
+    var response =
+        operations.record(
+            OperationMetrics.SUBSCRIBE,
+            () ->
+                call(
+                    port ->
+                        port.subscribe(
+                            new Subscribe()
+                                .withContext(context)
+                                .withSubscription(
+                                    new SubscriptionType()
+                                        .withEventTo(eventTo)
+                                        .withTopic(TOPIC)))));
+    checkOk(response.getStatus());
+    var id = response.getSubscriptionID();
+    if (id == null) {
+      throw new KonnektorException("konnektor returned no subscription ID");
+    }
+    router.routes.put(id, handler);
+    subscriptionId = id;
+    logger
+        .atInfo()
+        .addKeyValue("konnektor", konnektor)
+        .log("subscribed to card events of konnektor {}, subscription {}", konnektor, id);
+    if (lapsed) {
+      lapsed = false;
+      onResubscribed.run();
+    }
+    return instant(response.getTerminationTime());
+  }
+
+  private Duration renewalDelay(Instant terminates) {
+    if (terminates == null) {
+      return DEFAULT_RENEWAL;
+    }
+    var half = Duration.between(clock.instant(), terminates).dividedBy(2);
+    return half.compareTo(RETRY) < 0 ? RETRY : half;
+  }
+
+  private void schedule(Duration delay) {
+    if (closed) {
+      return;
+    }
+    try {
+      next =
+          scheduler.schedule(
+              () -> executor.execute(this::refresh), delay.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      // shutting down
+    }
+  }
+
+  private interface Call<T> {
+    T apply(EventServicePortType port) throws FaultMessage;
+  }
+
+  private <T> T call(Call<T> call) {
+    try {
+      return call.apply(factory.connect().eventService());
+    } catch (FaultMessage e) {
+      throw new KonnektorException("event service call failed: " + e.getMessage(), e);
+    }
+  }
+
+  private static void checkOk(Status status) {
+    if (status != null && !"OK".equals(status.getResult())) {
+      throw new KonnektorException("event service returned status " + status.getResult());
+    }
+  }
+
+  private static Instant instant(XMLGregorianCalendar calendar) {
+    return calendar == null ? null : calendar.toGregorianCalendar().toInstant();
+  }
+}
@@ -0,0 +1,84 @@
+package com.oviva.konnektor.watchdog;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.security.cert.X509Certificate;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * When the client certificates of a keystore expire, per alias. The gauges read the certificate of
+ * the current keys on every scrape, a rotated certificate with the same alias shows up without a
+ * gap. Aliases that appear or disappear are (de)registered by {@link #update()}.
+ */
+class ClientCertificateGauges implements AutoCloseable {
+
+  private final ReloadingKeyManager keys;
+  private final MeterRegistry registry;
+  private final Clock clock;
+  private final String keystore;
+
+  private final Map<String, List<Meter>> meters = new HashMap<>();
+
+  ClientCertificateGauges(ReloadingKeyManager keys, MeterRegistry registry, Clock clock) {
+    this.keys = keys;
+    this.registry = registry;
+    this.clock = clock;
+    this.keystore = keys.path().toString();
+    update();
+  }
+
+  /** called after the keys were swapped, by one thread at a time */
+  synchronized void update() {
+    var aliases = keys.certificates().keySet();
+    for (var alias : List.copyOf(meters.keySet())) {
+      if (!aliases.contains(alias)) {
+        meters.remove(alias).forEach(registry::remove);
+      }
+    }
+    for (var alias : aliases) {
+      meters.computeIfAbsent(alias, this::register);
+    }
+  }
+
+  private List<Meter> register(String alias) {
+    var registered = new ArrayList<Meter>();
+    registered.add(
+        Gauge.builder(
+                "client_certificate_not_after_timestamp_seconds",
+                this,
+                g -> g.notAfterMillis(alias) / 1000.0)
+            .description("unix time the client certificate expires")
+            .tag("keystore", keystore)
+            .tag("alias", alias)
+            .register(registry));
+    registered.add(
+        Gauge.builder(
+                "client_certificate_expiry_seconds",
+                this,
+                g -> (g.notAfterMillis(alias) - g.clock.millis()) / 1000.0)
+            .description("seconds until the client certificate expires, negative once expired")
+            .tag("keystore", keystore)
+            .tag("alias", alias)
+            .register(registry));
+    return registered;
+  }
+
+  private double notAfterMillis(String alias) {
+    X509Certificate certificate = keys.certificates().get(alias);
+    if (certificate == null) {
+      return Double.NaN;
+    }
+    return certificate.getNotAfter().getTime();
+  }
+
+  @Override
+  public synchronized void close() {
+    meters.values().forEach(m -> m.forEach(registry::remove));
+    meters.clear();
+  }
+}
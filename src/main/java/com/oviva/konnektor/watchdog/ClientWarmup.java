@@ -0,0 +1,49 @@
+package com.oviva.konnektor.watchdog;
+
+import java.util.List;
+import org.apache.cxf.jaxws.JaxWsProxyFactoryBean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import telematik.ws.conn.authsignatureservice.wsdl.v7_4.AuthSignatureServicePortType;
+import telematik.ws.conn.cardservice.wsdl.v8_1.CardServicePortType;
+import telematik.ws.conn.certificateservice.wsdl.v6_0.CertificateServicePortType;
+import telematik.ws.conn.eventservice.wsdl.v6_1.EventServicePortType;
+
+/**
+ * Builds throwaway SOAP clients for the services a Konnektor connection uses. This loads CXF and
+ * creates the JAXB contexts CXF caches, which the first connection would otherwise pay for: on a
+ * cold JVM creating the clients takes seconds, afterwards a fraction of that. Nothing is sent, the
+ * clients are never called.
+ */
+final class ClientWarmup {
+
+  private static final Logger logger = LoggerFactory.getLogger(ClientWarmup.class);
+
+  private static final String SOAP_BINDING = "http://schemas.xmlsoap.org/wsdl/soap/http";
+  // never called, creating a client does not connect
+  private static final String ADDRESS = "https://127.0.0.1:1/";
+
+  private static final List<Class<?>> SERVICES =
+      List.of(
+          EventServicePortType.class,
+          CardServicePortType.class,
+          CertificateServicePortType.class,
+          AuthSignatureServicePortType.class);
+
+  private ClientWarmup() {}
+
+  static void run() {
+    for (var service : SERVICES) {
+      try {
+        var factory = new JaxWsProxyFactoryBean();
+        factory.setBindingId(SOAP_BINDING);
+        factory.setServiceClass(service);
+        factory.setAddress(ADDRESS);
+        factory.create(service);
+      } catch (RuntimeException e) {
+        // only an optimisation, the first connection does it again
+        logger.atDebug().log("failed to warm up client for {}: {}", service, e.toString());
+      }
+    }
+  }
+}
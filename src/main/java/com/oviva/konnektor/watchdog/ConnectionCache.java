@@ -0,0 +1,152 @@
+package com.oviva.konnektor.watchdog;
+
+import com.oviva.epa.client.KonnektorService;
+import com.oviva.epa.client.konn.KonnektorConnection;
+import com.oviva.epa.client.konn.KonnektorConnectionFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a live {@link KonnektorConnection} and its {@link KonnektorService} across probes.
+ * Connecting fetches the service-discovery document and builds a CXF client per service, reusing
+ * them also reuses their TLS sessions through the proxy. The connection is only rebuilt after a
+ * failure or once it is older than {@code maxAge}.
+ */
+class ConnectionCache {
+
+  private static final Logger logger = LoggerFactory.getLogger(ConnectionCache.class);
+
+  private final String konnektor;
+  private final KonnektorConnectionFactory konnektorFactory;
+  private final Function<KonnektorConnection, KonnektorService> serviceBuilder;
+  private final Duration maxAge;
+  private final Clock clock;
+  private final OperationMetrics operations;
+
+  private final Counter hits;
+  private final MeterRegistry registry;
+
+  // not synchronized, connecting blocks and would pin the carrier of the probing virtual thread
+  private final ReentrantLock lock = new ReentrantLock();
+
+  private Entry entry;
+  private boolean failed;
+  private boolean rotated;
+
+  ConnectionCache(
+      String konnektor,
+      KonnektorConnectionFactory konnektorFactory,
+      Function<KonnektorConnection, KonnektorService> serviceBuilder,
+      Duration maxAge,
+      Clock clock,
+      OperationMetrics operations,
+      MeterRegistry registry) {
+    this.konnektor = konnektor;
+    this.konnektorFactory = konnektorFactory;
+    this.serviceBuilder = serviceBuilder;
+    this.maxAge = maxAge;
+    this.clock = clock;
+    this.operations = operations;
+    this.registry = registry;
+
+    this.hits =
+        Counter.builder("konnektor_connection_cache_hits")
+            .description("probes that reused an existing konnektor connection")
+            .tag("konnektor", konnektor)
+            .register(registry);
+  }
+
+  /** a cached service or a freshly connected one, throws if the Konnektor is not reachable */
+  KonnektorService service() {
+    lock.lock();
+    try {
+      return connectIfNeeded();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** drops the cached connection, e.g. after it failed, the next probe connects again */
+  void invalidate() {
+    lock.lock();
+    try {
+      failed = true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * drops the cached connection after the client keys were swapped, its TLS sessions would resume
+   * with the old certificate. The next probe connects again with the new one.
+   */
+  void keysRotated() {
+    lock.lock();
+    try {
+      rotated = true;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private KonnektorService connectIfNeeded() {
+    var reason = rebuildReason();
+    if (reason == null) {
+      hits.increment();
+      return entry.service();
+    }
+
+    logger
+        .atDebug()
+        .addKeyValue("konnektor", konnektor)
+        .log("connecting to {}, reason: {}", konnektor, reason);
+
+    rebuilds(reason).increment();
+    // stays empty if connecting fails
+    entry = null;
+    entry =
+        operations.record(
+            OperationMetrics.CONNECT,
+            () -> {
+              var conn = konnektorFactory.connect();
+              return new Entry(conn, serviceBuilder.apply(conn), clock.instant());
+            });
+    failed = false;
+    rotated = false;
+    return entry.service();
+  }
+
+  private String rebuildReason() {
+    if (entry == null) {
+      return failed ? "failure" : "initial";
+    }
+    if (failed) {
+      return "failure";
+    }
+    if (rotated) {
+      return "credentials";
+    }
+    if (!clock.instant().isBefore(entry.createdAt().plus(maxAge))) {
+      return "expired";
+    }
+    return null;
+  }
+
+  private Counter rebuilds(String reason) {
+    return Counter.builder("konnektor_connection_cache_rebuilds")
+        .description("konnektor connections built, by reason")
+        .tag("konnektor", konnektor)
+        .tag("reason", reason)
+        .register(registry);
+  }
+
+  private record Entry(
+      KonnektorConnection connection, KonnektorService service, Instant createdAt) {}
+}
@@ -0,0 +1,44 @@
+package com.oviva.konnektor.watchdog;
+
+import com.oviva.epa.client.konn.KonnektorConnection;
+import com.oviva.epa.client.konn.KonnektorConnectionFactory;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Builds the actual connection factory on the first connect instead of at startup. Building it
+ * loads CXF and needs the client keys, both take a while on a cold JVM and must not delay binding
+ * the HTTP listener. A factory that failed to build is built again on the next connect.
+ */
+class DeferredConnectionFactory implements KonnektorConnectionFactory {
+
+  private final Supplier<KonnektorConnectionFactory> builder;
+  // not synchronized, building blocks and would pin the carrier of the virtual thread
+  private final ReentrantLock lock = new ReentrantLock();
+  private volatile KonnektorConnectionFactory delegate;
+
+  DeferredConnectionFactory(Supplier<KonnektorConnectionFactory> builder) {
+    this.builder = builder;
+  }
+
+  @Override
+  public KonnektorConnection connect() {
+    return delegate().connect();
+  }
+
+  private KonnektorConnectionFactory delegate() {
+    var d = delegate;
+    if (d != null) {
+      return d;
+    }
+    lock.lock();
+    try {
+      if (delegate == null) {
+        delegate = builder.get();
+      }
+      return delegate;
+    } finally {
+      lock.unlock();
+    }
+  }
+}
@@ -0,0 +1,177 @@
+package com.oviva.konnektor.watchdog;
+
+import com.oviva.epa.client.KonnektorService;
+import com.oviva.epa.client.model.PinStatus;
+import com.oviva.epa.client.model.SmcbCard;
+import com.oviva.konnektor.watchdog.events.CardEvent;
+import com.oviva.konnektor.watchdog.probe.CardState;
+import com.oviva.konnektor.watchdog.probe.CardStatus;
+import com.oviva.konnektor.watchdog.probe.CardStatusChecker;
+import com.oviva.konnektor.watchdog.probe.CircuitBreaker;
+import com.oviva.konnektor.watchdog.probe.CircuitOpenException;
+import com.oviva.konnektor.watchdog.probe.Probe;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Probes a Konnektor for its cards.
+ *
+ * <p>Listing the cards is expensive, the Konnektor client reads certificates and the PIN status of
+ * every card one after the other. The full inventory is therefore only listed every {@code
+ * inventoryInterval}, in between only the PIN status of the known cards is checked concurrently.
+ * Cards that are not verified are checked on every probe, verified ones only every {@code
+ * verifiedCardInterval}.
+ *
+ * <p>Card events reported by the Konnektor make the next probe list the cards again or check the
+ * status of the card concerned, regardless of these intervals.
+ */
+class KonnektorProbe implements Probe {
+
+  private final Logger logger = LoggerFactory.getLogger(KonnektorProbe.class);
+
+  private final Main.KonnektorConfig config;
+  private final ConnectionCache connections;
+  private final CardStatusChecker statusChecker;
+  private final CircuitBreaker breaker;
+  private final OperationMetrics operations;
+  private final Clock clock;
+
+  private List<CardState> inventory = List.of();
+  private Instant inventoryListedAt;
+  private final Map<String, Instant> cardCheckedAt = new HashMap<>();
+
+  // hints from card events, received concurrently to probes
+  private volatile boolean inventoryChanged;
+  private final Queue<String> changedCards = new ConcurrentLinkedQueue<>();
+
+  KonnektorProbe(
+      Main.KonnektorConfig config,
+      ConnectionCache connections,
+      CardStatusChecker statusChecker,
+      CircuitBreaker breaker,
+      OperationMetrics operations,
+      Clock clock) {
+    this.config = config;
+    this.connections = connections;
+    this.statusChecker = statusChecker;
+    this.breaker = breaker;
+    this.operations = operations;
+    this.clock = clock;
+  }
+
+  @Override
+  public List<CardState> probe() {
+    if (!breaker.tryAcquire()) {
+      throw new CircuitOpenException(config.konnektorUri().toString());
+    }
+
+    var started = clock.instant();
+    try {
+      var cards = probe(started);
+      breaker.onSuccess();
+      return cards;
+    } catch (RuntimeException e) {
+      breaker.onFailure();
+      // start over with a fresh connection and inventory once the Konnektor is back
+      connections.invalidate();
+      inventoryListedAt = null;
+      throw e;
+    }
+  }
+
+  /** the Konnektor reported a change, the next probe takes it into account */
+  void onEvent(CardEvent event) {
+    if (!event.isSmcB()) {
+      return;
+    }
+    if (event.isInventoryChange()) {
+      inventoryChanged = true;
+    } else if (event.isPinChange() && event.cardHandle() != null) {
+      changedCards.add(event.cardHandle());
+    }
+  }
+
+  private void applyEvents() {
+    if (inventoryChanged) {
+      inventoryChanged = false;
+      inventoryListedAt = null;
+    }
+    for (String handle; (handle = changedCards.poll()) != null; ) {
+      if (cardCheckedAt.remove(handle) == null) {
+        // not known yet, e.g. inserted since the cards were listed
+        inventoryListedAt = null;
+      }
+    }
+  }
+
+  private List<CardState> probe(Instant started) {
+    applyEvents();
+    var konnektorService = connections.service();
+
+    if (inventoryDue(started)) {
+      logger.atDebug().log("fetching cards from {}", config.konnektorUri());
+      inventory =
+          operations.record(OperationMetrics.LIST_CARDS, konnektorService::listSmcbCards).stream()
+              .map(this::checkCard)
+              .toList();
+      inventoryListedAt = clock.instant();
+      cardCheckedAt.clear();
+      inventory.forEach(c -> cardCheckedAt.put(c.handle(), inventoryListedAt));
+      return inventory;
+    }
+
+    var due = inventory.stream().filter(c -> checkDue(c, started)).toList();
+    if (due.isEmpty()) {
+      return inventory;
+    }
+
+    logger.atDebug().log(
+        "checking status of {}/{} cards in {}",
+        due.size(),
+        inventory.size(),
+        config.konnektorUri());
+    var budget = config.probeTimeout().minus(Duration.between(started, clock.instant()));
+    var checked = new HashMap<String, CardState>();
+    for (var card :
+        statusChecker.check(due, handle -> pinStatus(konnektorService, handle), budget)) {
+      checked.put(card.handle(), card);
+      cardCheckedAt.put(card.handle(), started);
+    }
+
+    if (checked.values().stream().anyMatch(c -> c.status() == CardStatus.UNKNOWN)) {
+      // a card might have been removed, list them all again next time
+      inventoryListedAt = null;
+    }
+    inventory = inventory.stream().map(c -> checked.getOrDefault(c.handle(), c)).toList();
+    return inventory;
+  }
+
+  private boolean checkDue(CardState card, Instant now) {
+    if (card.status() != CardStatus.VERIFIED) {
+      return true;
+    }
+    var checkedAt = cardCheckedAt.get(card.handle());
+    return checkedAt == null || !now.isBefore(checkedAt.plus(config.verifiedCardInterval()));
+  }
+
+  private boolean inventoryDue(Instant now) {
+    return inventoryListedAt == null
+        || !now.isBefore(inventoryListedAt.plus(config.inventoryInterval()));
+  }
+
+  private CardStatus pinStatus(KonnektorService konnektorService, String handle) {
+    var status =
+        operations.record(OperationMetrics.PIN_STATUS, () -> konnektorService.verifySmcPin(handle));
+    return status == PinStatus.VERIFIED ? CardStatus.VERIFIED : CardStatus.NOT_VERIFIED;
+  }
+
+  private CardState checkCard(SmcbCard card) {
+    var status = card.pinVerified() ? CardStatus.VERIFIED : CardStatus.NOT_VERIFIED;
+    return new CardState(card.handle(), card.holderName(), card.telematikId(), status);
+  }
+}
@@ -1,13 +1,38 @@
 package com.oviva.konnektor.watchdog;
 
+import com.oviva.epa.client.KonnektorService;
+import com.oviva.epa.client.KonnektorServiceBuilder;
+import com.oviva.epa.client.konn.KonnektorConnection;
 import com.oviva.epa.client.konn.KonnektorConnectionFactory;
 import com.oviva.epa.client.konn.KonnektorConnectionFactoryBuilder;
+import com.oviva.konnektor.watchdog.cfg.ConfigFileWatcher;
 import com.oviva.konnektor.watchdog.cfg.ConfigProvider;
 import com.oviva.konnektor.watchdog.cfg.EnvConfigProvider;
+import com.oviva.konnektor.watchdog.cfg.FileConfigProvider;
+import com.oviva.konnektor.watchdog.cfg.LayeredConfigProvider;
+import com.oviva.konnektor.watchdog.cfg.ScopedConfigProvider;
+import com.oviva.konnektor.watchdog.events.CardEvent;
+import com.oviva.konnektor.watchdog.events.CetpReceiver;
+import com.oviva.konnektor.watchdog.handlers.HealthHandler;
 import com.oviva.konnektor.watchdog.handlers.MetricsHandler;
+import com.oviva.konnektor.watchdog.handlers.RegistryMetrics;
+import com.oviva.konnektor.watchdog.handlers.ScrapeCache;
+import com.oviva.konnektor.watchdog.handlers.StatusHandler;
+import com.oviva.konnektor.watchdog.history.ProbeHistory;
+import com.oviva.konnektor.watchdog.logging.LogMetrics;
+import com.oviva.konnektor.watchdog.logging.RepeatingErrorLog;
+import com.oviva.konnektor.watchdog.otlp.OtlpPushExporter;
+import com.oviva.konnektor.watchdog.probe.AdaptiveSchedule;
+import com.oviva.konnektor.watchdog.probe.CardStatusChecker;
+import com.oviva.konnektor.watchdog.probe.CircuitBreaker;
+import com.oviva.konnektor.watchdog.probe.EngineHealth;
+import com.oviva.konnektor.watchdog.probe.ProbeEngine;
+import com.oviva.konnektor.watchdog.probe.ProbeSnapshot;
+import com.oviva.konnektor.watchdog.probe.SnapshotStore;
+import io.micrometer.core.instrument.Counter;
 import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
 import io.micrometer.core.instrument.MeterRegistry;
-import io.micrometer.core.instrument.MultiGauge;
 import io.micrometer.prometheusmetrics.PrometheusConfig;
 import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
 import io.undertow.Handlers;
@@ -17,35 +42,73 @@ import java.io.IOException;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.GeneralSecurityException;
 import java.security.KeyStore;
-import java.security.KeyStoreException;
-import java.security.NoSuchAlgorithmException;
-import java.security.UnrecoverableKeyException;
-import java.security.cert.CertificateException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import javax.net.ssl.KeyManager;
-import javax.net.ssl.KeyManagerFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+import telematik.ws.conn.connectorcontext.xsd.v2_0.ContextType;
 
 public class Main implements AutoCloseable {
 
   private static final Logger logger = LoggerFactory.getLogger(Main.class);
-  private static final int CARD_UPDATE_SCHEDULE_MINUTES = 3;
+
+  static final String WARMUP_ARG = "--warmup";
+
+  // editors and ConfigMap updates touch the file more than once per change
+  private static final Duration CONFIG_SETTLE = Duration.ofMillis(500);
 
   private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+  private final ExecutorService probeExecutor = Executors.newVirtualThreadPerTaskExecutor();
+  private final ExecutorService httpExecutor = Executors.newVirtualThreadPerTaskExecutor();
   private final ConfigProvider configProvider;
-  private Undertow server;
+  private final Clock clock = Clock.systemUTC();
+  private final AtomicBoolean closed = new AtomicBoolean();
+  private final AtomicLong generation = new AtomicLong();
+  private final CardEventSubscription.Router router = new CardEventSubscription.Router();
+  private final Map<Credentials, CompletableFuture<ClientKeys>> keys = new ConcurrentHashMap<>();
+  private final Map<String, KonnektorTarget> targets = new ConcurrentHashMap<>();
+  // replaced by reloads
+  private volatile WatchdogConfig config;
+  private MeterRegistry registry;
+  private SeriesLimits cardSeries;
+  private ProbeHistory history;
+  // closed from a background thread if the client keys can not be loaded
+  private volatile Undertow server;
+  private ProbeEngine engine;
+  private volatile EngineHealth health;
+  private volatile SnapshotStore snapshotStore;
+  private volatile CetpReceiver eventReceiver;
+  private volatile ConfigFileWatcher configWatcher;
+  private volatile OtlpPushExporter otlpExporter;
 
   public Main(ConfigProvider configProvider) {
     this.configProvider = configProvider;
   }
 
   public static void main(String[] args) {
+    if (args.length > 0 && WARMUP_ARG.equals(args[0])) {
+      warmup();
+      return;
+    }
     logger.atDebug().log("initialising application");
     try (var app = new Main(new EnvConfigProvider("KONNEKTOR_WATCHDOG", System::getenv))) {
       app.run();
@@ -55,145 +118,943 @@ public class Main implements AutoCloseable {
     }
   }
 
+  /**
+   * runs through startup without a Konnektor and exits, the image build records the classes loaded
+   * on the way in an AppCDS archive
+   */
+  static void warmup() {
+    try {
+      var keyStore = Files.createTempFile("warmup", ".p12");
+      try (var out = Files.newOutputStream(keyStore)) {
+        var ks = KeyStore.getInstance("PKCS12");
+        ks.load(null, null);
+        ks.store(out, "0000".toCharArray());
+      }
+      var config =
+          Map.of(
+              "address", "127.0.0.1",
+              "port", "0",
+              "konnektor.uri", "https://127.0.0.1:1",
+              "proxy.address", "127.0.0.1",
+              "credentials.path", keyStore.toString());
+      ClientWarmup.run();
+      try (var app = new Main(k -> Optional.ofNullable(config.get(k)))) {
+        app.run();
+      }
+      Files.deleteIfExists(keyStore);
+    } catch (IOException | GeneralSecurityException e) {
+      throw new IllegalStateException("warmup failed", e);
+    }
+  }
+
+  /**
+   * binds the HTTP listener right after reading the configuration. Loading the client keys and CXF
+   * runs in the background, the first connection to a Konnektor waits for them. Until every
+   * Konnektor was probed {@code /health/ready} reports not ready.
+   */
   public void run() {
     logger.atDebug().log("running application");
 
-    var config = loadConfig(configProvider);
+    var configFile = configProvider.get("config.file").map(Path::of);
+    configWatcher = configFile.map(f -> ConfigFileWatcher.open(f, CONFIG_SETTLE)).orElse(null);
+    var config =
+        loadConfig(configWatcher == null ? configProvider : layered(configWatcher.loaded()));
+    this.config = config;
     logger.atInfo().log("config loaded: {}", config);
 
-    var registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
-    registerGauges(registry, config);
-    logger.atDebug().log("gauges registered");
+    registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    new LogMetrics().bindTo(registry);
+    cardSeries = new SeriesLimits("card_status", config.cardSeries(), registry);
+    history = new ProbeHistory(config.history(), registry, clock);
+    logger.atInfo().log(
+        "probe history takes {} bytes per konnektor and {} bytes per card",
+        history.bytesPerKonnektor(),
+        history.bytesPerCard());
+    var startup = new StartupPhases(registry);
+
+    // the heavy part of connecting, in parallel to everything else
+    loadKeysAsync(config.konnektors(), startup);
+    var keystoreErrors =
+        new RepeatingErrorLog(logger, Level.WARN, "keystore", config.errorLogWindow(), clock);
+    scheduler.scheduleWithFixedDelay(
+        () -> checkKeystores(keystoreErrors),
+        config.credentialsCheckInterval().toMillis(),
+        config.credentialsCheckInterval().toMillis(),
+        TimeUnit.MILLISECONDS);
+    CompletableFuture.runAsync(ClientWarmup::run, probeExecutor)
+        .thenRun(() -> startup.done(StartupPhases.CLIENT));
+
+    engine =
+        new ProbeEngine(
+            scheduler,
+            probeExecutor,
+            config.probeConcurrency(),
+            config.schedule(),
+            config.errorLogWindow(),
+            clock);
+
+    startServer(config, registry);
+    startup.done(StartupPhases.HTTP);
+
+    var events = config.events();
+    if (events.enabled()) {
+      eventReceiver = CetpReceiver.start(events.address(), events.port(), probeExecutor, router);
+    }
+
+    engine.addListener(this::updateCardGauges);
+    engine.addListener(history);
+    for (var konnektor : config.konnektors()) {
+      addKonnektor(konnektor);
+    }
+    logger.atDebug().log("gauges registered for {} konnektors", config.konnektors().size());
+
+    // registered after the gauge listeners, the scrape must not be cached before they ran
+    engine.addListener(s -> generation.incrementAndGet());
+    engine.addListener(readyOnce(startup));
+
+    config.statePath().ifPresent(path -> restoreState(path, config.stateSaveInterval()));
+
+    engine.start();
+    targets.values().forEach(t -> t.subscription().ifPresent(CardEventSubscription::start));
+    // a scrape cached while the gauges were registered must not be served
+    generation.incrementAndGet();
+    startup.done(StartupPhases.INITIALIZED);
 
-    var host = config.watchdogAddress();
-    var port = config.watchdogPort();
+    config
+        .otlp()
+        .ifPresent(
+            otlp -> {
+              otlpExporter =
+                  new OtlpPushExporter(
+                      otlp, registry, scheduler, probeExecutor, config.errorLogWindow(), clock);
+              otlpExporter.start();
+            });
+
+    if (configWatcher != null) {
+      configWatcher.start(this::reload);
+    }
+  }
+
+  private ConfigProvider layered(FileConfigProvider file) {
+    return new LayeredConfigProvider(List.of(file, configProvider));
+  }
+
+  /**
+   * applies a changed configuration file, on the watcher thread. The new configuration is validated
+   * as a whole before anything is applied, if it is not valid the current one stays. Konnektors
+   * whose configuration did not change keep their connections and schedule.
+   */
+  private void reload(FileConfigProvider file) {
+    WatchdogConfig next;
+    Map<Credentials, ReloadingKeyManager> newKeys;
+    try {
+      next = loadConfig(layered(file));
+      newKeys = loadNewKeys(next.konnektors());
+    } catch (RuntimeException e) {
+      logger
+          .atError()
+          .setCause(e)
+          .log("configuration not valid, keeping the current one: {}", e.getMessage());
+      return;
+    }
+
+    var current = config;
+    var applied = current.reloaded(next);
+    if (!applied.equals(next)) {
+      logger
+          .atWarn()
+          .log(
+              "changes other than konnektors, probe intervals and health timeouts only apply after a restart");
+    }
+    if (!current.schedule().equals(applied.schedule())) {
+      engine.updateSchedule(applied.schedule());
+    }
+    // their defaults derive from the probe intervals
+    var health = this.health;
+    if (health != null && !current.health().equals(applied.health())) {
+      health.updateConfig(applied.health());
+    }
+    newKeys.forEach((c, km) -> keys.put(c, CompletableFuture.completedFuture(clientKeys(km))));
+
+    var wanted = new HashMap<String, KonnektorConfig>();
+    applied.konnektors().forEach(k -> wanted.put(k.konnektorUri().toString(), k));
+    var removed = 0;
+    for (var name : List.copyOf(targets.keySet())) {
+      if (!wanted.containsKey(name)) {
+        removeKonnektor(name);
+        removed++;
+      }
+    }
+    var added = 0;
+    var replaced = 0;
+    for (var konnektor : applied.konnektors()) {
+      var existing = targets.get(konnektor.konnektorUri().toString());
+      if (existing == null) {
+        addKonnektor(konnektor).subscription().ifPresent(CardEventSubscription::start);
+        added++;
+      } else if (!existing.config().equals(konnektor)) {
+        replaceKonnektor(existing, konnektor);
+        replaced++;
+      }
+    }
+    var used = new HashSet<Credentials>();
+    applied.konnektors().forEach(k -> used.add(k.credentials()));
+    for (var c : List.copyOf(keys.keySet())) {
+      if (!used.contains(c)) {
+        keys.remove(c).thenAccept(k -> k.gauges().close());
+      }
+    }
+
+    config = applied;
+    generation.incrementAndGet();
+    logger.atInfo().log(
+        "configuration reloaded, {} konnektors added, {} removed and {} changed",
+        added,
+        removed,
+        replaced);
+  }
+
+  /** the probe of a Konnektor and everything it owns besides its snapshot */
+  record KonnektorTarget(
+      KonnektorConfig config,
+      KonnektorProbe probe,
+      ConnectionCache connections,
+      OperationMetrics operations,
+      CardCheckGauges gauges,
+      Optional<CardEventSubscription> subscription) {}
+
+  private KonnektorTarget newTarget(KonnektorConfig konnektor, CardCheckGauges gauges) {
+    var config = this.config;
+    var name = konnektor.konnektorUri().toString();
+    var statusChecker =
+        new CardStatusChecker(
+            probeExecutor,
+            konnektor.cardParallelism(),
+            konnektor.cardTimeout(),
+            config.errorLogWindow());
+    var clientKeys = keys.get(konnektor.credentials());
+    var factory =
+        new TimeoutConnectionFactory(
+            new DeferredConnectionFactory(
+                () -> buildFactory(konnektor, List.of(clientKeys.join().keyManager()))),
+            probeExecutor,
+            konnektor.probeTimeout(),
+            konnektor.connectTimeout(),
+            konnektor.readTimeout());
+    var operations = new OperationMetrics(name, config.operationMetrics(), registry);
+    var connections =
+        new ConnectionCache(
+            name,
+            factory,
+            conn -> buildService(konnektor, conn),
+            konnektor.connectionMaxAge(),
+            clock,
+            operations,
+            registry);
+    var breaker =
+        new CircuitBreaker(
+            name, konnektor.breakerFailures(), konnektor.breakerOpenDuration(), clock, registry);
+    var probe =
+        new KonnektorProbe(konnektor, connections, statusChecker, breaker, operations, clock);
+
+    var events = config.events();
+    Optional<CardEventSubscription> subscription = Optional.empty();
+    if (events.enabled()) {
+      subscription =
+          Optional.of(
+              new CardEventSubscription(
+                  name,
+                  factory,
+                  eventContext(konnektor),
+                  "%s://%s:%d"
+                      .formatted(
+                          CetpReceiver.SCHEME, events.callbackAddress(), eventReceiver.port()),
+                  router,
+                  eventHandler(probe, name),
+                  () -> probeNow(name),
+                  probeExecutor,
+                  scheduler,
+                  operations,
+                  clock,
+                  config.errorLogWindow()));
+    }
+    return new KonnektorTarget(konnektor, probe, connections, operations, gauges, subscription);
+  }
+
+  private KonnektorTarget addKonnektor(KonnektorConfig konnektor) {
+    var name = konnektor.konnektorUri().toString();
+    var target = newTarget(konnektor, new CardCheckGauges(name, registry, cardSeries));
+    // before the engine probes it, the gauges must not miss the first snapshot
+    targets.put(name, target);
+    history.add(name);
+    engine.addTarget(name, target.probe());
+    registerGauges(registry, engine, name);
+    return target;
+  }
+
+  /** keeps the snapshot and card gauges, everything holding a connection is built anew */
+  private void replaceKonnektor(KonnektorTarget previous, KonnektorConfig konnektor) {
+    var name = konnektor.konnektorUri().toString();
+    closeSubscription(previous);
+    // the only meter bound to an object that is replaced, all others are looked up by name
+    removeMeters(name, m -> m.getId().getName().equals("konnektor_circuit_state"));
+    var target = newTarget(konnektor, previous.gauges());
+    targets.put(name, target);
+    engine.replaceTarget(name, target.probe());
+    target.subscription().ifPresent(CardEventSubscription::start);
+    logger.atInfo().addKeyValue("konnektor", name).log("konnektor {} changed", name);
+  }
+
+  private void removeKonnektor(String name) {
+    var target = targets.remove(name);
+    if (target != null) {
+      // unsubscribing still calls the Konnektor, it must not record again
+      target.operations().close();
+      closeSubscription(target);
+      // returns the card series slots to the other Konnektors
+      target.gauges().close();
+    }
+    history.remove(name);
+    removeMeters(name, m -> true);
+    // a probe still running registers some again, e.g. for a rebuilt connection
+    engine.removeTarget(
+        name,
+        () -> {
+          if (!targets.containsKey(name)) {
+            removeMeters(name, m -> true);
+          }
+        });
+    logger.atInfo().addKeyValue("konnektor", name).log("konnektor {} removed", name);
+  }
+
+  private void closeSubscription(KonnektorTarget target) {
+    // unsubscribing calls the Konnektor
+    target
+        .subscription()
+        .ifPresent(
+            s -> {
+              try {
+                probeExecutor.execute(s::close);
+              } catch (RejectedExecutionException e) {
+                // shutting down
+              }
+            });
+  }
+
+  private void removeMeters(String konnektor, Predicate<Meter> filter) {
+    for (var meter : registry.getMeters()) {
+      if (konnektor.equals(meter.getId().getTag("konnektor")) && filter.test(meter)) {
+        registry.remove(meter);
+      }
+    }
+  }
+
+  private void updateCardGauges(ProbeSnapshot snapshot) {
+    var target = targets.get(snapshot.konnektor());
+    if (target != null) {
+      target.gauges().accept(snapshot);
+    }
+  }
+
+  private void startServer(WatchdogConfig config, MeterRegistry registry) {
+    var host = config.address();
+    var port = config.port();
 
     logger.atDebug().log("booting server at http://{}:{}/", host, port);
 
-    server = buildServer(host, port, new MetricsHandler(registry::scrape));
+    var prometheus = ((PrometheusMeterRegistry) registry).getPrometheusRegistry();
+    var health = new EngineHealth(engine, config.health(), clock);
+    this.health = health;
+    server =
+        buildServer(
+            host,
+            port,
+            new MetricsHandler(
+                new ScrapeCache(
+                    new RegistryMetrics(prometheus),
+                    generation::get,
+                    config.metricsMaxAge(),
+                    clock),
+                httpExecutor),
+            new HealthHandler(
+                () -> {
+                  var live = health.liveness();
+                  return new HealthHandler.Health(live.up(), live);
+                }),
+            new HealthHandler(
+                () -> {
+                  var ready = health.readiness();
+                  return new HealthHandler.Health(ready.up(), ready);
+                }),
+            new StatusHandler(history::status, httpExecutor));
     server.start();
 
     logger.atInfo().log("server ready at http://{}:{}/", host, port);
   }
 
+  /** loads every distinct keystore once, a keystore that can not be loaded stops the watchdog */
+  private void loadKeysAsync(List<KonnektorConfig> konnektors, StartupPhases startup) {
+    for (var k : konnektors) {
+      keys.computeIfAbsent(
+          k.credentials(),
+          c ->
+              CompletableFuture.supplyAsync(
+                  () -> clientKeys(ReloadingKeyManager.load(c.path(), c.password())),
+                  probeExecutor));
+    }
+    CompletableFuture.allOf(keys.values().toArray(CompletableFuture[]::new))
+        .whenComplete(
+            (v, e) -> {
+              if (e == null) {
+                startup.done(StartupPhases.KEYSTORES);
+                return;
+              }
+              logger.atError().setCause(e).log("failed to load client keys, shutting down");
+              close();
+            });
+  }
+
+  /** loads keystores a reload added right away, one that can not be loaded fails the reload */
+  private Map<Credentials, ReloadingKeyManager> loadNewKeys(List<KonnektorConfig> konnektors) {
+    var loaded = new HashMap<Credentials, ReloadingKeyManager>();
+    for (var k : konnektors) {
+      var c = k.credentials();
+      if (!keys.containsKey(c) && !loaded.containsKey(c)) {
+        loaded.put(c, ReloadingKeyManager.load(c.path(), c.password()));
+      }
+    }
+    return loaded;
+  }
+
+  /** the client keys and the expiry gauges of their certificates */
+  private record ClientKeys(ReloadingKeyManager keyManager, ClientCertificateGauges gauges) {}
+
+  private ClientKeys clientKeys(ReloadingKeyManager keyManager) {
+    return new ClientKeys(keyManager, new ClientCertificateGauges(keyManager, registry, clock));
+  }
+
+  /**
+   * swaps the keys of keystores that changed, e.g. a rotated client certificate. The Konnektors
+   * using them connect again with the new certificate on their next probe, the connection factory
+   * and all metrics stay.
+   */
+  private void checkKeystores(RepeatingErrorLog errors) {
+    for (var entry : keys.entrySet()) {
+      var future = entry.getValue();
+      var clientKeys = future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+      if (clientKeys == null) {
+        continue;
+      }
+      var path = clientKeys.keyManager().path().toString();
+      try {
+        if (clientKeys.keyManager().reload()) {
+          clientKeys.gauges().update();
+          for (var target : targets.values()) {
+            if (target.config().credentials().equals(entry.getKey())) {
+              target.connections().keysRotated();
+            }
+          }
+          generation.incrementAndGet();
+          logger.atInfo().addKeyValue("keystore", path).log("reloaded client keys from {}", path);
+        }
+        errors.resolved(path);
+      } catch (RuntimeException e) {
+        // an exception would cancel the periodic check
+        errors.log(path, e, "failed to reload client keys from {}, keeping the current ones", path);
+      }
+    }
+  }
+
+  private Consumer<ProbeSnapshot> readyOnce(StartupPhases startup) {
+    var ready = new AtomicBoolean();
+    return snapshot -> {
+      if (ready.get() || snapshot.stale()) {
+        return;
+      }
+      if (engine.snapshots().stream().allMatch(s -> s.version() > 0 && !s.stale())
+          && ready.compareAndSet(false, true)) {
+        startup.done(StartupPhases.READY);
+      }
+    };
+  }
+
   public void awaitTermination() {
+    var worker = server == null ? null : server.getWorker();
+    if (worker == null) {
+      // closed already
+      return;
+    }
     try {
-      server.getWorker().awaitTermination();
+      worker.awaitTermination();
     } catch (InterruptedException e) {
       Thread.currentThread().interrupt();
     }
   }
 
-  private Undertow buildServer(String host, int port, HttpHandler metricsHandler) {
+  private Undertow buildServer(
+      String host,
+      int port,
+      HttpHandler metricsHandler,
+      HttpHandler liveHandler,
+      HttpHandler readyHandler,
+      HttpHandler statusHandler) {
 
     return Undertow.builder()
         .addHttpListener(port, host)
         .setHandler(
             Handlers.path()
-                .addExactPath(
-                    "/health",
-                    ex -> {
-                      ex.setStatusCode(200);
-                      ex.endExchange();
-                    })
-                .addExactPath("/metrics", metricsHandler))
+                // kept for existing deployments, a Konnektor outage must not restart the watchdog
+                .addExactPath("/health", liveHandler)
+                .addExactPath("/health/live", liveHandler)
+                .addExactPath("/health/ready", readyHandler)
+                .addExactPath("/metrics", metricsHandler)
+                .addExactPath("/status", statusHandler))
         .build();
   }
 
-  private void registerGauges(MeterRegistry registry, KonnektorConfig config) {
+  private Consumer<CardEvent> eventHandler(KonnektorProbe probe, String konnektor) {
+    return event -> {
+      Counter.builder("konnektor_events")
+          .description("card events received from the konnektor")
+          .tag("konnektor", konnektor)
+          .tag("topic", String.valueOf(event.topic()))
+          .register(registry)
+          .increment();
+      probe.onEvent(event);
+      probeNow(konnektor);
+    };
+  }
+
+  private void probeNow(String konnektor) {
+    try {
+      engine.probeNow(konnektor);
+    } catch (RejectedExecutionException e) {
+      // shutting down
+    } catch (IllegalArgumentException e) {
+      // removed by a reload
+    }
+  }
 
-    var konnektorFactory = buildFactory(config);
+  private static ContextType eventContext(KonnektorConfig cfg) {
+    return new ContextType()
+        .withMandantId(cfg.mandantId())
+        .withClientSystemId(cfg.clientSystemId())
+        .withWorkplaceId(cfg.workplaceId())
+        .withUserId(cfg.userId());
+  }
 
-    Gauge.builder(
-            "konnektor_status",
-            konnektorFactory,
-            k -> {
-              try {
-                k.connect();
-                return 1;
-              } catch (Exception e) {
-                return 0;
-              }
-            })
-        .tag("konnektor", config.konnektorUri().toString())
-        .register(registry);
-    logger.atInfo().log("registered 'up' gauge for konnektor {}", config.konnektorUri().toString());
+  private void restoreState(Path path, Duration saveInterval) {
+    snapshotStore = new SnapshotStore(path);
+    var restored = 0;
+    for (var snapshot : snapshotStore.load()) {
+      if (engine.restore(snapshot)) {
+        restored++;
+      }
+    }
+    logger.atInfo().log("restored {} konnektor snapshots from {}", restored, path);
 
-    var gauges =
-        MultiGauge.builder("card_status")
-            .tag("konnektor", config.konnektorUri().toString())
-            .description("the status of all plugged in cards")
-            .register(registry);
+    var saved = new AtomicLong(generation.get());
+    scheduler.scheduleWithFixedDelay(
+        () -> {
+          var current = generation.get();
+          if (current != saved.get()) {
+            saveState();
+            saved.set(current);
+          }
+        },
+        saveInterval.toMillis(),
+        saveInterval.toMillis(),
+        TimeUnit.MILLISECONDS);
+  }
 
-    updateCardCheckGauges(gauges, config, konnektorFactory);
+  private void saveState() {
+    try {
+      snapshotStore.save(engine.snapshots());
+    } catch (RuntimeException e) {
+      // an exception would cancel the periodic save
+      logger.atWarn().setCause(e).log("failed to save konnektor snapshots");
+    }
   }
 
-  private void updateCardCheckGauges(
-      MultiGauge gauges, KonnektorConfig config, KonnektorConnectionFactory konnektorFactory) {
+  private void registerGauges(MeterRegistry registry, ProbeEngine engine, String konnektor) {
+
+    Gauge.builder("konnektor_status", engine, e -> e.snapshot(konnektor).up() ? 1 : 0)
+        .description("whether the last probe of the konnektor succeeded")
+        .tag("konnektor", konnektor)
+        .register(registry);
+    logger.atInfo().log("registered 'up' gauge for konnektor {}", konnektor);
+
+    Gauge.builder(
+            "konnektor_last_success_timestamp_seconds",
+            engine,
+            e -> epochSeconds(e.snapshot(konnektor).lastSuccess()))
+        .description("unix time of the last successful probe of the konnektor")
+        .tag("konnektor", konnektor)
+        .register(registry);
+
+    Gauge.builder(
+            "konnektor_snapshot_age_seconds",
+            engine,
+            e -> ageSeconds(e.snapshot(konnektor).lastSuccess()))
+        .description("seconds since the last successful probe, i.e. how stale the card data is")
+        .tag("konnektor", konnektor)
+        .register(registry);
 
-    var konnektorUri = config.konnektorUri().toString();
+    Gauge.builder("konnektor_snapshot_stale", engine, e -> e.snapshot(konnektor).stale() ? 1 : 0)
+        .description("whether the card data was restored after a restart and not probed yet")
+        .tag("konnektor", konnektor)
+        .register(registry);
 
-    var checker = new CardCheckGauges(config, konnektorFactory);
-    gauges.register(checker, true);
     logger
         .atInfo()
-        .addKeyValue("konnektor", konnektorUri)
-        .log("registered gauges for all cards in konnektor {}", konnektorUri);
+        .addKeyValue("konnektor", konnektor)
+        .log("registered gauges for all cards in konnektor {}", konnektor);
+  }
 
-    scheduler.scheduleAtFixedRate(
-        () -> {
-          logger
-              .atInfo()
-              .addKeyValue("konnektor", konnektorUri)
-              .log("updating card gauges for konnektor {}", konnektorUri);
-          var updated = new CardCheckGauges(config, konnektorFactory);
-          gauges.register(updated, true);
-        },
-        CARD_UPDATE_SCHEDULE_MINUTES,
-        CARD_UPDATE_SCHEDULE_MINUTES,
-        TimeUnit.MINUTES);
+  private static double epochSeconds(Instant instant) {
+    if (instant == null) {
+      return Double.NaN;
+    }
+    return instant.toEpochMilli() / 1000.0;
+  }
+
+  private double ageSeconds(Instant instant) {
+    if (instant == null) {
+      return Double.NaN;
+    }
+    return Duration.between(instant, clock.instant()).toMillis() / 1000.0;
   }
 
   @Override
   public void close() {
+    if (!closed.compareAndSet(false, true)) {
+      return;
+    }
+    if (configWatcher != null) {
+      configWatcher.close();
+    }
+    if (otlpExporter != null) {
+      otlpExporter.close();
+    }
     if (server != null) {
       server.stop();
     }
+    targets.values().forEach(t -> t.subscription().ifPresent(CardEventSubscription::close));
+    if (eventReceiver != null) {
+      eventReceiver.close();
+    }
     scheduler.shutdownNow();
+    probeExecutor.shutdownNow();
+    httpExecutor.shutdownNow();
+    if (snapshotStore != null) {
+      saveState();
+    }
+  }
+
+  record WatchdogConfig(
+      String address,
+      int port,
+      int probeConcurrency,
+      AdaptiveSchedule.Config schedule,
+      Duration metricsMaxAge,
+      OperationMetrics.Config operationMetrics,
+      Optional<OtlpPushExporter.Config> otlp,
+      Duration errorLogWindow,
+      Optional<Path> statePath,
+      Duration stateSaveInterval,
+      Duration credentialsCheckInterval,
+      SeriesLimits.Config cardSeries,
+      ProbeHistory.Config history,
+      EventConfig events,
+      EngineHealth.Config health,
+      List<KonnektorConfig> konnektors) {
+
+    /** this configuration with everything that can be changed without a restart taken from next */
+    WatchdogConfig reloaded(WatchdogConfig next) {
+      return new WatchdogConfig(
+          address,
+          port,
+          probeConcurrency,
+          next.schedule(),
+          metricsMaxAge,
+          operationMetrics,
+          otlp,
+          errorLogWindow,
+          statePath,
+          stateSaveInterval,
+          credentialsCheckInterval,
+          cardSeries,
+          history,
+          events,
+          next.health(),
+          next.konnektors());
+    }
+  }
+
+  record EventConfig(
+      boolean enabled, String address, int port, String callbackAddress, Duration reconcile) {}
+
+  /** the PKCS#12 keystore with the TLS client key, loaded in the background */
+  record Credentials(Path path, String password) {
+    @Override
+    public String toString() {
+      return "Credentials[path=%s]".formatted(path);
+    }
   }
 
   record KonnektorConfig(
       URI konnektorUri,
       String proxyAddress,
       int proxyPort,
-      List<KeyManager> clientKeys,
+      Credentials credentials,
       String workplaceId,
       String mandantId,
       String clientSystemId,
       String userId,
-      String watchdogAddress,
-      int watchdogPort) {}
+      int cardParallelism,
+      Duration cardTimeout,
+      Duration probeTimeout,
+      Duration inventoryInterval,
+      Duration verifiedCardInterval,
+      Duration connectionMaxAge,
+      Duration connectTimeout,
+      Duration readTimeout,
+      int breakerFailures,
+      Duration breakerOpenDuration) {}
 
-  private KonnektorConfig loadConfig(ConfigProvider configProvider) {
+  private WatchdogConfig loadConfig(ConfigProvider configProvider) {
 
     var address = configProvider.get("address").orElse("0.0.0.0");
     var port = configProvider.get("port").map(Integer::parseInt).orElse(8080);
 
-    var uri = mustLoad("konnektor.uri").map(URI::create).orElseThrow();
+    var concurrency = configProvider.get("probe.concurrency").map(Integer::parseInt).orElse(4);
+    if (concurrency < 1) {
+      throw configNotValid("probe.concurrency").get();
+    }
+
+    var events = loadEvents(configProvider);
+
+    var schedule = loadSchedule(configProvider, events);
+
+    var health = loadHealth(configProvider, schedule);
+
+    var metricsMaxAge = loadDuration(configProvider, "metrics.max_age", Duration.ofSeconds(15));
+
+    var operationMetrics = loadOperationMetrics(configProvider);
+
+    var otlp = loadOtlp(configProvider);
 
-    var proxyAddress = mustLoad("proxy.address").orElseThrow();
+    var errorLogWindow =
+        loadDuration(configProvider, "log.error_window", RepeatingErrorLog.DEFAULT_WINDOW);
+
+    var statePath = configProvider.get("state.path").map(Path::of);
+    var stateSaveInterval =
+        loadDuration(configProvider, "state.save_interval", Duration.ofSeconds(30));
+
+    var credentialsCheckInterval =
+        loadDuration(configProvider, "credentials.check_interval", Duration.ofMinutes(1));
+
+    var cardSeries = loadCardSeries(configProvider);
+
+    var history = loadHistory(configProvider, cardSeries);
+
+    var konnektors =
+        configProvider
+            .get("konnektors")
+            .map(Main::splitList)
+            .map(
+                ids ->
+                    ids.stream()
+                        .map(
+                            id ->
+                                loadKonnektorConfig(
+                                    new ScopedConfigProvider("konnektors." + id, configProvider)))
+                        .toList())
+            .orElseGet(() -> List.of(loadKonnektorConfig(configProvider)));
+
+    var uris = new HashSet<URI>();
+    for (var k : konnektors) {
+      if (!uris.add(k.konnektorUri())) {
+        throw new IllegalStateException(
+            "konnektor '%s' configured more than once".formatted(k.konnektorUri()));
+      }
+    }
+
+    return new WatchdogConfig(
+        address,
+        port,
+        concurrency,
+        schedule,
+        metricsMaxAge,
+        operationMetrics,
+        otlp,
+        errorLogWindow,
+        statePath,
+        stateSaveInterval,
+        credentialsCheckInterval,
+        cardSeries,
+        history,
+        events,
+        health,
+        konnektors);
+  }
+
+  private ProbeHistory.Config loadHistory(
+      ConfigProvider configProvider, SeriesLimits.Config cardSeries) {
+    var size = configProvider.get("history.size").map(Integer::parseInt).orElse(64);
+    var slo = configProvider.get("history.slo").map(Double::parseDouble).orElse(0.99);
+    try {
+      // cards without a series of their own have no history either
+      return new ProbeHistory.Config(size, slo, cardSeries.maxPerKonnektor());
+    } catch (IllegalArgumentException e) {
+      throw new IllegalStateException("configuration for 'history' not valid", e);
+    }
+  }
+
+  private SeriesLimits.Config loadCardSeries(ConfigProvider configProvider) {
+    var maxPerKonnektor =
+        configProvider
+            .get("metrics.card_status.max_series_per_konnektor")
+            .map(Integer::parseInt)
+            .orElse(1000);
+    var max =
+        configProvider.get("metrics.card_status.max_series").map(Integer::parseInt).orElse(10000);
+    try {
+      return new SeriesLimits.Config(maxPerKonnektor, max);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalStateException(
+          "configuration for 'metrics.card_status.max_series' not valid", e);
+    }
+  }
+
+  private EngineHealth.Config loadHealth(
+      ConfigProvider configProvider, AdaptiveSchedule.Config schedule) {
+    var heartbeatTimeout =
+        loadDuration(configProvider, "health.live.heartbeat_timeout", Duration.ofMinutes(1));
+    // the longest regular pause between two probes plus time for a slow probe
+    var stallTimeout =
+        loadDuration(
+            configProvider,
+            "health.live.stall_timeout",
+            schedule.max().plus(Duration.ofMinutes(5)));
+    var readyMaxAge =
+        loadDuration(configProvider, "health.ready.max_age", schedule.max().multipliedBy(2));
+    var readyMinRatio =
+        configProvider.get("health.ready.min_ratio").map(Double::parseDouble).orElse(0.0);
+    try {
+      return new EngineHealth.Config(heartbeatTimeout, stallTimeout, readyMaxAge, readyMinRatio);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalStateException("configuration for 'health.ready.min_ratio' not valid", e);
+    }
+  }
+
+  private EventConfig loadEvents(ConfigProvider configProvider) {
+    var enabled = configProvider.get("events.enabled").map(Boolean::parseBoolean).orElse(false);
+    var address = configProvider.get("events.address").orElse("0.0.0.0");
+    var port = configProvider.get("events.port").map(Integer::parseInt).orElse(8585);
+    var reconcile =
+        loadDuration(configProvider, "events.reconcile_interval", Duration.ofMinutes(15));
+    if (!enabled) {
+      return new EventConfig(false, address, port, null, reconcile);
+    }
+    // where the Konnektor reaches the watchdog, the listen address is usually 0.0.0.0
+    var callbackAddress = mustLoad(configProvider, "events.callback_address").orElseThrow();
+    return new EventConfig(true, address, port, callbackAddress, reconcile);
+  }
+
+  private AdaptiveSchedule.Config loadSchedule(ConfigProvider configProvider, EventConfig events) {
+    var interval = loadDuration(configProvider, "probe.interval", Duration.ofMinutes(3));
+    var min = loadDuration(configProvider, "probe.interval.min", Duration.ofSeconds(30));
+    var max = loadDuration(configProvider, "probe.interval.max", Duration.ofMinutes(15));
+    var jitter = configProvider.get("probe.jitter").map(Double::parseDouble).orElse(0.2);
+    if (events.enabled()) {
+      // events trigger the probes, polling only reconciles what may have been missed
+      interval = events.reconcile();
+      max = events.reconcile();
+      min = min.compareTo(interval) > 0 ? interval : min;
+    }
+    try {
+      return new AdaptiveSchedule.Config(interval, min, max, jitter);
+    } catch (IllegalArgumentException e) {
+      throw new IllegalStateException("configuration for 'probe.interval' not valid", e);
+    }
+  }
+
+  private OperationMetrics.Config loadOperationMetrics(ConfigProvider configProvider) {
+    var slos =
+        configProvider
+            .get("metrics.operation.slo")
+            .map(Main::splitList)
+            .orElse(List.of("PT0.1S", "PT0.5S", "PT1S", "PT5S", "PT10S", "PT30S"));
+    try {
+      var durations = slos.stream().map(Duration::parse).sorted().toList();
+      if (durations.stream().anyMatch(d -> d.isNegative() || d.isZero())) {
+        throw configNotValid("metrics.operation.slo").get();
+      }
+      var histogram =
+          configProvider
+              .get("metrics.operation.histogram")
+              .map(Boolean::parseBoolean)
+              .orElse(false);
+      return new OperationMetrics.Config(durations, histogram);
+    } catch (DateTimeParseException e) {
+      throw new IllegalStateException(
+          "configuration for 'metrics.operation.slo' not valid, expected ISO-8601 durations like"
+              + " 'PT0.5S,PT1S'",
+          e);
+    }
+  }
+
+  private Optional<OtlpPushExporter.Config> loadOtlp(ConfigProvider configProvider) {
+    var endpoint = configProvider.get("otlp.endpoint").map(URI::create);
+    if (endpoint.isEmpty()) {
+      return Optional.empty();
+    }
+    var interval = loadDuration(configProvider, "otlp.interval", Duration.ofMinutes(1));
+    var timeout = loadDuration(configProvider, "otlp.timeout", Duration.ofSeconds(10));
+    var queueSize = configProvider.get("otlp.queue_size").map(Integer::parseInt).orElse(10);
+    if (queueSize < 1) {
+      throw configNotValid("otlp.queue_size").get();
+    }
+    var headers = loadPairs(configProvider, "otlp.headers");
+    var resourceAttributes = new HashMap<>(loadPairs(configProvider, "otlp.resource_attributes"));
+    resourceAttributes.putIfAbsent("service.name", "konnektor-watchdog");
+    return Optional.of(
+        new OtlpPushExporter.Config(
+            endpoint.get(), interval, timeout, queueSize, headers, resourceAttributes));
+  }
+
+  /** comma separated {@code key=value} pairs */
+  private Map<String, String> loadPairs(ConfigProvider configProvider, String key) {
+    var pairs = new HashMap<String, String>();
+    for (var pair : configProvider.get(key).map(Main::splitList).orElse(List.of())) {
+      var i = pair.indexOf('=');
+      if (i < 1) {
+        throw new IllegalStateException(
+            "configuration for '%s' not valid, expected 'key=value,...'".formatted(key));
+      }
+      pairs.put(pair.substring(0, i).strip(), pair.substring(i + 1).strip());
+    }
+    return pairs;
+  }
+
+  private KonnektorConfig loadKonnektorConfig(ConfigProvider configProvider) {
+
+    var uri = mustLoad(configProvider, "konnektor.uri").map(URI::create).orElseThrow();
+
+    var proxyAddress = mustLoad(configProvider, "proxy.address").orElseThrow();
 
     var proxyPort = configProvider.get("proxy.port").map(Integer::parseInt).orElse(3128);
 
     var pw = configProvider.get("credentials.password").orElse("0000");
 
-    var keys =
-        configProvider
-            .get("credentials.path")
-            .map(Path::of)
-            .or(() -> Optional.of(Path.of("./credentials.p12")))
-            .map(p -> loadKeys(p, pw))
-            .orElseThrow(configNotValid("credentials.path"));
+    var credentials =
+        new Credentials(
+            configProvider
+                .get("credentials.path")
+                .map(Path::of)
+                .orElse(Path.of("./credentials.p12")),
+            pw);
 
     var workplace = configProvider.get("workplace.id").orElse("a");
 
@@ -203,11 +1064,77 @@ public class Main implements AutoCloseable {
 
     var user = configProvider.get("user.id").orElse("admin");
 
+    var cardParallelism = configProvider.get("card.parallelism").map(Integer::parseInt).orElse(4);
+    if (cardParallelism < 1) {
+      throw configNotValid("card.parallelism").get();
+    }
+
+    var cardTimeout = loadDuration(configProvider, "card.timeout", Duration.ofSeconds(10));
+
+    var probeTimeout = loadDuration(configProvider, "probe.timeout", Duration.ofSeconds(60));
+
+    var inventoryInterval =
+        loadDuration(configProvider, "inventory.interval", Duration.ofMinutes(10));
+
+    var verifiedCardInterval =
+        loadDuration(configProvider, "card.verified.interval", Duration.ofMinutes(15));
+
+    var connectionMaxAge =
+        loadDuration(configProvider, "connection.max_age", Duration.ofMinutes(30));
+
+    var connectTimeout = loadDuration(configProvider, "timeout.connect", Duration.ofSeconds(5));
+
+    var readTimeout = loadDuration(configProvider, "timeout.read", Duration.ofSeconds(15));
+
+    var breakerFailures = configProvider.get("breaker.failures").map(Integer::parseInt).orElse(3);
+    if (breakerFailures < 1) {
+      throw configNotValid("breaker.failures").get();
+    }
+
+    var breakerOpenDuration =
+        loadDuration(configProvider, "breaker.open_duration", Duration.ofMinutes(5));
+
     return new KonnektorConfig(
-        uri, proxyAddress, proxyPort, keys, workplace, mandant, clientSystem, user, address, port);
+        uri,
+        proxyAddress,
+        proxyPort,
+        credentials,
+        workplace,
+        mandant,
+        clientSystem,
+        user,
+        cardParallelism,
+        cardTimeout,
+        probeTimeout,
+        inventoryInterval,
+        verifiedCardInterval,
+        connectionMaxAge,
+        connectTimeout,
+        readTimeout,
+        breakerFailures,
+        breakerOpenDuration);
   }
 
-  private Optional<String> mustLoad(String key) {
+  private Duration loadDuration(ConfigProvider configProvider, String key, Duration defaultValue) {
+    try {
+      var d = configProvider.get(key).map(Duration::parse).orElse(defaultValue);
+      if (d.isNegative() || d.isZero()) {
+        throw configNotValid(key).get();
+      }
+      return d;
+    } catch (DateTimeParseException e) {
+      throw new IllegalStateException(
+          "configuration for '%s' not valid, expected ISO-8601 duration like 'PT10S'"
+              .formatted(key),
+          e);
+    }
+  }
+
+  private static List<String> splitList(String value) {
+    return Arrays.stream(value.split(",")).map(String::strip).filter(s -> !s.isEmpty()).toList();
+  }
+
+  private Optional<String> mustLoad(ConfigProvider configProvider, String key) {
 
     var v = configProvider.get(key);
     if (v.isEmpty()) {
@@ -226,42 +1153,39 @@ public class Main implements AutoCloseable {
     return () -> (T) new IllegalStateException("configuration for '%s' not valid".formatted(key));
   }
 
-  private KonnektorConnectionFactory buildFactory(KonnektorConfig cfg) {
+  private KonnektorConnectionFactory buildFactory(
+      KonnektorConfig cfg, List<KeyManager> clientKeys) {
     return KonnektorConnectionFactoryBuilder.newBuilder()
-        .clientKeys(cfg.clientKeys())
+        .clientKeys(clientKeys)
         .konnektorUri(cfg.konnektorUri())
         .proxyServer(cfg.proxyAddress(), cfg.proxyPort())
         .trustAllServers() // currently we don't validate the server's certificate
         .build();
   }
 
-  private List<KeyManager> loadKeys(Path keystorePath, String password) {
+  private KonnektorService buildService(KonnektorConfig cfg, KonnektorConnection conn) {
 
-    try {
-      var ks = loadKeyStore(keystorePath, password);
-
-      final KeyManagerFactory keyFactory =
-          KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
-      keyFactory.init(ks, password.toCharArray());
-      return Arrays.asList(keyFactory.getKeyManagers());
-    } catch (UnrecoverableKeyException
-        | CertificateException
-        | IOException
-        | KeyStoreException
-        | NoSuchAlgorithmException e) {
-      throw new IllegalStateException(
-          "failed to load keystore from: %s".formatted(keystorePath), e);
-    }
-  }
+    var userAgent = userAgent();
+    logger.atDebug().log("client using user-agent: {}", userAgent);
 
-  private KeyStore loadKeyStore(Path p, String password)
-      throws IOException, KeyStoreException, CertificateException, NoSuchAlgorithmException {
+    return KonnektorServiceBuilder.newBuilder()
+        .connection(conn)
+        .workplaceId(cfg.workplaceId())
+        .clientSystemId(cfg.clientSystemId())
+        .mandantId(cfg.mandantId())
+        .userId(cfg.userId())
+        .build();
+  }
 
-    try (var fis = Files.newInputStream(p)) {
-      var keyStore = KeyStore.getInstance("PKCS12");
-      keyStore.load(fis, password.toCharArray());
+  private String userAgent() {
+    var agent =
+        Optional.ofNullable(Main.class.getPackage().getImplementationTitle())
+            .orElse("konnektor-watchdog")
+            .toUpperCase(Locale.ROOT)
+            .replaceAll("[^A-Z0-9]", "_");
 
-      return keyStore;
-    }
+    var version =
+        Optional.ofNullable(Main.class.getPackage().getImplementationVersion()).orElse("0.0.1");
+    return "%s/%s".formatted(agent, version);
   }
 }
@@ -0,0 +1,103 @@
+package com.oviva.konnektor.watchdog;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Latency and outcome of every call to a Konnektor, tagged by {@code operation}, so that slowness
+ * can be attributed to connecting, listing the cards or checking a single PIN status. Once closed,
+ * calls still running are no longer recorded, their meters would otherwise be registered again.
+ */
+class OperationMetrics {
+
+  static final String CONNECT = "connect";
+  static final String LIST_CARDS = "list_cards";
+  static final String PIN_STATUS = "pin_status";
+  static final String SUBSCRIBE = "subscribe";
+
+  /**
+   * @param slos latencies published as histogram buckets, e.g. to alert on the share of slow calls
+   * @param histogram whether to also publish a full percentile histogram, many more series
+   */
+  record Config(List<Duration> slos, boolean histogram) {}
+
+  // narrows the buckets of the percentile histogram to what a Konnektor call can take
+  private static final Duration MIN_EXPECTED = Duration.ofMillis(5);
+  private static final Duration MAX_EXPECTED = Duration.ofMinutes(2);
+
+  private final String konnektor;
+  private final Config config;
+  private final MeterRegistry registry;
+
+  private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+  // guarded by this
+  private boolean closed;
+
+  OperationMetrics(String konnektor, Config config, MeterRegistry registry) {
+    this.konnektor = konnektor;
+    this.config = config;
+    this.registry = registry;
+  }
+
+  <T> T record(String operation, Supplier<T> call) {
+    var sample = Timer.start(registry);
+    String outcome = null;
+    var exception = "none";
+    try {
+      var result = call.get();
+      outcome = "success";
+      return result;
+    } catch (RuntimeException e) {
+      outcome = "failure";
+      exception = e.getClass().getSimpleName();
+      throw e;
+    } finally {
+      recorded(operation, sample, outcome, exception);
+    }
+  }
+
+  /** stops recording, the meters are left to the caller to remove */
+  synchronized void close() {
+    closed = true;
+  }
+
+  // registering meters must not race with close, the caller removes them right after
+  private synchronized void recorded(
+      String operation, Timer.Sample sample, String outcome, String exception) {
+    if (closed) {
+      return;
+    }
+    if (outcome != null) {
+      outcome(operation, outcome, exception).increment();
+    }
+    sample.stop(timers.computeIfAbsent(operation, this::timer));
+  }
+
+  private Timer timer(String operation) {
+    return Timer.builder("konnektor_operation")
+        .description("latency of calls to the konnektor, by operation")
+        .tag("konnektor", konnektor)
+        .tag("operation", operation)
+        .serviceLevelObjectives(config.slos().toArray(Duration[]::new))
+        .publishPercentileHistogram(config.histogram())
+        .minimumExpectedValue(MIN_EXPECTED)
+        .maximumExpectedValue(MAX_EXPECTED)
+        .register(registry);
+  }
+
+  private Counter outcome(String operation, String outcome, String exception) {
+    return Counter.builder("konnektor_operation_outcomes")
+        .description("calls to the konnektor, by operation, outcome and exception type")
+        .tag("konnektor", konnektor)
+        .tag("operation", operation)
+        .tag("outcome", outcome)
+        .tag("exception", exception)
+        .register(registry);
+  }
+}
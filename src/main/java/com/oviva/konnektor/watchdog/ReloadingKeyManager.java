@@ -0,0 +1,199 @@
+package com.oviva.konnektor.watchdog;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.Principal;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.X509ExtendedKeyManager;
+
+/**
+ * The TLS client keys of a PKCS#12 keystore that can be swapped while in use. Every handshake asks
+ * the key manager for the key again, so connections opened after a {@link #reload()} present the
+ * new certificate without rebuilding the CXF clients, open connections keep the old one until they
+ * are closed.
+ *
+ * <p>{@link #reload()} is called from one thread at a time, lookups from any number of threads.
+ */
+class ReloadingKeyManager extends X509ExtendedKeyManager {
+
+  private record Keys(
+      long version,
+      byte[] content,
+      X509ExtendedKeyManager delegate,
+      Map<String, X509Certificate> certificates) {}
+
+  private final Path path;
+  private final String password;
+  private volatile Keys keys;
+  // for handshakes that chose their alias right before the swap
+  private volatile Keys previous;
+
+  private ReloadingKeyManager(Path path, String password, Keys keys) {
+    this.path = path;
+    this.password = password;
+    this.keys = keys;
+  }
+
+  /**
+   * @throws IllegalStateException if the keystore can not be read
+   */
+  static ReloadingKeyManager load(Path path, String password) {
+    try {
+      var content = Files.readAllBytes(path);
+      return new ReloadingKeyManager(path, password, parse(1, content, password));
+    } catch (IOException | GeneralSecurityException e) {
+      throw new IllegalStateException("failed to load keystore from: %s".formatted(path), e);
+    }
+  }
+
+  /**
+   * reads the keystore again and swaps the keys if its content changed. A keystore that can not be
+   * read, e.g. because it is being written, leaves the current keys in place and is read again on
+   * the next call.
+   *
+   * @return {@code true} if the keys were swapped
+   * @throws IllegalStateException if the keystore can not be read
+   */
+  boolean reload() {
+    try {
+      var content = Files.readAllBytes(path);
+      var current = keys;
+      if (Arrays.equals(content, current.content())) {
+        return false;
+      }
+      var next = parse(current.version() + 1, content, password);
+      previous = current;
+      keys = next;
+      return true;
+    } catch (IOException | GeneralSecurityException e) {
+      throw new IllegalStateException("failed to reload keystore from: %s".formatted(path), e);
+    }
+  }
+
+  Path path() {
+    return path;
+  }
+
+  /** the certificate of every key entry by alias */
+  Map<String, X509Certificate> certificates() {
+    return keys.certificates();
+  }
+
+  private static Keys parse(long version, byte[] content, String password)
+      throws IOException, GeneralSecurityException {
+    var keyStore = KeyStore.getInstance("PKCS12");
+    keyStore.load(new ByteArrayInputStream(content), password.toCharArray());
+
+    var certificates = new TreeMap<String, X509Certificate>();
+    for (var alias : Collections.list(keyStore.aliases())) {
+      if (keyStore.isKeyEntry(alias)
+          && keyStore.getCertificate(alias) instanceof X509Certificate certificate) {
+        certificates.put(alias, certificate);
+      }
+    }
+
+    var factory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+    factory.init(keyStore, password.toCharArray());
+    for (var km : factory.getKeyManagers()) {
+      if (km instanceof X509ExtendedKeyManager x509) {
+        return new Keys(version, content, x509, Collections.unmodifiableMap(certificates));
+      }
+    }
+    throw new GeneralSecurityException("no X.509 key manager for keystore");
+  }
+
+  @Override
+  public String[] getClientAliases(String keyType, Principal[] issuers) {
+    var k = keys;
+    return versioned(k, k.delegate().getClientAliases(keyType, issuers));
+  }
+
+  @Override
+  public String chooseClientAlias(String[] keyType, Principal[] issuers, Socket socket) {
+    var k = keys;
+    return versioned(k, k.delegate().chooseClientAlias(keyType, issuers, socket));
+  }
+
+  @Override
+  public String chooseEngineClientAlias(String[] keyType, Principal[] issuers, SSLEngine engine) {
+    var k = keys;
+    return versioned(k, k.delegate().chooseEngineClientAlias(keyType, issuers, engine));
+  }
+
+  @Override
+  public String[] getServerAliases(String keyType, Principal[] issuers) {
+    var k = keys;
+    return versioned(k, k.delegate().getServerAliases(keyType, issuers));
+  }
+
+  @Override
+  public String chooseServerAlias(String keyType, Principal[] issuers, Socket socket) {
+    var k = keys;
+    return versioned(k, k.delegate().chooseServerAlias(keyType, issuers, socket));
+  }
+
+  @Override
+  public String chooseEngineServerAlias(String keyType, Principal[] issuers, SSLEngine engine) {
+    var k = keys;
+    return versioned(k, k.delegate().chooseEngineServerAlias(keyType, issuers, engine));
+  }
+
+  @Override
+  public X509Certificate[] getCertificateChain(String alias) {
+    var k = keysOf(alias);
+    return k == null ? null : k.delegate().getCertificateChain(unversioned(alias));
+  }
+
+  @Override
+  public PrivateKey getPrivateKey(String alias) {
+    var k = keysOf(alias);
+    return k == null ? null : k.delegate().getPrivateKey(unversioned(alias));
+  }
+
+  // the handshake asks for the alias first and for its key and chain later, the version in the
+  // alias makes sure all three come from the same keystore even if it is swapped in between
+
+  private static String versioned(Keys keys, String alias) {
+    return alias == null ? null : keys.version() + ":" + alias;
+  }
+
+  private static String[] versioned(Keys keys, String[] aliases) {
+    if (aliases == null) {
+      return null;
+    }
+    return Arrays.stream(aliases).map(a -> versioned(keys, a)).toArray(String[]::new);
+  }
+
+  private static String unversioned(String alias) {
+    return alias.substring(alias.indexOf(':') + 1);
+  }
+
+  /** the keys the alias was chosen from, {@code null} if they were swapped more than once since */
+  private Keys keysOf(String alias) {
+    if (alias == null) {
+      return null;
+    }
+    var k = keys;
+    var version = alias.substring(0, Math.max(0, alias.indexOf(':')));
+    if (version.equals(Long.toString(k.version()))) {
+      return k;
+    }
+    var p = previous;
+    if (p != null && version.equals(Long.toString(p.version()))) {
+      return p;
+    }
+    return null;
+  }
+}
@@ -0,0 +1,114 @@
+package com.oviva.konnektor.watchdog;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the series of a metric with free-text labels bounded, shared by the gauges of all
+ * Konnektors. A series is only registered while a slot is free, per Konnektor and in total, what
+ * does not fit goes into an overflow series of its Konnektor and is counted in {@code
+ * watchdog_series_dropped_total}.
+ *
+ * <p>Label values are stripped, truncated and interned, the holder of a card is held once however
+ * often it is probed. The label table is cleared once full, it only saves memory and is never
+ * needed for correctness.
+ *
+ * <p>Thread-safe.
+ */
+class SeriesLimits {
+
+  /** the label value of every label of an overflow series */
+  static final String OVERFLOW = "overflow";
+
+  static final int MAX_LABEL_LENGTH = 128;
+
+  /**
+   * @param maxPerKonnektor series of one Konnektor, not counting its overflow series
+   * @param maxTotal series of all Konnektors together
+   */
+  record Config(int maxPerKonnektor, int maxTotal) {
+
+    Config {
+      if (maxPerKonnektor < 1 || maxTotal < 1) {
+        throw new IllegalArgumentException(
+            "expected limits >= 1, got maxPerKonnektor=%d maxTotal=%d"
+                .formatted(maxPerKonnektor, maxTotal));
+      }
+    }
+  }
+
+  private final Config config;
+  private final Counter dropped;
+  private final AtomicInteger used = new AtomicInteger();
+
+  private final ConcurrentHashMap<String, String> labels = new ConcurrentHashMap<>();
+  private final int maxLabels;
+
+  SeriesLimits(String metric, Config config, MeterRegistry registry) {
+    this.config = config;
+    // a few distinct values per series
+    this.maxLabels = (int) Math.min(Integer.MAX_VALUE, 4L * config.maxTotal());
+    this.dropped =
+        Counter.builder("watchdog_series_dropped")
+            .description("series not exported because a limit was reached, by metric")
+            .tag("metric", metric)
+            .register(registry);
+  }
+
+  int maxPerKonnektor() {
+    return config.maxPerKonnektor();
+  }
+
+  /**
+   * @return {@code true} if a slot was free and is now taken, it must be {@link #release(int)
+   *     released} once the series is removed
+   */
+  boolean tryAcquire() {
+    while (true) {
+      var current = used.get();
+      if (current >= config.maxTotal()) {
+        return false;
+      }
+      if (used.compareAndSet(current, current + 1)) {
+        return true;
+      }
+    }
+  }
+
+  void release(int slots) {
+    used.addAndGet(-slots);
+  }
+
+  /** the number of slots taken */
+  int used() {
+    return used.get();
+  }
+
+  /** counts a series that did not fit */
+  void dropped() {
+    dropped.increment();
+  }
+
+  /** the canonical instance of a label value, {@code null} becomes the empty string */
+  String label(String value) {
+    if (value == null) {
+      return "";
+    }
+    var normalized = value.strip();
+    if (normalized.length() > MAX_LABEL_LENGTH) {
+      normalized = normalized.substring(0, MAX_LABEL_LENGTH);
+    }
+    var interned = labels.get(normalized);
+    if (interned != null) {
+      return interned;
+    }
+    if (labels.size() >= maxLabels) {
+      // mostly values of cards long gone, the current ones are interned again on their next probe
+      labels.clear();
+    }
+    interned = labels.putIfAbsent(normalized, normalized);
+    return interned == null ? normalized : interned;
+  }
+}
@@ -0,0 +1,49 @@
+package com.oviva.konnektor.watchdog;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.lang.management.ManagementFactory;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Records when each startup phase finished as {@code watchdog_startup_seconds}, counted from the
+ * start of the JVM so that class loading and JIT warmup are included. Comparing the {@code ready}
+ * phase across releases shows whether startup got slower.
+ */
+class StartupPhases {
+
+  static final String HTTP = "http";
+  static final String KEYSTORES = "keystores";
+  static final String CLIENT = "client";
+  static final String INITIALIZED = "initialized";
+  static final String READY = "ready";
+
+  private static final Logger logger = LoggerFactory.getLogger(StartupPhases.class);
+
+  private final MeterRegistry registry;
+  private final LongSupplier uptimeMillis;
+
+  StartupPhases(MeterRegistry registry) {
+    this(registry, () -> ManagementFactory.getRuntimeMXBean().getUptime());
+  }
+
+  StartupPhases(MeterRegistry registry, LongSupplier uptimeMillis) {
+    this.registry = registry;
+    this.uptimeMillis = uptimeMillis;
+  }
+
+  void done(String phase) {
+    var seconds = uptimeMillis.getAsLong() / 1000.0;
+    Gauge.builder("watchdog_startup_seconds", () -> seconds)
+        .description("seconds after the start of the JVM a startup phase finished")
+        .tag("phase", phase)
+        .strongReference(true)
+        .register(registry);
+    logger
+        .atInfo()
+        .addKeyValue("phase", phase)
+        .log("startup phase {} done after {}s", phase, seconds);
+  }
+}
@@ -0,0 +1,76 @@
+package com.oviva.konnektor.watchdog;
+
+import com.oviva.epa.client.konn.KonnektorConnection;
+import com.oviva.epa.client.konn.KonnektorConnectionFactory;
+import com.oviva.epa.client.model.KonnektorException;
+import jakarta.xml.ws.BindingProvider;
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.apache.cxf.message.Message;
+
+/**
+ * Bounds the time spent on an unreachable proxy or Konnektor. Connecting, i.e. fetching the
+ * service-discovery document, must finish within {@code overallTimeout}. SOAP calls on the
+ * resulting connection get TCP connect and read timeouts instead of the CXF defaults of 30 and 60
+ * seconds.
+ */
+class TimeoutConnectionFactory implements KonnektorConnectionFactory {
+
+  private final KonnektorConnectionFactory delegate;
+  private final ExecutorService executor;
+  private final Duration overallTimeout;
+  private final Duration connectTimeout;
+  private final Duration readTimeout;
+
+  TimeoutConnectionFactory(
+      KonnektorConnectionFactory delegate,
+      ExecutorService executor,
+      Duration overallTimeout,
+      Duration connectTimeout,
+      Duration readTimeout) {
+    this.delegate = delegate;
+    this.executor = executor;
+    this.overallTimeout = overallTimeout;
+    this.connectTimeout = connectTimeout;
+    this.readTimeout = readTimeout;
+  }
+
+  @Override
+  public KonnektorConnection connect() {
+    var future = executor.submit(delegate::connect);
+    KonnektorConnection conn;
+    try {
+      conn = future.get(overallTimeout.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      future.cancel(true);
+      throw new KonnektorException(
+          "connecting to konnektor timed out after %s".formatted(overallTimeout), e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException re) {
+        throw re;
+      }
+      throw new KonnektorException("connecting to konnektor failed", e.getCause());
+    } catch (InterruptedException e) {
+      future.cancel(true);
+      Thread.currentThread().interrupt();
+      throw new KonnektorException("interrupted while connecting to konnektor", e);
+    }
+
+    applyTimeouts(conn.eventService());
+    applyTimeouts(conn.cardService());
+    applyTimeouts(conn.certificateService());
+    applyTimeouts(conn.authSignatureService());
+    return conn;
+  }
+
+  private void applyTimeouts(Object port) {
+    if (port instanceof BindingProvider bp) {
+      var ctx = bp.getRequestContext();
+      ctx.put(Message.CONNECTION_TIMEOUT, connectTimeout.toMillis());
+      ctx.put(Message.RECEIVE_TIMEOUT, readTimeout.toMillis());
+    }
+  }
+}
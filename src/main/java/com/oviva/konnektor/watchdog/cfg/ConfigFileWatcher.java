@@ -0,0 +1,162 @@
+package com.oviva.konnektor.watchdog.cfg;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Watches a configuration file and hands every changed version that parses to a listener, on the
+ * watcher's own thread and one at a time.
+ *
+ * <p>The whole directory is watched and the content compared, rather than events filtered by file
+ * name: Kubernetes updates a mounted ConfigMap by swapping a symlink, the file itself never shows
+ * up in an event. Events are collected for {@code settle} before the file is read, so that an
+ * editor writing in several steps causes one reload.
+ */
+public class ConfigFileWatcher implements AutoCloseable {
+
+  private static final Logger logger = LoggerFactory.getLogger(ConfigFileWatcher.class);
+
+  private final Path file;
+  private final Duration settle;
+  private final WatchService watchService;
+  private final Thread thread;
+  private final FileConfigProvider loaded;
+
+  // only accessed by the watcher thread once started
+  private String content;
+  private Consumer<FileConfigProvider> listener;
+
+  private ConfigFileWatcher(Path file, Duration settle) throws IOException {
+    this.file = file;
+    this.settle = settle;
+    this.watchService = file.getFileSystem().newWatchService();
+    try {
+      // registered before the file is read, a change in between is not missed
+      directory().register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+      this.content = read(file);
+      this.loaded = FileConfigProvider.parse(content);
+    } catch (IOException | IllegalArgumentException e) {
+      watchService.close();
+      throw e;
+    }
+    this.thread = new Thread(this::watch, "config-watcher");
+    thread.setDaemon(true);
+  }
+
+  /**
+   * reads the file and watches its directory, changes are only handed out once {@link
+   * #start(Consumer) started}
+   *
+   * @throws IllegalStateException if the file can not be read or is not a valid properties file
+   */
+  public static ConfigFileWatcher open(Path file, Duration settle) {
+    try {
+      return new ConfigFileWatcher(file, settle);
+    } catch (IOException | IllegalArgumentException e) {
+      throw new IllegalStateException("failed to read configuration from %s".formatted(file), e);
+    }
+  }
+
+  /** the file as it was when opened */
+  public FileConfigProvider loaded() {
+    return loaded;
+  }
+
+  public void start(Consumer<FileConfigProvider> listener) {
+    this.listener = listener;
+    thread.start();
+    logger.atInfo().log("watching {} for configuration changes", file);
+  }
+
+  private void watch() {
+    try {
+      while (true) {
+        var key = watchService.take();
+        // more events of the same change
+        Thread.sleep(settle.toMillis());
+        key.pollEvents();
+        key.reset();
+        for (var more = watchService.poll(); more != null; more = watchService.poll()) {
+          more.pollEvents();
+          more.reset();
+        }
+        check();
+      }
+    } catch (ClosedWatchServiceException e) {
+      // closed
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void check() {
+    String current;
+    try {
+      current = read(file);
+    } catch (NoSuchFileException e) {
+      // e.g. between delete and create while the file is replaced
+      logger.atDebug().log("configuration {} vanished, waiting for it to come back", file);
+      return;
+    } catch (IOException e) {
+      logger.atWarn().setCause(e).log("failed to read configuration {}", file);
+      return;
+    }
+    if (current.equals(content)) {
+      return;
+    }
+    content = current;
+
+    FileConfigProvider parsed;
+    try {
+      parsed = FileConfigProvider.parse(current);
+    } catch (IOException | IllegalArgumentException e) {
+      logger
+          .atError()
+          .setCause(e)
+          .log("configuration {} is not a valid properties file, ignoring the change", file);
+      return;
+    }
+    logger.atInfo().log("configuration {} changed", file);
+    try {
+      listener.accept(parsed);
+    } catch (RuntimeException e) {
+      // must not stop watching
+      logger.atError().setCause(e).log("failed to apply configuration {}", file);
+    }
+  }
+
+  private Path directory() {
+    var parent = file.toAbsolutePath().getParent();
+    return parent == null ? file.toAbsolutePath().getRoot() : parent;
+  }
+
+  private static String read(Path file) throws IOException {
+    return Files.readString(file, StandardCharsets.UTF_8);
+  }
+
+  @Override
+  public void close() {
+    try {
+      watchService.close();
+      thread.join(TimeUnit.SECONDS.toMillis(5));
+    } catch (IOException e) {
+      logger.atDebug().log("failed to close watch service: {}", e.toString());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -1,14 +1,21 @@
 package com.oviva.konnektor.watchdog.cfg;
 
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
 
 public class EnvConfigProvider implements ConfigProvider {
 
+  private static final Pattern NOT_ALLOWED = Pattern.compile("[^A-Z0-9]");
+
   private final String prefix;
   private final Function<String, String> getenv;
+  // the set of names is small and fixed, every reload looks up the same ones again
+  private final Map<String, String> mangled = new ConcurrentHashMap<>();
 
   public EnvConfigProvider(String prefix, UnaryOperator<String> getenv) {
     this.prefix = prefix;
@@ -17,11 +24,11 @@ public class EnvConfigProvider implements ConfigProvider {
 
   @Override
   public Optional<String> get(String name) {
+    return Optional.ofNullable(getenv.apply(mangled.computeIfAbsent(name, this::mangle)));
+  }
 
-    var mangled = prefix + "_" + name;
-    mangled = mangled.toUpperCase(Locale.ROOT);
-    mangled = mangled.replaceAll("[^A-Z0-9]", "_");
-
-    return Optional.ofNullable(getenv.apply(mangled));
+  private String mangle(String name) {
+    var upper = (prefix + "_" + name).toUpperCase(Locale.ROOT);
+    return NOT_ALLOWED.matcher(upper).replaceAll("_");
   }
 }
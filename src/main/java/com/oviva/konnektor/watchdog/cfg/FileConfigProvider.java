@@ -0,0 +1,36 @@
+package com.oviva.konnektor.watchdog.cfg;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * An immutable snapshot of a properties file, keys are the same as for {@link EnvConfigProvider}
+ * without prefix, e.g. {@code konnektors.lab.konnektor.uri}.
+ */
+public class FileConfigProvider implements ConfigProvider {
+
+  private final Map<String, String> values;
+
+  FileConfigProvider(Map<String, String> values) {
+    this.values = Map.copyOf(values);
+  }
+
+  static FileConfigProvider parse(String content) throws IOException {
+    var properties = new Properties();
+    properties.load(new StringReader(content));
+    var values = new HashMap<String, String>();
+    for (var name : properties.stringPropertyNames()) {
+      values.put(name, properties.getProperty(name).strip());
+    }
+    return new FileConfigProvider(values);
+  }
+
+  @Override
+  public Optional<String> get(String name) {
+    return Optional.ofNullable(values.get(name));
+  }
+}
@@ -0,0 +1,28 @@
+package com.oviva.konnektor.watchdog.cfg;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Looks up a name in each layer in turn, the first layer that has a value wins. Defaults are not a
+ * layer, they stay where the value is read.
+ */
+public class LayeredConfigProvider implements ConfigProvider {
+
+  private final List<ConfigProvider> layers;
+
+  public LayeredConfigProvider(List<ConfigProvider> layers) {
+    this.layers = List.copyOf(layers);
+  }
+
+  @Override
+  public Optional<String> get(String name) {
+    for (var layer : layers) {
+      var value = layer.get(name);
+      if (value.isPresent()) {
+        return value;
+      }
+    }
+    return Optional.empty();
+  }
+}
@@ -0,0 +1,23 @@
+package com.oviva.konnektor.watchdog.cfg;
+
+import java.util.Optional;
+
+/**
+ * Looks up {@code <scope>.<name>} first and falls back to the unscoped {@code <name>}, e.g. for
+ * settings shared by all Konnektors of a fleet.
+ */
+public class ScopedConfigProvider implements ConfigProvider {
+
+  private final String scope;
+  private final ConfigProvider parent;
+
+  public ScopedConfigProvider(String scope, ConfigProvider parent) {
+    this.scope = scope;
+    this.parent = parent;
+  }
+
+  @Override
+  public Optional<String> get(String name) {
+    return parent.get(scope + "." + name).or(() -> parent.get(name));
+  }
+}
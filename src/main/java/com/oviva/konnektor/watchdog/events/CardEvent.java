@@ -0,0 +1,25 @@
+package com.oviva.konnektor.watchdog.events;
+
+/**
+ * A card event pushed by a Konnektor, see gematik TIP1-A_4587 ff. for the topics.
+ *
+ * @param cardHandle the card the event is about, {@code null} if the event has none
+ * @param cardType e.g. {@code SMC-B}, {@code null} if the event has none
+ */
+public record CardEvent(String subscriptionId, String topic, String cardHandle, String cardType) {
+
+  /** a card was inserted into or removed from a card terminal */
+  public boolean isInventoryChange() {
+    return "CARD/INSERTED".equals(topic) || "CARD/REMOVED".equals(topic);
+  }
+
+  /** a PIN of the card was verified, changed, unblocked etc. */
+  public boolean isPinChange() {
+    return topic != null && topic.startsWith("CARD/PIN/") && topic.endsWith("_FINISHED");
+  }
+
+  /** whether the event concerns an SMC-B, the only cards the watchdog looks at */
+  public boolean isSmcB() {
+    return cardType == null || "SMC-B".equals(cardType);
+  }
+}
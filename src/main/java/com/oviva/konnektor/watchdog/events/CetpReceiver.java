@@ -0,0 +1,210 @@
+package com.oviva.konnektor.watchdog.events;
+
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBException;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import telematik.ws.conn.eventservice.xsd.v6_1.Event;
+
+/**
+ * Receives events Konnektors push over CETP. Every frame is the ASCII magic {@code CETP}, the
+ * length of the payload as 4 byte big-endian integer and the payload, an {@code EVT:Event} XML
+ * document. A Konnektor may send any number of frames over one connection.
+ *
+ * <p>Only plain TCP is supported, Konnektors requiring TLS for CETP can not deliver events.
+ */
+public class CetpReceiver implements AutoCloseable {
+
+  public static final String SCHEME = "cetp";
+
+  private static final Logger logger = LoggerFactory.getLogger(CetpReceiver.class);
+
+  private static final int MAGIC = 0x43455450; // "CETP"
+  // events are a few hundred bytes, anything larger is not a Konnektor talking
+  private static final int MAX_FRAME = 64 * 1024;
+  // Konnektors keep the connection open between events
+  private static final Duration IDLE_TIMEOUT = Duration.ofMinutes(30);
+  // e.g. out of file descriptors, accepting right away again would fail the same way
+  static final Duration ACCEPT_BACKOFF = Duration.ofMillis(100);
+  static final Duration ACCEPT_MAX_BACKOFF = Duration.ofSeconds(5);
+
+  private final JAXBContext jaxb;
+  private final XMLInputFactory xml;
+  private final ServerSocket socket;
+  private final ExecutorService executor;
+  private final Consumer<CardEvent> listener;
+
+  private CetpReceiver(ServerSocket socket, ExecutorService executor, Consumer<CardEvent> listener)
+      throws JAXBException {
+    this.jaxb = JAXBContext.newInstance(Event.class);
+    this.xml = XMLInputFactory.newFactory();
+    xml.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    xml.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    this.socket = socket;
+    this.executor = executor;
+    this.listener = listener;
+  }
+
+  /**
+   * @param executor runs the accept loop and one task per connection
+   */
+  public static CetpReceiver start(
+      String address, int port, ExecutorService executor, Consumer<CardEvent> listener) {
+    ServerSocket socket = null;
+    try {
+      socket = new ServerSocket();
+      socket.bind(new InetSocketAddress(InetAddress.getByName(address), port));
+      var receiver = start(socket, executor, listener);
+      logger.atInfo().log("receiving konnektor events at {}:{}", address, receiver.port());
+      return receiver;
+    } catch (IOException e) {
+      closeQuietly(socket);
+      throw new UncheckedIOException(
+          "failed to listen for events at %s:%d".formatted(address, port), e);
+    } catch (RuntimeException e) {
+      closeQuietly(socket);
+      throw e;
+    }
+  }
+
+  /** receives on a socket that is already bound */
+  static CetpReceiver start(
+      ServerSocket socket, ExecutorService executor, Consumer<CardEvent> listener) {
+    try {
+      var receiver = new CetpReceiver(socket, executor, listener);
+      executor.execute(receiver::accept);
+      return receiver;
+    } catch (JAXBException e) {
+      throw new IllegalStateException("failed to initialize event parsing", e);
+    }
+  }
+
+  public int port() {
+    return socket.getLocalPort();
+  }
+
+  @Override
+  public void close() {
+    closeQuietly(socket);
+  }
+
+  private void accept() {
+    var backoff = ACCEPT_BACKOFF;
+    while (!socket.isClosed()) {
+      try {
+        var connection = socket.accept();
+        executor.execute(() -> receive(connection));
+        backoff = ACCEPT_BACKOFF;
+      } catch (IOException e) {
+        if (socket.isClosed()) {
+          return;
+        }
+        logger
+            .atWarn()
+            .log("failed to accept event connection, retrying in {}: {}", backoff, e.toString());
+        try {
+          Thread.sleep(backoff.toMillis());
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        backoff = min(backoff.multipliedBy(2), ACCEPT_MAX_BACKOFF);
+      }
+    }
+  }
+
+  private static Duration min(Duration a, Duration b) {
+    return a.compareTo(b) <= 0 ? a : b;
+  }
+
+  private void receive(Socket connection) {
+    var remote = connection.getRemoteSocketAddress();
+    try (connection) {
+      connection.setSoTimeout((int) IDLE_TIMEOUT.toMillis());
+      var in = new DataInputStream(connection.getInputStream());
+      while (true) {
+        var payload = readFrame(in);
+        if (payload == null) {
+          return;
+        }
+        dispatch(parse(payload));
+      }
+    } catch (IOException | JAXBException | XMLStreamException e) {
+      logger.atWarn().log("dropping event connection from {}: {}", remote, e.toString());
+    }
+  }
+
+  /**
+   * @return the payload, {@code null} at the end of the stream
+   */
+  static byte[] readFrame(DataInputStream in) throws IOException {
+    int magic;
+    try {
+      magic = in.readInt();
+    } catch (EOFException e) {
+      return null;
+    }
+    if (magic != MAGIC) {
+      throw new IOException("not a CETP frame, magic was 0x%08x".formatted(magic));
+    }
+    var length = in.readInt();
+    if (length < 0 || length > MAX_FRAME) {
+      throw new IOException("CETP frame of %d bytes exceeds the limit".formatted(length));
+    }
+    var payload = new byte[length];
+    in.readFully(payload);
+    return payload;
+  }
+
+  private CardEvent parse(byte[] payload) throws JAXBException, XMLStreamException {
+    // events come from the network, no DTDs and external entities
+    var reader = xml.createXMLStreamReader(new ByteArrayInputStream(payload));
+    var event = jaxb.createUnmarshaller().unmarshal(reader, Event.class).getValue();
+    String cardHandle = null;
+    String cardType = null;
+    if (event.getMessage() != null) {
+      for (var p : event.getMessage().getParameter()) {
+        if ("CardHandle".equals(p.getKey())) {
+          cardHandle = p.getValue();
+        } else if ("CardType".equals(p.getKey())) {
+          cardType = p.getValue();
+        }
+      }
+    }
+    return new CardEvent(event.getSubscriptionID(), event.getTopic(), cardHandle, cardType);
+  }
+
+  private void dispatch(CardEvent event) {
+    logger.atDebug().log("received event {}", event);
+    try {
+      listener.accept(event);
+    } catch (RuntimeException e) {
+      logger.atError().setCause(e).log("failed to handle event {}", event);
+    }
+  }
+
+  private static void closeQuietly(ServerSocket socket) {
+    if (socket == null) {
+      return;
+    }
+    try {
+      socket.close();
+    } catch (IOException e) {
+      // closing anyway
+    }
+  }
+}
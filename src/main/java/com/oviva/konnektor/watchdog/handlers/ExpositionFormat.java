@@ -0,0 +1,89 @@
+package com.oviva.konnektor.watchdog.handlers;
+
+import io.prometheus.metrics.expositionformats.OpenMetricsTextFormatWriter;
+import io.prometheus.metrics.expositionformats.PrometheusProtobufWriter;
+import io.prometheus.metrics.expositionformats.PrometheusTextFormatWriter;
+import java.util.Locale;
+
+/** The formats {@code /metrics} can be scraped in, negotiated by the {@code Accept} header. */
+public enum ExpositionFormat {
+  TEXT(PrometheusTextFormatWriter.CONTENT_TYPE),
+  OPENMETRICS(OpenMetricsTextFormatWriter.CONTENT_TYPE),
+  PROTOBUF(PrometheusProtobufWriter.CONTENT_TYPE);
+
+  private static final String PROTOBUF_MEDIA_TYPE = "application/vnd.google.protobuf";
+  private static final String PROTOBUF_PROTO = "io.prometheus.client.MetricFamily";
+
+  private final String contentType;
+
+  ExpositionFormat(String contentType) {
+    this.contentType = contentType;
+  }
+
+  public String contentType() {
+    return contentType;
+  }
+
+  /**
+   * picks the format with the highest quality in the {@code Accept} header, on a tie the one listed
+   * first. Falls back to {@link #TEXT} if the client accepts none of them.
+   */
+  public static ExpositionFormat negotiate(Iterable<String> accept) {
+    if (accept == null) {
+      return TEXT;
+    }
+
+    var best = TEXT;
+    var bestQuality = 0.0;
+    for (var header : accept) {
+      for (var range : header.split(",")) {
+        var params = range.split(";");
+        var format = match(params);
+        if (format == null) {
+          continue;
+        }
+        var quality = quality(params);
+        if (quality > bestQuality) {
+          best = format;
+          bestQuality = quality;
+        }
+      }
+    }
+    return best;
+  }
+
+  private static ExpositionFormat match(String[] params) {
+    var mediaType = params[0].trim().toLowerCase(Locale.ROOT);
+    return switch (mediaType) {
+      case "text/plain", "text/*", "*/*" -> TEXT;
+      case "application/openmetrics-text" -> OPENMETRICS;
+      case PROTOBUF_MEDIA_TYPE -> isDelimitedMetricFamily(params) ? PROTOBUF : null;
+      default -> null;
+    };
+  }
+
+  private static boolean isDelimitedMetricFamily(String[] params) {
+    var proto = false;
+    var delimited = false;
+    for (int i = 1; i < params.length; i++) {
+      var param = params[i].trim();
+      proto |= param.equals("proto=" + PROTOBUF_PROTO);
+      delimited |= param.equals("encoding=delimited");
+    }
+    return proto && delimited;
+  }
+
+  private static double quality(String[] params) {
+    for (int i = 1; i < params.length; i++) {
+      var param = params[i].trim();
+      if (param.startsWith("q=")) {
+        try {
+          return Double.parseDouble(param.substring(2));
+        } catch (NumberFormatException e) {
+          return 0;
+        }
+      }
+    }
+    return 1;
+  }
+}
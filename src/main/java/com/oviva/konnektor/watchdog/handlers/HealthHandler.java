@@ -1,28 +1,59 @@
 package com.oviva.konnektor.watchdog.handlers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Answers a health check with 200 or 503 and its details as JSON. Checks only look at state the
+ * watchdog already holds, they are answered right on the IO thread so that a busy executor can not
+ * make Kubernetes probes time out.
+ */
 public class HealthHandler implements HttpHandler {
 
-  private IsUp isUp;
+  private static final Logger logger = LoggerFactory.getLogger(HealthHandler.class);
+
+  private static final ObjectMapper json = new ObjectMapper();
+  private static final byte[] DOWN = "{\"status\":\"DOWN\"}".getBytes(StandardCharsets.UTF_8);
+
+  private final Check check;
+
+  public HealthHandler(Check check) {
+    this.check = check;
+  }
 
   @Override
   public void handleRequest(HttpServerExchange exchange) throws Exception {
 
     var up = false;
+    var body = DOWN;
     try {
-      up = isUp.isUp();
+      var health = check.check();
+      body = json.writeValueAsBytes(health.details());
+      up = health.up();
     } catch (Exception e) {
       // all fine, its down
+      logger.atDebug().log("health check failed: {}", e.toString());
     }
 
-    var status = up ? 200 : 503;
-    exchange.setStatusCode(status);
-    exchange.endExchange();
+    exchange.setStatusCode(up ? StatusCodes.OK : StatusCodes.SERVICE_UNAVAILABLE);
+    exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+    exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "no-store");
+    exchange.getResponseSender().send(ByteBuffer.wrap(body));
   }
 
-  interface IsUp {
-    boolean isUp();
+  /**
+   * @param details serialized as the JSON body
+   */
+  public record Health(boolean up, Object details) {}
+
+  public interface Check {
+    Health check();
   }
 }
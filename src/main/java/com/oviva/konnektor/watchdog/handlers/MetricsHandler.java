@@ -2,31 +2,114 @@ package com.oviva.konnektor.watchdog.handlers;
 
 import io.undertow.server.HttpHandler;
 import io.undertow.server.HttpServerExchange;
-import io.undertow.util.HttpString;
-import java.nio.charset.StandardCharsets;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.concurrent.Executor;
 
+/**
+ * Serves the Prometheus scrape, rendered on the given executor rather than the IO thread. The
+ * format is negotiated by the {@code Accept} header, see {@link ExpositionFormat}. The payload
+ * comes from a {@link ScrapeCache}, gzipped if the client accepts it and with an ETag so that
+ * unchanged scrapes are answered with 304.
+ */
 public class MetricsHandler implements HttpHandler {
 
-  private final PrometheusMetrics metrics;
+  private final ScrapeCache cache;
+  private final Executor executor;
 
-  public MetricsHandler(PrometheusMetrics metrics) {
-    this.metrics = metrics;
+  public MetricsHandler(ScrapeCache cache, Executor executor) {
+    this.cache = cache;
+    this.executor = executor;
   }
 
   @Override
   public void handleRequest(HttpServerExchange exchange) throws Exception {
 
-    var res = metrics.scrape();
+    if (exchange.isInIoThread()) {
+      // a slow gauge must not stall the IO thread shared by all connections
+      exchange.dispatch(executor, this);
+      return;
+    }
 
-    exchange.setStatusCode(200);
-    exchange
-        .getResponseHeaders()
-        .put(HttpString.tryFromString("content-type"), "text/plain; version=0.0.4");
-    exchange.getResponseSender().send(res, StandardCharsets.UTF_8);
-    exchange.endExchange();
+    var format = ExpositionFormat.negotiate(exchange.getRequestHeaders().get(Headers.ACCEPT));
+    var payload = cache.get(format);
+
+    var gzip = acceptsGzip(exchange.getRequestHeaders().get(Headers.ACCEPT_ENCODING));
+    var etag = gzip ? payload.gzipEtag() : payload.etag();
+
+    var headers = exchange.getResponseHeaders();
+    headers.put(Headers.ETAG, etag);
+    headers.put(Headers.VARY, Headers.ACCEPT_STRING + ", " + Headers.ACCEPT_ENCODING_STRING);
+
+    if (matches(exchange.getRequestHeaders().get(Headers.IF_NONE_MATCH), etag)) {
+      exchange.setStatusCode(StatusCodes.NOT_MODIFIED);
+      exchange.endExchange();
+      return;
+    }
+
+    exchange.setStatusCode(StatusCodes.OK);
+    headers.put(Headers.CONTENT_TYPE, format.contentType());
+    if (gzip) {
+      headers.put(Headers.CONTENT_ENCODING, "gzip");
+    }
+    exchange.getResponseSender().send(ByteBuffer.wrap(gzip ? payload.gzip() : payload.plain()));
+  }
+
+  static boolean acceptsGzip(Iterable<String> acceptEncoding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (var header : acceptEncoding) {
+      for (var part : header.split(",")) {
+        var params = part.split(";");
+        var coding = params[0].trim().toLowerCase(Locale.ROOT);
+        if (!coding.equals("gzip") && !coding.equals("*")) {
+          continue;
+        }
+        if (!isZeroQuality(params)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static boolean isZeroQuality(String[] params) {
+    for (int i = 1; i < params.length; i++) {
+      var param = params[i].trim();
+      if (param.startsWith("q=")) {
+        try {
+          return Double.parseDouble(param.substring(2)) <= 0;
+        } catch (NumberFormatException e) {
+          return false;
+        }
+      }
+    }
+    return false;
+  }
+
+  static boolean matches(Iterable<String> ifNoneMatch, String etag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+    for (var header : ifNoneMatch) {
+      for (var candidate : header.split(",")) {
+        var tag = candidate.trim();
+        if (tag.startsWith("W/")) {
+          // weak comparison is what RFC 9110 asks for on If-None-Match
+          tag = tag.substring(2);
+        }
+        if (tag.equals("*") || tag.equals(etag)) {
+          return true;
+        }
+      }
+    }
+    return false;
   }
 
   public interface PrometheusMetrics {
-    String scrape();
+    byte[] scrape(ExpositionFormat format);
   }
 }
@@ -0,0 +1,49 @@
+package com.oviva.konnektor.watchdog.handlers;
+
+import io.prometheus.metrics.expositionformats.ExpositionFormatWriter;
+import io.prometheus.metrics.expositionformats.OpenMetricsTextFormatWriter;
+import io.prometheus.metrics.expositionformats.PrometheusProtobufWriter;
+import io.prometheus.metrics.expositionformats.PrometheusTextFormatWriter;
+import io.prometheus.metrics.model.registry.PrometheusRegistry;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Renders a {@link PrometheusRegistry} in any {@link ExpositionFormat}. Only OpenMetrics carries
+ * {@code _created} timestamps and exemplars, the classic text format stays as it always was.
+ */
+public class RegistryMetrics implements MetricsHandler.PrometheusMetrics {
+
+  private final PrometheusRegistry registry;
+
+  private final ExpositionFormatWriter text = PrometheusTextFormatWriter.create();
+  private final ExpositionFormatWriter openMetrics =
+      OpenMetricsTextFormatWriter.builder()
+          .setCreatedTimestampsEnabled(true)
+          .setExemplarsOnAllMetricTypesEnabled(true)
+          .build();
+  private final ExpositionFormatWriter protobuf = new PrometheusProtobufWriter();
+
+  public RegistryMetrics(PrometheusRegistry registry) {
+    this.registry = registry;
+  }
+
+  @Override
+  public byte[] scrape(ExpositionFormat format) {
+    var writer =
+        switch (format) {
+          case TEXT -> text;
+          case OPENMETRICS -> openMetrics;
+          case PROTOBUF -> protobuf;
+        };
+
+    var out = new ByteArrayOutputStream();
+    try {
+      writer.write(out, registry.scrape());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+}
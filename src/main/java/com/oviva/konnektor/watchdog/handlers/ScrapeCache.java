@@ -0,0 +1,140 @@
+package com.oviva.konnektor.watchdog.handlers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32C;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the rendered scrape as plain and gzipped bytes, per {@link ExpositionFormat}. Values only
+ * change when a probe publishes a new snapshot, which bumps {@code generation}, so the payload is
+ * rendered again only then. The time-derived gauges, e.g. the snapshot age, are refreshed at least
+ * every {@code maxAge}.
+ *
+ * <p>Concurrent scrapes are coalesced into a single render per format, e.g. for HA pairs of
+ * Prometheus scraping at the same time. A scrape only waits for a render that started from its
+ * generation or a newer one, a payload is never cached under a generation it was not rendered from.
+ */
+public class ScrapeCache {
+
+  public record Payload(byte[] plain, byte[] gzip, String etag, String gzipEtag) {}
+
+  private record Entry(long generation, Instant renderedAt, Payload payload) {}
+
+  /** a render in flight, started from {@code generation} */
+  private record Render(long generation, CompletableFuture<Payload> payload) {}
+
+  private final MetricsHandler.PrometheusMetrics metrics;
+  private final LongSupplier generation;
+  private final Duration maxAge;
+  private final Clock clock;
+
+  private final AtomicReferenceArray<Entry> current =
+      new AtomicReferenceArray<>(ExpositionFormat.values().length);
+  private final AtomicReferenceArray<Render> inFlight =
+      new AtomicReferenceArray<>(ExpositionFormat.values().length);
+
+  public ScrapeCache(
+      MetricsHandler.PrometheusMetrics metrics,
+      LongSupplier generation,
+      Duration maxAge,
+      Clock clock) {
+    this.metrics = metrics;
+    this.generation = generation;
+    this.maxAge = maxAge;
+    this.clock = clock;
+  }
+
+  public Payload get(ExpositionFormat format) {
+    var gen = generation.getAsLong();
+    var now = clock.instant();
+
+    var entry = current.get(format.ordinal());
+    if (entry != null
+        && entry.generation() == gen
+        && now.isBefore(entry.renderedAt().plus(maxAge))) {
+      return entry.payload();
+    }
+
+    var slot = format.ordinal();
+    var mine = new Render(gen, new CompletableFuture<>());
+    while (true) {
+      var running = inFlight.get(slot);
+      if (running != null && running.generation() >= gen) {
+        return join(running.payload());
+      }
+      // a render of an older generation goes on, but is no longer joined
+      if (inFlight.compareAndSet(slot, running, mine)) {
+        break;
+      }
+    }
+
+    try {
+      var payload = render(format, metrics.scrape(format));
+      var rendered = new Entry(gen, now, payload);
+      current.accumulateAndGet(slot, rendered, (prev, next) -> newer(prev, next) ? prev : next);
+      mine.payload().complete(payload);
+      return payload;
+    } catch (RuntimeException e) {
+      mine.payload().completeExceptionally(e);
+      throw e;
+    } finally {
+      inFlight.compareAndSet(slot, mine, null);
+    }
+  }
+
+  /** a render that finished late must not replace the payload of a newer generation */
+  private static boolean newer(Entry prev, Entry next) {
+    return prev != null && prev.generation() > next.generation();
+  }
+
+  /** scrapes waiting for the render of {@code format} in flight, an estimate */
+  int waiting(ExpositionFormat format) {
+    var running = inFlight.get(format.ordinal());
+    return running == null ? 0 : running.payload().getNumberOfDependents();
+  }
+
+  private static Payload join(CompletableFuture<Payload> running) {
+    try {
+      return running.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException re) {
+        throw re;
+      }
+      throw e;
+    }
+  }
+
+  private static Payload render(ExpositionFormat format, byte[] plain) {
+    var crc = new CRC32C();
+    crc.update(plain);
+    var tag =
+        HexFormat.of().toHexDigits((int) crc.getValue())
+            + "-"
+            + plain.length
+            + "-"
+            + format.name().toLowerCase(Locale.ROOT);
+
+    return new Payload(plain, gzip(plain), "\"" + tag + "\"", "\"" + tag + "-gzip\"");
+  }
+
+  private static byte[] gzip(byte[] plain) {
+    var out = new ByteArrayOutputStream(plain.length / 4 + 64);
+    try (var gz = new GZIPOutputStream(out)) {
+      gz.write(plain);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+}
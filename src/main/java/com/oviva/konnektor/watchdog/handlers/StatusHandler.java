@@ -0,0 +1,59 @@
+package com.oviva.konnektor.watchdog.handlers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.undertow.server.HttpHandler;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.StatusCodes;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Serves a status report as JSON, rendered on the given executor rather than the IO thread. Unlike
+ * a health check it is always answered with 200, a report that can not be rendered with 500.
+ */
+public class StatusHandler implements HttpHandler {
+
+  private static final Logger logger = LoggerFactory.getLogger(StatusHandler.class);
+
+  private static final ObjectMapper json = new ObjectMapper();
+
+  private final Supplier<?> status;
+  private final Executor executor;
+
+  /**
+   * @param status serialized as the JSON body
+   */
+  public StatusHandler(Supplier<?> status, Executor executor) {
+    this.status = status;
+    this.executor = executor;
+  }
+
+  @Override
+  public void handleRequest(HttpServerExchange exchange) throws Exception {
+
+    if (exchange.isInIoThread()) {
+      // the report grows with konnektors and cards, it must not stall the IO thread
+      exchange.dispatch(executor, this);
+      return;
+    }
+
+    byte[] body;
+    try {
+      body = json.writeValueAsBytes(status.get());
+    } catch (Exception e) {
+      logger.atWarn().setCause(e).log("failed to render status");
+      exchange.setStatusCode(StatusCodes.INTERNAL_SERVER_ERROR);
+      exchange.endExchange();
+      return;
+    }
+
+    exchange.setStatusCode(StatusCodes.OK);
+    exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+    exchange.getResponseHeaders().put(Headers.CACHE_CONTROL, "no-store");
+    exchange.getResponseSender().send(ByteBuffer.wrap(body));
+  }
+}
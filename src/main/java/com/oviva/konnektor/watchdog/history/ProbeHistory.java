@@ -0,0 +1,318 @@
+package com.oviva.konnektor.watchdog.history;
+
+import com.oviva.konnektor.watchdog.probe.CardStatus;
+import com.oviva.konnektor.watchdog.probe.ProbeSnapshot;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * What the probes of each Konnektor and each of its cards found over time. The latest probes are
+ * kept in a {@link ProbeRing}, availability over the last 5 minutes, hour, day and 30 days in a
+ * {@link SlidingWindow} each, all updated as snapshots are published. Both have a fixed size, the
+ * memory a Konnektor and a card take is known from the configuration alone, see {@link
+ * #bytesPerKonnektor()} and {@link #bytesPerCard()}.
+ *
+ * <p>A Konnektor is up when its probe succeeded, a card when its PIN is verified. Availability is
+ * time-weighted: a probe stands for the time since the previous probe of the same Konnektor or
+ * card, the first one for a single millisecond. Cards are only observed by successful probes, a
+ * failed probe counts against the Konnektor alone. The history of a card is dropped once it is
+ * removed.
+ */
+public class ProbeHistory implements Consumer<ProbeSnapshot> {
+
+  /** the latest probes shown in {@link #status()} */
+  private static final int LATEST = 10;
+
+  public enum Window {
+    FIVE_MINUTES("5m", Duration.ofMinutes(5)),
+    ONE_HOUR("1h", Duration.ofHours(1)),
+    ONE_DAY("24h", Duration.ofDays(1)),
+    THIRTY_DAYS("30d", Duration.ofDays(30));
+
+    private final String label;
+    private final Duration duration;
+
+    Window(String label, Duration duration) {
+      this.label = label;
+      this.duration = duration;
+    }
+
+    public String label() {
+      return label;
+    }
+  }
+
+  /**
+   * @param size probes kept per Konnektor and per card
+   * @param slo the availability objective, burn rates are relative to its error budget
+   * @param maxCards cards with a history per Konnektor, further cards are not tracked
+   */
+  public record Config(int size, double slo, int maxCards) {
+
+    public Config {
+      if (size < 1 || maxCards < 0) {
+        throw new IllegalArgumentException(
+            "expected size >= 1 and maxCards >= 0, got size=%d maxCards=%d"
+                .formatted(size, maxCards));
+      }
+      if (!(slo > 0 && slo < 1)) {
+        throw new IllegalArgumentException("expected 0 < slo < 1, got %s".formatted(slo));
+      }
+    }
+  }
+
+  /**
+   * @param availability ratio of up-time, {@code null} without probes in the window
+   * @param burnRate how fast the error budget is spent, {@code 1} spends it exactly within the
+   *     window
+   */
+  public record WindowStatus(Double availability, Double burnRate, long probes) {}
+
+  public record Probe(String time, boolean up, long latencyMillis) {}
+
+  public record CardProbe(String time, String status) {}
+
+  public record CardHistory(
+      String handle, String holder, Map<String, WindowStatus> windows, List<CardProbe> latest) {}
+
+  public record KonnektorHistory(
+      String konnektor,
+      Map<String, WindowStatus> windows,
+      List<Probe> latest,
+      List<CardHistory> cards) {}
+
+  public record Status(double slo, List<KonnektorHistory> konnektors) {}
+
+  private final Config config;
+  private final MeterRegistry registry;
+  private final Clock clock;
+
+  private final Map<String, Konnektor> konnektors = new ConcurrentHashMap<>();
+
+  public ProbeHistory(Config config, MeterRegistry registry, Clock clock) {
+    this.config = config;
+    this.registry = registry;
+    this.clock = clock;
+  }
+
+  public long bytesPerKonnektor() {
+    return ProbeRing.bytes(config.size(), true) + Window.values().length * SlidingWindow.bytes();
+  }
+
+  public long bytesPerCard() {
+    return ProbeRing.bytes(config.size(), false) + Window.values().length * SlidingWindow.bytes();
+  }
+
+  /** starts the history of a Konnektor and its gauges, keeps it if there is one already */
+  public void add(String konnektor) {
+    konnektors.computeIfAbsent(konnektor, this::register);
+  }
+
+  public void remove(String konnektor) {
+    var removed = konnektors.remove(konnektor);
+    if (removed != null) {
+      removed.meters.forEach(registry::remove);
+    }
+  }
+
+  @Override
+  public void accept(ProbeSnapshot snapshot) {
+    if (snapshot.stale() || snapshot.probedAt() == null) {
+      // restored, not probed by this process
+      return;
+    }
+    var konnektor = konnektors.get(snapshot.konnektor());
+    if (konnektor != null) {
+      konnektor.record(snapshot);
+    }
+  }
+
+  public Status status() {
+    var now = clock.millis();
+    var histories = new ArrayList<KonnektorHistory>(konnektors.size());
+    for (var konnektor : konnektors.values()) {
+      histories.add(konnektor.status(now));
+    }
+    histories.sort(Comparator.comparing(KonnektorHistory::konnektor));
+    return new Status(config.slo(), histories);
+  }
+
+  private Konnektor register(String name) {
+    var konnektor = new Konnektor(name);
+    for (var window : Window.values()) {
+      konnektor.meters.add(
+          Gauge.builder(
+                  "konnektor_availability_ratio", konnektor, k -> k.ratio(window, clock.millis()))
+              .description("ratio of time up according to the probes within the window")
+              .tag("konnektor", name)
+              .tag("window", window.label())
+              .register(registry));
+      konnektor.meters.add(
+          Gauge.builder(
+                  "konnektor_error_budget_burn_rate",
+                  konnektor,
+                  k -> burnRate(k.ratio(window, clock.millis())))
+              .description("time down within the window relative to the error budget")
+              .tag("konnektor", name)
+              .tag("window", window.label())
+              .register(registry));
+    }
+    return konnektor;
+  }
+
+  private double burnRate(double availability) {
+    return (1 - availability) / (1 - config.slo());
+  }
+
+  private Map<String, WindowStatus> windows(Availability availability, long now) {
+    var windows = new LinkedHashMap<String, WindowStatus>();
+    for (var window : Window.values()) {
+      var ratio = availability.ratio(window, now);
+      windows.put(
+          window.label(),
+          new WindowStatus(
+              Double.isNaN(ratio) ? null : ratio,
+              Double.isNaN(ratio) ? null : burnRate(ratio),
+              availability.total(window, now)));
+    }
+    return windows;
+  }
+
+  /** a sliding window per {@link Window}, synchronized on its owner */
+  private static final class Availability {
+    private final SlidingWindow[] windows = new SlidingWindow[Window.values().length];
+    private long previousMillis = Long.MIN_VALUE;
+
+    private Availability() {
+      for (var window : Window.values()) {
+        windows[window.ordinal()] = new SlidingWindow(window.duration);
+      }
+    }
+
+    private void record(long timeMillis, boolean ok) {
+      // the first probe, or one that is not newer than the previous, stands for a millisecond
+      var from =
+          previousMillis != Long.MIN_VALUE && previousMillis < timeMillis
+              ? previousMillis
+              : timeMillis - 1;
+      previousMillis = Math.max(previousMillis, timeMillis);
+      for (var window : windows) {
+        window.record(from, timeMillis, ok);
+      }
+    }
+
+    private double ratio(Window window, long nowMillis) {
+      return windows[window.ordinal()].ratio(nowMillis);
+    }
+
+    private long total(Window window, long nowMillis) {
+      return windows[window.ordinal()].total(nowMillis);
+    }
+  }
+
+  private final class Card {
+    private final String holder;
+    private final ProbeRing ring = new ProbeRing(config.size(), false);
+    private final Availability availability = new Availability();
+
+    private Card(String holder) {
+      this.holder = holder;
+    }
+  }
+
+  private final class Konnektor {
+    private final String name;
+    private final ProbeRing ring = new ProbeRing(config.size(), true);
+    private final Availability availability = new Availability();
+    private final Map<String, Card> cards = new LinkedHashMap<>();
+    private final List<Meter> meters = new ArrayList<>();
+
+    private Konnektor(String name) {
+      this.name = name;
+    }
+
+    private synchronized double ratio(Window window, long nowMillis) {
+      return availability.ratio(window, nowMillis);
+    }
+
+    private synchronized void record(ProbeSnapshot snapshot) {
+      var time = snapshot.probedAt().toEpochMilli();
+      var latency =
+          snapshot.duration() == null
+              ? -1
+              : (int) Math.min(Integer.MAX_VALUE, snapshot.duration().toMillis());
+      ring.add(time, (byte) (snapshot.up() ? 1 : 0), latency);
+      availability.record(time, snapshot.up());
+      if (!snapshot.up()) {
+        return;
+      }
+
+      var present = new HashSet<String>(snapshot.cards().size());
+      for (var card : snapshot.cards()) {
+        present.add(card.handle());
+      }
+      // before new cards are tracked, removed cards free their place
+      cards.keySet().retainAll(present);
+
+      for (var card : snapshot.cards()) {
+        var history = cards.get(card.handle());
+        if (history == null) {
+          if (cards.size() >= config.maxCards()) {
+            continue;
+          }
+          history = new Card(card.holderName());
+          cards.put(card.handle(), history);
+        }
+        history.ring.add(time, (byte) card.status().value(), -1);
+        history.availability.record(time, card.status() == CardStatus.VERIFIED);
+      }
+    }
+
+    private synchronized KonnektorHistory status(long now) {
+      var latest = new ArrayList<Probe>();
+      for (var entry : ring.latest(LATEST)) {
+        latest.add(
+            new Probe(
+                Instant.ofEpochMilli(entry.timeMillis()).toString(),
+                entry.outcome() == 1,
+                entry.latencyMillis()));
+      }
+      var cardHistories = new ArrayList<CardHistory>(cards.size());
+      for (var e : cards.entrySet()) {
+        var card = e.getValue();
+        var observed = new ArrayList<CardProbe>();
+        for (var entry : card.ring.latest(LATEST)) {
+          observed.add(
+              new CardProbe(
+                  Instant.ofEpochMilli(entry.timeMillis()).toString(),
+                  cardStatus(entry.outcome())));
+        }
+        cardHistories.add(
+            new CardHistory(e.getKey(), card.holder, windows(card.availability, now), observed));
+      }
+      return new KonnektorHistory(name, windows(availability, now), latest, cardHistories);
+    }
+  }
+
+  private static String cardStatus(byte outcome) {
+    for (var status : CardStatus.values()) {
+      if (status.value() == outcome) {
+        return status.name().toLowerCase(Locale.ROOT);
+      }
+    }
+    return CardStatus.UNKNOWN.name().toLowerCase(Locale.ROOT);
+  }
+}
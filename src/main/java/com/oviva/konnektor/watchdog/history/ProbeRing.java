@@ -0,0 +1,66 @@
+package com.oviva.konnektor.watchdog.history;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The latest probes of a Konnektor or card in parallel primitive arrays, the oldest is overwritten
+ * once full. Its size never changes, see {@link #bytes(int, boolean)}.
+ *
+ * <p>Not thread-safe.
+ */
+final class ProbeRing {
+
+  /**
+   * @param outcome {@code 1} up or verified, {@code 0} down or not verified, {@code -1} unknown
+   * @param latencyMillis {@code -1} if not recorded
+   */
+  record Entry(long timeMillis, byte outcome, int latencyMillis) {}
+
+  private final long[] times;
+  private final byte[] outcomes;
+  // null if latencies are not recorded
+  private final int[] latencies;
+
+  private int next;
+  private int size;
+
+  ProbeRing(int capacity, boolean latency) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("expected capacity >= 1, got %d".formatted(capacity));
+    }
+    times = new long[capacity];
+    outcomes = new byte[capacity];
+    latencies = latency ? new int[capacity] : null;
+  }
+
+  /** the size of the arrays of a ring */
+  static long bytes(int capacity, boolean latency) {
+    return (long) capacity * (Long.BYTES + Byte.BYTES + (latency ? Integer.BYTES : 0));
+  }
+
+  void add(long timeMillis, byte outcome, int latencyMillis) {
+    times[next] = timeMillis;
+    outcomes[next] = outcome;
+    if (latencies != null) {
+      latencies[next] = latencyMillis;
+    }
+    next = (next + 1) % times.length;
+    size = Math.min(size + 1, times.length);
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** the latest {@code limit} entries, newest first */
+  List<Entry> latest(int limit) {
+    var n = Math.min(limit, size);
+    var entries = new ArrayList<Entry>(n);
+    for (int i = 1; i <= n; i++) {
+      var at = Math.floorMod(next - i, times.length);
+      entries.add(new Entry(times[at], outcomes[at], latencies == null ? -1 : latencies[at]));
+    }
+    return entries;
+  }
+}
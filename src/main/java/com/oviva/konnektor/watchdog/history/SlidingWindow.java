@@ -0,0 +1,111 @@
+package com.oviva.konnektor.watchdog.history;
+
+import java.time.Duration;
+
+/**
+ * Up-time, observed time and probes within a sliding time window, kept in a fixed number of
+ * buckets. A probe accounts for the time since the previous probe of its target, split across the
+ * buckets that time falls into, so that probes backing off while a target is down weigh as much as
+ * frequent ones while it is up. The sums are updated as probes come in and buckets fall out of the
+ * window, reading them never looks at more than the buckets that expired since the last call.
+ *
+ * <p>The window slides by one bucket at a time, it covers between {@code buckets - 1} and {@code
+ * buckets} full buckets. Not thread-safe.
+ */
+final class SlidingWindow {
+
+  static final int BUCKETS = 60;
+
+  private final long bucketMillis;
+  // milliseconds, a bucket is at most 12 hours long
+  private final int[] up = new int[BUCKETS];
+  private final int[] observed = new int[BUCKETS];
+  private final int[] probes = new int[BUCKETS];
+
+  private long upSum;
+  private long observedSum;
+  private long probesSum;
+  // index of the newest bucket, counted from the epoch
+  private long head = Long.MIN_VALUE;
+
+  SlidingWindow(Duration window) {
+    this.bucketMillis = Math.max(1, window.toMillis() / BUCKETS);
+  }
+
+  /** the size of the arrays of a window */
+  static long bytes() {
+    return 3L * BUCKETS * Integer.BYTES;
+  }
+
+  /**
+   * @param fromMillis when the previous probe of the target finished
+   * @param toMillis when this probe finished, the time in between counts as up if {@code ok}
+   */
+  void record(long fromMillis, long toMillis, boolean ok) {
+    var last = Math.floorDiv(toMillis, bucketMillis);
+    advance(last);
+    var oldest = head - BUCKETS + 1;
+    if (last < oldest) {
+      // older than the window
+      return;
+    }
+    probes[slot(last)]++;
+    probesSum++;
+
+    // at most every bucket once, however long ago the previous probe was
+    var first = Math.max(Math.floorDiv(fromMillis, bucketMillis), oldest);
+    for (long b = first; b <= last; b++) {
+      var start = Math.max(fromMillis, b * bucketMillis);
+      var end = Math.min(toMillis, (b + 1) * bucketMillis);
+      if (end <= start) {
+        continue;
+      }
+      var millis = (int) (end - start);
+      var slot = slot(b);
+      observed[slot] += millis;
+      observedSum += millis;
+      if (ok) {
+        up[slot] += millis;
+        upSum += millis;
+      }
+    }
+  }
+
+  /** up-time divided by observed time, {@code NaN} without probes in the window */
+  double ratio(long nowMillis) {
+    advance(Math.floorDiv(nowMillis, bucketMillis));
+    return observedSum == 0 ? Double.NaN : (double) upSum / observedSum;
+  }
+
+  /** the probes within the window */
+  long total(long nowMillis) {
+    advance(Math.floorDiv(nowMillis, bucketMillis));
+    return probesSum;
+  }
+
+  private void advance(long bucket) {
+    if (head == Long.MIN_VALUE) {
+      head = bucket;
+      return;
+    }
+    if (bucket <= head) {
+      return;
+    }
+    // at most every bucket once, however long nothing was recorded
+    var expired = Math.min(bucket - head, BUCKETS);
+    for (long b = bucket - expired + 1; b <= bucket; b++) {
+      var slot = slot(b);
+      upSum -= up[slot];
+      observedSum -= observed[slot];
+      probesSum -= probes[slot];
+      up[slot] = 0;
+      observed[slot] = 0;
+      probes[slot] = 0;
+    }
+    head = bucket;
+  }
+
+  private static int slot(long bucket) {
+    return Math.floorMod(bucket, BUCKETS);
+  }
+}
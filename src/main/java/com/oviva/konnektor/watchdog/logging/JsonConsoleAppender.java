@@ -0,0 +1,40 @@
+package com.oviva.konnektor.watchdog.logging;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.ConsoleAppender;
+import java.io.IOException;
+
+/**
+ * Writes events encoded by a {@link JsonEncoder} straight from the encoder's buffer to the console,
+ * other encoders go through the regular byte array path.
+ */
+public class JsonConsoleAppender extends ConsoleAppender<ILoggingEvent> {
+
+  private final JsonEncoder.Sink sink = this::writeLocked;
+
+  @Override
+  protected void writeOut(ILoggingEvent event) throws IOException {
+    if (encoder instanceof JsonEncoder json) {
+      // encoding happens outside the lock, only the write is serialized
+      json.encode(event, sink);
+      return;
+    }
+    super.writeOut(event);
+  }
+
+  private void writeLocked(byte[] bytes, int offset, int length) throws IOException {
+    if (length == 0) {
+      return;
+    }
+    streamWriteLock.lock();
+    try {
+      var out = getOutputStream();
+      out.write(bytes, offset, length);
+      if (isImmediateFlush()) {
+        out.flush();
+      }
+    } finally {
+      streamWriteLock.unlock();
+    }
+  }
+}
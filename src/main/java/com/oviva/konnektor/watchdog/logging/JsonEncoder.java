@@ -1,5 +1,6 @@
 package com.oviva.konnektor.watchdog.logging;
 
+import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.pattern.ExtendedThrowableProxyConverter;
 import ch.qos.logback.classic.pattern.ThrowableHandlingConverter;
 import ch.qos.logback.classic.spi.ILoggingEvent;
@@ -7,73 +8,141 @@ import ch.qos.logback.core.encoder.EncoderBase;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.core.io.SerializedString;
 import io.opentelemetry.api.trace.Span;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import org.slf4j.event.KeyValuePair;
 
-/** GCP flavoured JSON logging */
+/**
+ * GCP flavoured JSON logging.
+ *
+ * <p>Events are written into pooled buffers, each with its own long-lived {@link JsonGenerator}, so
+ * encoding allocates little beyond the event's own strings. Loggers mostly run on short-lived
+ * virtual threads, a pool shared by all threads is reused where thread-locals would not be.
+ * Appenders that can take the bytes straight from the buffer use {@link #encode(ILoggingEvent,
+ * Sink)} and skip the copy {@link #encode(ILoggingEvent)} has to make.
+ */
 public class JsonEncoder extends EncoderBase<ILoggingEvent> {
 
+  /** receives an encoded event, the array is only valid during the call */
+  @FunctionalInterface
+  public interface Sink {
+    void write(byte[] bytes, int offset, int length) throws IOException;
+  }
+
   // https://cloud.google.com/error-reporting/docs/formatting-error-messages
   private static final String REPORTED_ERROR_TYPE =
       "type.googleapis.com/google.devtools.clouderrorreporting.v1beta1.ReportedErrorEvent";
 
   private static final String SOURCE_LOCATION_FIELD = "logging.googleapis.com/sourceLocation";
 
-  private final JsonFactory jsonFactory = new JsonFactory();
+  private static final int POOL_SIZE = 16;
+
+  // a buffer that grew beyond this, e.g. for a huge stack trace, is dropped instead of pooled
+  private static final int MAX_POOLED_BYTES = 64 * 1024;
+
+  private final JsonFactory jsonFactory = new JsonFactory().setRootValueSeparator(null);
   private final DateTimeFormatter timeFormatter = DateTimeFormatter.ISO_INSTANT;
   private final ThrowableHandlingConverter throwableConverter =
       new ExtendedThrowableProxyConverter();
 
   private final String serviceName;
   private final String serviceVersion;
+  private final SerializedString serviceContext;
+
+  private final BlockingQueue<Buffer> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+  private volatile CachedSecond cachedSecond = new CachedSecond(Long.MIN_VALUE, null);
 
   public JsonEncoder() {
     var pkg = JsonEncoder.class.getPackage();
     serviceName = pkg.getImplementationTitle();
     serviceVersion = pkg.getImplementationVersion();
+    serviceContext = serializeServiceContext(serviceName, serviceVersion);
   }
 
   @Override
   public byte[] encode(ILoggingEvent event) {
-    var baos = new ByteArrayOutputStream();
-    try (var generator = jsonFactory.createGenerator(baos)) {
-      generator.writeStartObject();
+    var buffer = pool.poll();
+    try {
+      if (buffer == null) {
+        buffer = new Buffer(jsonFactory);
+      }
+      write(buffer, event);
+      var bytes = Arrays.copyOf(buffer.bytes.array(), buffer.bytes.size());
+      release(buffer);
+      return bytes;
+    } catch (NullPointerException | IOException e) {
+      // the generator is in an unknown state, the buffer is not pooled again
+      return logFallbackError(event, e);
+    }
+  }
 
-      // https://cloud.google.com/logging/docs/structured-logging#structured_logging_special_fields
-      // https://github.com/googleapis/java-logging-logback/blob/main/src/main/java/com/google/cloud/logging/logback/LoggingAppender.java
+  /** encodes the event and hands it to the sink in a single write, without copying it */
+  public void encode(ILoggingEvent event, Sink sink) throws IOException {
+    var buffer = pool.poll();
+    try {
+      if (buffer == null) {
+        buffer = new Buffer(jsonFactory);
+      }
+      write(buffer, event);
+    } catch (NullPointerException | IOException e) {
+      var fallback = logFallbackError(event, e);
+      sink.write(fallback, 0, fallback.length);
+      return;
+    }
+    try {
+      sink.write(buffer.bytes.array(), 0, buffer.bytes.size());
+    } finally {
+      release(buffer);
+    }
+  }
 
-      writeTimestamp(generator, event);
-      writeSeverity(generator, event);
-      writeLogger(generator, event);
-      writeMessage(generator, event);
-      writeThread(generator, event);
+  private void write(Buffer buffer, ILoggingEvent event) throws IOException {
+    var generator = buffer.generator;
+    generator.writeStartObject();
 
-      writeServiceContext(generator);
-      writeTraceContext(generator);
+    // https://cloud.google.com/logging/docs/structured-logging#structured_logging_special_fields
+    // https://github.com/googleapis/java-logging-logback/blob/main/src/main/java/com/google/cloud/logging/logback/LoggingAppender.java
 
-      var mdc = event.getMDCPropertyMap();
-      writeMdc(generator, mdc);
+    writeTimestamp(buffer, event);
+    writeSeverity(generator, event);
+    writeLogger(generator, event);
+    writeMessage(generator, event);
+    writeThread(generator, event);
 
-      writeKeyValue(generator, event);
+    writeServiceContext(generator);
+    writeTraceContext(generator);
 
-      if ("ERROR".equals(event.getLevel().toString())) {
-        writeError(generator, event, mdc);
-      }
-      writeStackTrace(generator, event);
+    var mdc = event.getMDCPropertyMap();
+    writeMdc(generator, mdc);
 
-      generator.writeEndObject();
-      generator.writeRaw('\n');
-      generator.flush();
-    } catch (NullPointerException | IOException e) {
-      return logFallbackError(event, e);
+    writeKeyValue(generator, event);
+
+    if (event.getLevel().toInt() == Level.ERROR_INT) {
+      writeError(generator, event, mdc);
+    }
+    writeStackTrace(generator, event);
+
+    generator.writeEndObject();
+    generator.writeRaw('\n');
+    generator.flush();
+  }
+
+  private void release(Buffer buffer) {
+    if (buffer.bytes.size() > MAX_POOLED_BYTES) {
+      return;
     }
-    return baos.toByteArray();
+    buffer.bytes.reset();
+    pool.offer(buffer);
   }
 
   private byte[] logFallbackError(ILoggingEvent event, Throwable t) {
@@ -95,23 +164,33 @@ public class JsonEncoder extends EncoderBase<ILoggingEvent> {
   }
 
   private void writeServiceContext(JsonGenerator generator) throws IOException {
-
-    var name = this.serviceName;
-    var version = this.serviceVersion;
-
-    if (name == null && version == null) {
+    if (serviceContext == null) {
       return;
     }
+    generator.writeFieldName("serviceContext");
+    generator.writeRawValue(serviceContext);
+  }
 
-    generator.writeObjectFieldStart("serviceContext");
-    if (name != null && !name.isEmpty()) {
-      generator.writeStringField("service", this.serviceName);
-    }
-    if (version != null && !version.isEmpty()) {
-      generator.writeStringField("version", this.serviceVersion);
+  /** the constant serviceContext object, serialized once */
+  private SerializedString serializeServiceContext(String name, String version) {
+    if (name == null && version == null) {
+      return null;
     }
 
-    generator.writeEndObject();
+    var baos = new ByteArrayOutputStream();
+    try (var generator = jsonFactory.createGenerator(baos)) {
+      generator.writeStartObject();
+      if (name != null && !name.isEmpty()) {
+        generator.writeStringField("service", name);
+      }
+      if (version != null && !version.isEmpty()) {
+        generator.writeStringField("version", version);
+      }
+      generator.writeEndObject();
+    } catch (IOException e) {
+      throw new IllegalStateException("failed to serialize service context", e);
+    }
+    return new SerializedString(baos.toString(StandardCharsets.UTF_8));
   }
 
   private void writeLogger(JsonGenerator generator, ILoggingEvent logRecord) throws IOException {
@@ -127,8 +206,48 @@ public class JsonEncoder extends EncoderBase<ILoggingEvent> {
     generator.writeStringField("severity", logRecord.getLevel().toString());
   }
 
-  private void writeTimestamp(JsonGenerator generator, ILoggingEvent logRecord) throws IOException {
-    generator.writeStringField("time", timeFormatter.format(logRecord.getInstant()));
+  private void writeTimestamp(Buffer buffer, ILoggingEvent logRecord) throws IOException {
+    var instant = logRecord.getInstant();
+    var chars = buffer.time;
+
+    // same output as ISO_INSTANT, but only formatting the date and time once per second
+    var second = cachedSecond;
+    if (second.epochSecond() != instant.getEpochSecond()) {
+      second = cachedSecond(instant);
+      cachedSecond = second;
+    }
+    var prefix = second.formatted();
+    prefix.getChars(0, prefix.length(), chars, 0);
+    var length = prefix.length();
+
+    var nanos = instant.getNano();
+    if (nanos > 0) {
+      var digits = 9;
+      if (nanos % 1_000_000 == 0) {
+        nanos /= 1_000_000;
+        digits = 3;
+      } else if (nanos % 1_000 == 0) {
+        nanos /= 1_000;
+        digits = 6;
+      }
+      chars[length] = '.';
+      for (int i = digits; i > 0; i--) {
+        chars[length + i] = (char) ('0' + nanos % 10);
+        nanos /= 10;
+      }
+      length += digits + 1;
+    }
+    chars[length++] = 'Z';
+
+    buffer.generator.writeFieldName("time");
+    buffer.generator.writeString(chars, 0, length);
+  }
+
+  private CachedSecond cachedSecond(Instant instant) {
+    var formatted = timeFormatter.format(Instant.ofEpochSecond(instant.getEpochSecond()));
+    // strip the 'Z', the fraction goes in between
+    return new CachedSecond(
+        instant.getEpochSecond(), formatted.substring(0, formatted.length() - 1));
   }
 
   private void writeThread(JsonGenerator generator, ILoggingEvent logRecord) throws IOException {
@@ -160,7 +279,7 @@ public class JsonEncoder extends EncoderBase<ILoggingEvent> {
     var className = topFrame.getClassName();
     var methodName = topFrame.getMethodName();
 
-    generator.writeStringField("function", "%s.%s".formatted(className, methodName));
+    generator.writeStringField("function", className + '.' + methodName);
     generator.writeEndObject();
   }
 
@@ -253,6 +372,33 @@ public class JsonEncoder extends EncoderBase<ILoggingEvent> {
     return null;
   }
 
+  private record CachedSecond(long epochSecond, String formatted) {}
+
+  /** an output buffer with a generator writing into it, both reused across events */
+  private static final class Buffer {
+
+    private final Bytes bytes = new Bytes();
+    private final JsonGenerator generator;
+
+    // long enough for the largest ISO_INSTANT timestamp
+    private final char[] time = new char[48];
+
+    private Buffer(JsonFactory jsonFactory) throws IOException {
+      this.generator = jsonFactory.createGenerator(bytes);
+    }
+  }
+
+  private static final class Bytes extends ByteArrayOutputStream {
+
+    private Bytes() {
+      super(1024);
+    }
+
+    private byte[] array() {
+      return buf;
+    }
+  }
+
   private static String escapeJsonOrDefault(String s, String defaultValue) {
 
     if (s == null) {
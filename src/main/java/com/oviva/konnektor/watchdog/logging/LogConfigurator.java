@@ -5,20 +5,25 @@ import ch.qos.logback.classic.Logger;
 import ch.qos.logback.classic.LoggerContext;
 import ch.qos.logback.classic.spi.Configurator;
 import ch.qos.logback.classic.spi.ILoggingEvent;
-import ch.qos.logback.core.ConsoleAppender;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.hook.DefaultShutdownHook;
 import ch.qos.logback.core.spi.ContextAwareBase;
 import com.google.auto.service.AutoService;
+import com.oviva.konnektor.watchdog.logging.RingBufferAppender.OverflowPolicy;
 import java.util.Optional;
 
 @AutoService(Configurator.class)
 public class LogConfigurator extends ContextAwareBase implements Configurator {
+
+  static final String APPENDER_NAME = "console";
+
   @Override
   public ExecutionStatus configure(LoggerContext context) {
     addInfo("Setting up default configuration.");
 
-    var ca = new ConsoleAppender<ILoggingEvent>();
+    var ca = new JsonConsoleAppender();
     ca.setContext(context);
-    ca.setName("console");
+    ca.setName(APPENDER_NAME);
 
     var encoder = new JsonEncoder();
     encoder.setContext(context);
@@ -26,8 +31,22 @@ public class LogConfigurator extends ContextAwareBase implements Configurator {
     ca.setEncoder(encoder);
     ca.start();
 
+    Appender<ILoggingEvent> appender = ca;
+    if (isAsync()) {
+      var async = new RingBufferAppender(ca, getBufferSize(), getOverflowPolicy());
+      async.setContext(context);
+      async.setName(APPENDER_NAME);
+      async.start();
+      appender = async;
+
+      // stops the context on exit, which drains the buffer
+      var hook = new DefaultShutdownHook();
+      hook.setContext(context);
+      Runtime.getRuntime().addShutdownHook(new Thread(hook, "log-shutdown"));
+    }
+
     var rootLogger = context.getLogger(Logger.ROOT_LOGGER_NAME);
-    rootLogger.addAppender(ca);
+    rootLogger.addAppender(appender);
 
     rootLogger.setLevel(getLevel());
 
@@ -39,4 +58,22 @@ public class LogConfigurator extends ContextAwareBase implements Configurator {
         .map(Level::valueOf)
         .orElse(Level.INFO);
   }
+
+  private boolean isAsync() {
+    return Optional.ofNullable(System.getenv("KONNEKTOR_WATCHDOG_LOG_ASYNC"))
+        .map(Boolean::parseBoolean)
+        .orElse(true);
+  }
+
+  private int getBufferSize() {
+    return Optional.ofNullable(System.getenv("KONNEKTOR_WATCHDOG_LOG_BUFFER_SIZE"))
+        .map(Integer::parseInt)
+        .orElse(8192);
+  }
+
+  private OverflowPolicy getOverflowPolicy() {
+    return Optional.ofNullable(System.getenv("KONNEKTOR_WATCHDOG_LOG_OVERFLOW"))
+        .map(OverflowPolicy::parse)
+        .orElse(OverflowPolicy.DROP_INFO);
+  }
 }
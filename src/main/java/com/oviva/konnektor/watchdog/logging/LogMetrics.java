@@ -0,0 +1,60 @@
+package com.oviva.konnektor.watchdog.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.LoggerFactory;
+
+/** Publishes how the {@link RingBufferAppender} keeps up, nothing if logging is synchronous. */
+public class LogMetrics implements MeterBinder {
+
+  private static final List<Level> LEVELS =
+      List.of(Level.ERROR, Level.WARN, Level.INFO, Level.DEBUG, Level.TRACE);
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    if (!(LoggerFactory.getILoggerFactory() instanceof LoggerContext context)) {
+      return;
+    }
+    var root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+    if (!(root.getAppender(LogConfigurator.APPENDER_NAME) instanceof RingBufferAppender appender)) {
+      return;
+    }
+    bindTo(registry, appender);
+  }
+
+  static void bindTo(MeterRegistry registry, RingBufferAppender appender) {
+
+    Gauge.builder("log_queue_depth", appender, RingBufferAppender::depth)
+        .description("log events waiting to be written")
+        .register(registry);
+
+    Gauge.builder("log_queue_capacity", appender, RingBufferAppender::capacity)
+        .description("log events that can be buffered before the overflow policy applies")
+        .register(registry);
+
+    for (var level : LEVELS) {
+      FunctionCounter.builder("log_events_dropped", appender, a -> a.dropped(level))
+          .description("log events dropped because the buffer was full, by level")
+          .tag("level", level.toString().toLowerCase(Locale.ROOT))
+          .register(registry);
+    }
+
+    FunctionTimer.builder(
+            "log_encode",
+            appender,
+            RingBufferAppender::encodedCount,
+            RingBufferAppender::encodeSeconds,
+            TimeUnit.SECONDS)
+        .description("time spent encoding and writing log events")
+        .register(registry);
+  }
+}
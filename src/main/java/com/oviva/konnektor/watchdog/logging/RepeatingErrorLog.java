@@ -0,0 +1,122 @@
+package com.oviva.konnektor.watchdog.logging;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.event.Level;
+import org.slf4j.spi.CallerBoundaryAware;
+import org.slf4j.spi.LoggingEventBuilder;
+
+/**
+ * Logs errors that repeat every probe only once in full. An error is identified by its message
+ * template, exception type and target, e.g. the Konnektor. The first occurrence is logged with its
+ * stack trace, further ones are counted and at most once per {@code window} summarized in a single
+ * line without stack trace. Once the target {@link #resolved(String) recovers} the next error is
+ * logged in full again.
+ */
+public class RepeatingErrorLog {
+
+  public static final Duration DEFAULT_WINDOW = Duration.ofMinutes(10);
+
+  private record Key(String template, Class<?> exception, String target) {}
+
+  /**
+   * @param report what to log for the occurrence that produced this window, {@code null} if it is
+   *     suppressed
+   */
+  private record Window(Instant start, long suppressed, Report report) {}
+
+  private record Report(boolean full, long suppressed, Duration period) {}
+
+  private final Logger logger;
+  private final Level level;
+  private final String targetKey;
+  private final Duration window;
+  private final Clock clock;
+
+  private final Map<Key, Window> windows = new ConcurrentHashMap<>();
+
+  /**
+   * @param targetKey name of the key-value the target is logged as, e.g. {@code konnektor}
+   */
+  public RepeatingErrorLog(
+      Logger logger, Level level, String targetKey, Duration window, Clock clock) {
+    this.logger = logger;
+    this.level = level;
+    this.targetKey = targetKey;
+    this.window = window;
+    this.clock = clock;
+  }
+
+  public void log(String target, Throwable cause, String template, Object... args) {
+    var key = new Key(template, cause.getClass(), target);
+    var now = clock.instant();
+    var next =
+        windows.compute(
+            key,
+            (k, w) -> {
+              if (w == null) {
+                return new Window(now, 0, new Report(true, 0, Duration.ZERO));
+              }
+              if (now.isBefore(w.start().plus(window))) {
+                return new Window(w.start(), w.suppressed() + 1, null);
+              }
+              return new Window(
+                  now, 0, new Report(false, w.suppressed(), Duration.between(w.start(), now)));
+            });
+
+    var report = next.report();
+    if (report == null) {
+      return;
+    }
+    var builder = at(level).addKeyValue(targetKey, target);
+    if (report.full()) {
+      builder.setCause(cause).log(template, args);
+      return;
+    }
+    var summaryArgs = Arrays.copyOf(args, args.length + 3);
+    summaryArgs[args.length] = cause;
+    summaryArgs[args.length + 1] = report.suppressed();
+    summaryArgs[args.length + 2] = report.period();
+    builder
+        .addKeyValue("suppressed", report.suppressed())
+        .log(template + ": {}, suppressed {} identical errors in the last {}", summaryArgs);
+  }
+
+  /** the target works again, forgets its errors and reports how many were never logged */
+  public void resolved(String target) {
+    if (windows.isEmpty()) {
+      return;
+    }
+    var suppressed = 0L;
+    for (var it = windows.entrySet().iterator(); it.hasNext(); ) {
+      var e = it.next();
+      if (e.getKey().target().equals(target)) {
+        suppressed += e.getValue().suppressed();
+        it.remove();
+      }
+    }
+    if (suppressed > 0) {
+      at(Level.INFO)
+          .addKeyValue(targetKey, target)
+          .addKeyValue("suppressed", suppressed)
+          .log(
+              "{} recovered, suppressed {} identical errors since the last report",
+              target,
+              suppressed);
+    }
+  }
+
+  /** the caller of this class is reported as the source location, not this class itself */
+  private LoggingEventBuilder at(Level level) {
+    var builder = logger.atLevel(level);
+    if (builder instanceof CallerBoundaryAware aware) {
+      aware.setCallerBoundary(RepeatingErrorLog.class.getName());
+    }
+    return builder;
+  }
+}
@@ -0,0 +1,80 @@
+package com.oviva.konnektor.watchdog.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue for many producers and a single consumer. Every slot carries a sequence
+ * number telling producers whether it is free and the consumer whether it is filled, see Dmitry
+ * Vyukov's bounded MPMC queue.
+ */
+final class RingBuffer<E> {
+
+  private final int capacity;
+  private final int mask;
+  private final AtomicReferenceArray<E> slots;
+  private final AtomicLongArray sequences;
+
+  private final AtomicLong tail = new AtomicLong();
+  // only written by the consumer, read by others for the size
+  private final AtomicLong head = new AtomicLong();
+
+  RingBuffer(int capacity) {
+    if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+      throw new IllegalArgumentException(
+          "capacity must be a power of two, got %d".formatted(capacity));
+    }
+    this.capacity = capacity;
+    this.mask = capacity - 1;
+    this.slots = new AtomicReferenceArray<>(capacity);
+    this.sequences = new AtomicLongArray(capacity);
+    for (int i = 0; i < capacity; i++) {
+      sequences.set(i, i);
+    }
+  }
+
+  /**
+   * @return {@code false} if the buffer is full
+   */
+  boolean offer(E e) {
+    while (true) {
+      var t = tail.get();
+      var index = (int) (t & mask);
+      var diff = sequences.getAcquire(index) - t;
+      if (diff == 0) {
+        if (tail.compareAndSet(t, t + 1)) {
+          slots.setPlain(index, e);
+          sequences.setRelease(index, t + 1);
+          return true;
+        }
+      } else if (diff < 0) {
+        return false;
+      }
+      // another producer claimed the slot first, retry with the new tail
+    }
+  }
+
+  /** must only be called by the single consumer */
+  E poll() {
+    var h = head.getPlain();
+    var index = (int) (h & mask);
+    if (sequences.getAcquire(index) != h + 1) {
+      return null;
+    }
+    var e = slots.getPlain(index);
+    slots.setPlain(index, null);
+    sequences.setRelease(index, h + capacity);
+    head.setRelease(h + 1);
+    return e;
+  }
+
+  int size() {
+    var size = tail.get() - head.getAcquire();
+    return (int) Math.max(0, Math.min(size, capacity));
+  }
+
+  int capacity() {
+    return capacity;
+  }
+}
@@ -0,0 +1,199 @@
+package com.oviva.konnektor.watchdog.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands events to a delegate appender on a dedicated writer thread, callers only pay for an enqueue
+ * into a bounded {@link RingBuffer}. A stalled stdout therefore never stalls a probe, what happens
+ * once the buffer fills up is decided by the {@link OverflowPolicy}.
+ */
+public class RingBufferAppender extends UnsynchronizedAppenderBase<ILoggingEvent> {
+
+  public enum OverflowPolicy {
+    /** callers wait for space, nothing is lost */
+    BLOCK,
+    /** DEBUG and INFO are dropped once the buffer is 80% full, everything once it is full */
+    DROP_INFO,
+    /** events are dropped once the buffer is full */
+    DROP_ALL;
+
+    public static OverflowPolicy parse(String value) {
+      try {
+        return valueOf(value.strip().toUpperCase(Locale.ROOT));
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException(
+            "unknown overflow policy '%s', expected one of block, drop_info, drop_all"
+                .formatted(value),
+            e);
+      }
+    }
+  }
+
+  private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(2);
+  private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+  private final Appender<ILoggingEvent> delegate;
+  private final RingBuffer<ILoggingEvent> buffer;
+  private final OverflowPolicy policy;
+  private final int discardThreshold;
+
+  // indexed by level, see levelIndex()
+  private final LongAdder[] dropped = new LongAdder[5];
+  private final LongAdder encoded = new LongAdder();
+  private final LongAdder encodeNanos = new LongAdder();
+
+  private volatile Thread writer;
+  private volatile boolean writerParked;
+  private volatile boolean stopping;
+
+  public RingBufferAppender(Appender<ILoggingEvent> delegate, int capacity, OverflowPolicy policy) {
+    this.delegate = delegate;
+    this.buffer = new RingBuffer<>(capacity);
+    this.policy = policy;
+    this.discardThreshold = capacity - capacity / 5;
+    for (int i = 0; i < dropped.length; i++) {
+      dropped[i] = new LongAdder();
+    }
+  }
+
+  @Override
+  public void start() {
+    if (isStarted()) {
+      return;
+    }
+    stopping = false;
+    var thread = new Thread(this::drain, "log-writer");
+    thread.setDaemon(true);
+    writer = thread;
+    super.start();
+    thread.start();
+  }
+
+  /** writes out what is still buffered, waiting at most a few seconds for a stalled output */
+  @Override
+  public void stop() {
+    if (!isStarted()) {
+      return;
+    }
+    super.stop();
+    stopping = true;
+    var thread = writer;
+    LockSupport.unpark(thread);
+    try {
+      thread.join(DRAIN_TIMEOUT.toMillis());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (thread.isAlive()) {
+      addWarn("log-writer did not drain %d events within %s".formatted(depth(), DRAIN_TIMEOUT));
+    }
+    delegate.stop();
+  }
+
+  @Override
+  protected void append(ILoggingEvent event) {
+    // everything the writer thread would otherwise read from the caller's context
+    event.prepareForDeferredProcessing();
+    if (event.getLevel().toInt() == Level.ERROR_INT) {
+      event.getCallerData();
+    }
+
+    if (policy == OverflowPolicy.DROP_INFO
+        && event.getLevel().toInt() <= Level.INFO_INT
+        && buffer.size() >= discardThreshold) {
+      drop(event);
+      return;
+    }
+
+    while (!buffer.offer(event)) {
+      if (policy != OverflowPolicy.BLOCK || stopping) {
+        drop(event);
+        return;
+      }
+      wakeWriter();
+      LockSupport.parkNanos(BLOCK_PARK_NANOS);
+    }
+    if (writerParked) {
+      wakeWriter();
+    }
+  }
+
+  /** events waiting to be written */
+  public int depth() {
+    return buffer.size();
+  }
+
+  public int capacity() {
+    return buffer.capacity();
+  }
+
+  public long dropped(Level level) {
+    return dropped[levelIndex(level)].sum();
+  }
+
+  public long encodedCount() {
+    return encoded.sum();
+  }
+
+  /** total time the writer spent encoding and writing events */
+  public double encodeSeconds() {
+    return encodeNanos.sum() / 1e9;
+  }
+
+  private void drop(ILoggingEvent event) {
+    dropped[levelIndex(event.getLevel())].increment();
+  }
+
+  private void wakeWriter() {
+    LockSupport.unpark(writer);
+  }
+
+  private void drain() {
+    while (true) {
+      var event = buffer.poll();
+      if (event != null) {
+        write(event);
+        continue;
+      }
+      if (stopping) {
+        return;
+      }
+      // re-check after announcing the park, an event enqueued in between wakes us up right away
+      writerParked = true;
+      if (buffer.size() == 0 && !stopping) {
+        LockSupport.park(this);
+      }
+      writerParked = false;
+    }
+  }
+
+  private void write(ILoggingEvent event) {
+    var start = System.nanoTime();
+    try {
+      delegate.doAppend(event);
+    } catch (RuntimeException e) {
+      addError("failed to write log event", e);
+    } finally {
+      encodeNanos.add(System.nanoTime() - start);
+      encoded.increment();
+    }
+  }
+
+  private static int levelIndex(Level level) {
+    return switch (level.toInt()) {
+      case Level.ERROR_INT -> 0;
+      case Level.WARN_INT -> 1;
+      case Level.INFO_INT -> 2;
+      case Level.DEBUG_INT -> 3;
+      default -> 4;
+    };
+  }
+}
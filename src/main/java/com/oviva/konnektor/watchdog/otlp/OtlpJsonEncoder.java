@@ -0,0 +1,228 @@
+package com.oviva.konnektor.watchdog.otlp;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.FunctionTimer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encodes the meters of a registry as a gzipped OTLP/HTTP {@code ExportMetricsServiceRequest} in
+ * the JSON encoding, straight into the compressed stream.
+ *
+ * <p>Gauges become gauges, counters monotonic sums and timers and distribution summaries
+ * histograms, all cumulative since {@code start}. Timers are in seconds, like on {@code /metrics}.
+ * Other meters and gauges without a value are left out.
+ */
+public class OtlpJsonEncoder {
+
+  // opentelemetry.proto.metrics.v1.AggregationTemporality
+  private static final int CUMULATIVE = 2;
+
+  private final JsonFactory jsonFactory = new JsonFactory();
+  private final Map<String, String> resourceAttributes;
+  private final String startNanos;
+
+  public OtlpJsonEncoder(Map<String, String> resourceAttributes, Instant start) {
+    this.resourceAttributes = Map.copyOf(resourceAttributes);
+    this.startNanos = nanos(start);
+  }
+
+  public byte[] encode(Collection<Meter> meters, Instant now) {
+    var out = new ByteArrayOutputStream();
+    try (var gzip = new GZIPOutputStream(out)) {
+      write(gzip, meters, nanos(now));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  private void write(OutputStream out, Collection<Meter> meters, String timeNanos)
+      throws IOException {
+    // one metric with many data points per name
+    var byName = new LinkedHashMap<String, List<Meter>>();
+    for (var meter : meters) {
+      byName.computeIfAbsent(meter.getId().getName(), n -> new ArrayList<>()).add(meter);
+    }
+
+    try (var json = jsonFactory.createGenerator(out)) {
+      json.writeStartObject();
+      json.writeArrayFieldStart("resourceMetrics");
+      json.writeStartObject();
+
+      json.writeObjectFieldStart("resource");
+      json.writeArrayFieldStart("attributes");
+      for (var e : resourceAttributes.entrySet()) {
+        writeAttribute(json, e.getKey(), e.getValue());
+      }
+      json.writeEndArray();
+      json.writeEndObject();
+
+      json.writeArrayFieldStart("scopeMetrics");
+      json.writeStartObject();
+      json.writeObjectFieldStart("scope");
+      json.writeStringField("name", "konnektor-watchdog");
+      json.writeEndObject();
+      json.writeArrayFieldStart("metrics");
+      for (var group : byName.values()) {
+        writeMetric(json, group, timeNanos);
+      }
+      json.writeEndArray();
+      json.writeEndObject();
+      json.writeEndArray();
+
+      json.writeEndObject();
+      json.writeEndArray();
+      json.writeEndObject();
+    }
+  }
+
+  private void writeMetric(JsonGenerator json, List<Meter> group, String timeNanos)
+      throws IOException {
+    var first = group.get(0);
+    String type;
+    if (first instanceof Gauge) {
+      type = "gauge";
+    } else if (first instanceof Counter || first instanceof FunctionCounter) {
+      type = "sum";
+    } else if (first instanceof Timer
+        || first instanceof DistributionSummary
+        || first instanceof FunctionTimer) {
+      type = "histogram";
+    } else {
+      return;
+    }
+
+    var id = first.getId();
+    json.writeStartObject();
+    json.writeStringField("name", id.getName());
+    if (id.getDescription() != null) {
+      json.writeStringField("description", id.getDescription());
+    }
+    var unit = first instanceof Timer || first instanceof FunctionTimer ? "s" : id.getBaseUnit();
+    if (unit != null) {
+      json.writeStringField("unit", unit);
+    }
+    json.writeObjectFieldStart(type);
+    if (!type.equals("gauge")) {
+      json.writeNumberField("aggregationTemporality", CUMULATIVE);
+    }
+    if (type.equals("sum")) {
+      json.writeBooleanField("isMonotonic", true);
+    }
+    json.writeArrayFieldStart("dataPoints");
+    for (var meter : group) {
+      switch (meter) {
+        case Gauge g -> writeNumber(json, meter, g.value(), timeNanos);
+        case Counter c -> writeNumber(json, meter, c.count(), timeNanos);
+        case FunctionCounter c -> writeNumber(json, meter, c.count(), timeNanos);
+        case Timer t -> writeHistogram(json, meter, t.takeSnapshot(), TimeUnit.SECONDS, timeNanos);
+        case DistributionSummary s ->
+            writeHistogram(json, meter, s.takeSnapshot(), null, timeNanos);
+        case FunctionTimer t ->
+            writeCountAndSum(
+                json, meter, (long) t.count(), t.totalTime(TimeUnit.SECONDS), timeNanos);
+        default -> {
+          // a different type under the same name
+        }
+      }
+    }
+    json.writeEndArray();
+    json.writeEndObject();
+    json.writeEndObject();
+  }
+
+  private void writeNumber(JsonGenerator json, Meter meter, double value, String timeNanos)
+      throws IOException {
+    if (!Double.isFinite(value)) {
+      return;
+    }
+    json.writeStartObject();
+    writeDataPointHeader(json, meter, timeNanos);
+    json.writeNumberField("asDouble", value);
+    json.writeEndObject();
+  }
+
+  private void writeHistogram(
+      JsonGenerator json, Meter meter, HistogramSnapshot snapshot, TimeUnit unit, String timeNanos)
+      throws IOException {
+    json.writeStartObject();
+    writeDataPointHeader(json, meter, timeNanos);
+    json.writeStringField("count", Long.toString(snapshot.count()));
+    json.writeNumberField("sum", unit == null ? snapshot.total() : snapshot.total(unit));
+
+    var buckets = snapshot.histogramCounts();
+    if (buckets.length > 0) {
+      // cumulative in Micrometer, per bucket in OTLP, with one more for +Inf
+      json.writeArrayFieldStart("bucketCounts");
+      var below = 0.0;
+      for (var bucket : buckets) {
+        json.writeString(Long.toString((long) (bucket.count() - below)));
+        below = bucket.count();
+      }
+      json.writeString(Long.toString((long) Math.max(0, snapshot.count() - below)));
+      json.writeEndArray();
+      json.writeArrayFieldStart("explicitBounds");
+      for (var bucket : buckets) {
+        json.writeNumber(unit == null ? bucket.bucket() : bucket.bucket(unit));
+      }
+      json.writeEndArray();
+    }
+    json.writeEndObject();
+  }
+
+  private void writeCountAndSum(
+      JsonGenerator json, Meter meter, long count, double sum, String timeNanos)
+      throws IOException {
+    json.writeStartObject();
+    writeDataPointHeader(json, meter, timeNanos);
+    json.writeStringField("count", Long.toString(count));
+    json.writeNumberField("sum", sum);
+    json.writeEndObject();
+  }
+
+  private void writeDataPointHeader(JsonGenerator json, Meter meter, String timeNanos)
+      throws IOException {
+    json.writeArrayFieldStart("attributes");
+    for (Tag tag : meter.getId().getTagsAsIterable()) {
+      writeAttribute(json, tag.getKey(), tag.getValue());
+    }
+    json.writeEndArray();
+    json.writeStringField("startTimeUnixNano", startNanos);
+    json.writeStringField("timeUnixNano", timeNanos);
+  }
+
+  private static void writeAttribute(JsonGenerator json, String key, String value)
+      throws IOException {
+    json.writeStartObject();
+    json.writeStringField("key", key);
+    json.writeObjectFieldStart("value");
+    json.writeStringField("stringValue", value);
+    json.writeEndObject();
+    json.writeEndObject();
+  }
+
+  // 64 bit integers are strings in the JSON encoding of protobuf
+  private static String nanos(Instant instant) {
+    return Long.toString(TimeUnit.SECONDS.toNanos(instant.getEpochSecond()) + instant.getNano());
+  }
+}
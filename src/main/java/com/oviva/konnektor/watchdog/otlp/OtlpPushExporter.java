@@ -0,0 +1,242 @@
+package com.oviva.konnektor.watchdog.otlp;
+
+import com.oviva.konnektor.watchdog.logging.RepeatingErrorLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+
+/**
+ * Pushes the meters of a registry to an OTLP/HTTP collector, for sites where nothing can scrape
+ * {@code /metrics}. Every {@code interval} the registry is encoded into one gzipped batch on the
+ * scheduler, batches are sent in order on the executor, one request at a time.
+ *
+ * <p>A collector that is slow or down does not slow down collecting: batches wait in a queue of
+ * {@code queueSize}, once it is full the oldest batch is dropped. A batch the collector could not
+ * take right now is sent again on the next interval, one it rejected is dropped.
+ */
+public class OtlpPushExporter implements AutoCloseable {
+
+  private static final Logger logger = LoggerFactory.getLogger(OtlpPushExporter.class);
+
+  // https://opentelemetry.io/docs/specs/otlp/#retryable-response-codes
+  private static final Set<Integer> RETRYABLE = Set.of(429, 502, 503, 504);
+
+  /**
+   * @param endpoint the metrics endpoint of the collector, e.g. {@code
+   *     http://collector:4318/v1/metrics}
+   * @param headers sent with every request, e.g. for authentication
+   * @param resourceAttributes identify the watchdog at the collector, e.g. its site
+   */
+  public record Config(
+      URI endpoint,
+      Duration interval,
+      Duration timeout,
+      int queueSize,
+      Map<String, String> headers,
+      Map<String, String> resourceAttributes) {
+
+    public Config {
+      if (queueSize < 1) {
+        throw new IllegalArgumentException("expected queueSize >= 1, got %d".formatted(queueSize));
+      }
+      headers = Map.copyOf(headers);
+      resourceAttributes = Map.copyOf(resourceAttributes);
+    }
+
+    @Override
+    public String toString() {
+      // headers may hold credentials
+      return "Config[endpoint=%s, interval=%s, timeout=%s, queueSize=%d, resourceAttributes=%s]"
+          .formatted(endpoint, interval, timeout, queueSize, resourceAttributes);
+    }
+  }
+
+  private enum Outcome {
+    SENT,
+    RETRY,
+    REJECTED
+  }
+
+  private final Config config;
+  private final MeterRegistry registry;
+  private final ScheduledExecutorService scheduler;
+  private final Executor executor;
+  private final Clock clock;
+  private final HttpClient client;
+  private final OtlpJsonEncoder encoder;
+  private final RepeatingErrorLog errors;
+  private final String target;
+
+  private final Deque<byte[]> queue = new ArrayDeque<>();
+  private final AtomicBoolean sending = new AtomicBoolean();
+  private final Map<String, Counter> batches;
+  private volatile ScheduledFuture<?> schedule;
+
+  public OtlpPushExporter(
+      Config config,
+      MeterRegistry registry,
+      ScheduledExecutorService scheduler,
+      Executor executor,
+      Duration errorWindow,
+      Clock clock) {
+    this.config = config;
+    this.registry = registry;
+    this.scheduler = scheduler;
+    this.executor = executor;
+    this.clock = clock;
+    this.client =
+        HttpClient.newBuilder().connectTimeout(config.timeout()).executor(executor).build();
+    this.encoder = new OtlpJsonEncoder(config.resourceAttributes(), clock.instant());
+    this.errors = new RepeatingErrorLog(logger, Level.WARN, "collector", errorWindow, clock);
+    this.target = config.endpoint().toString();
+
+    batches =
+        Map.of(
+            "sent", batchCounter("sent"),
+            "retried", batchCounter("retried"),
+            "rejected", batchCounter("rejected"),
+            "dropped", batchCounter("dropped"));
+    Gauge.builder("watchdog_otlp_queue_depth", this, OtlpPushExporter::queued)
+        .description("batches waiting to be pushed to the OTLP collector")
+        .register(registry);
+  }
+
+  private Counter batchCounter(String outcome) {
+    return Counter.builder("watchdog_otlp_batches")
+        .description("batches of metrics pushed to the OTLP collector, by outcome")
+        .tag("outcome", outcome)
+        .register(registry);
+  }
+
+  public void start() {
+    var millis = config.interval().toMillis();
+    schedule = scheduler.scheduleAtFixedRate(this::tick, millis, millis, TimeUnit.MILLISECONDS);
+    logger.atInfo().log("pushing metrics to {} every {}", target, config.interval());
+  }
+
+  private void tick() {
+    try {
+      collect();
+    } catch (RuntimeException e) {
+      // must not cancel the schedule
+      logger.atWarn().setCause(e).log("failed to encode metrics for {}", target);
+    }
+    try {
+      executor.execute(this::drain);
+    } catch (RejectedExecutionException e) {
+      // shutting down
+    }
+  }
+
+  /** encodes the registry into a batch at the end of the queue */
+  void collect() {
+    var batch = encoder.encode(registry.getMeters(), clock.instant());
+    synchronized (queue) {
+      if (queue.size() >= config.queueSize()) {
+        queue.removeFirst();
+        batches.get("dropped").increment();
+      }
+      queue.addLast(batch);
+    }
+  }
+
+  /**
+   * sends the queued batches in order until the queue is empty or the collector can not take more
+   * right now, returns right away while another thread is sending
+   */
+  void drain() {
+    if (!sending.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      while (true) {
+        byte[] batch;
+        synchronized (queue) {
+          batch = queue.peekFirst();
+        }
+        if (batch == null) {
+          return;
+        }
+        var outcome = send(batch);
+        if (outcome == Outcome.RETRY) {
+          batches.get("retried").increment();
+          return;
+        }
+        synchronized (queue) {
+          // unless dropped while it was sent
+          if (queue.peekFirst() == batch) {
+            queue.removeFirst();
+          }
+        }
+        batches.get(outcome == Outcome.SENT ? "sent" : "rejected").increment();
+      }
+    } finally {
+      sending.set(false);
+    }
+  }
+
+  private Outcome send(byte[] batch) {
+    var request = HttpRequest.newBuilder(config.endpoint()).timeout(config.timeout());
+    config.headers().forEach(request::header);
+    request
+        .header("Content-Type", "application/json")
+        .header("Content-Encoding", "gzip")
+        .POST(HttpRequest.BodyPublishers.ofByteArray(batch));
+    try {
+      var response = client.send(request.build(), HttpResponse.BodyHandlers.discarding());
+      var status = response.statusCode();
+      if (status >= 200 && status < 300) {
+        errors.resolved(target);
+        return Outcome.SENT;
+      }
+      var e = new IOException("status %d".formatted(status));
+      if (RETRYABLE.contains(status)) {
+        errors.log(target, e, "collector {} busy, pushing again later", target);
+        return Outcome.RETRY;
+      }
+      errors.log(target, e, "collector {} rejected metrics, dropping them", target);
+      return Outcome.REJECTED;
+    } catch (IOException e) {
+      errors.log(target, e, "failed to push metrics to {}, pushing again later", target);
+      return Outcome.RETRY;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Outcome.RETRY;
+    }
+  }
+
+  int queued() {
+    synchronized (queue) {
+      return queue.size();
+    }
+  }
+
+  @Override
+  public void close() {
+    var s = schedule;
+    if (s != null) {
+      s.cancel(false);
+    }
+    client.shutdownNow();
+  }
+}
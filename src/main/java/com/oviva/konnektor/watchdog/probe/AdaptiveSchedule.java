@@ -0,0 +1,94 @@
+package com.oviva.konnektor.watchdog.probe;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Decides when to probe a Konnektor next, one instance per Konnektor.
+ *
+ * <ul>
+ *   <li>right after a change or while a card is not verified: probe again after {@code min}
+ *   <li>stable: start at {@code interval} and double up to {@code max}
+ *   <li>failing: exponential backoff starting at {@code interval} up to {@code max}
+ * </ul>
+ *
+ * Every delay is spread by {@code jitter} so that a fleet sharing a proxy does not probe in sync.
+ */
+public class AdaptiveSchedule {
+
+  public record Config(Duration interval, Duration min, Duration max, double jitter) {
+
+    public Config {
+      if (min.compareTo(interval) > 0 || interval.compareTo(max) > 0) {
+        throw new IllegalArgumentException(
+            "expected min <= interval <= max, got %s, %s, %s".formatted(min, interval, max));
+      }
+      if (jitter < 0 || jitter >= 1) {
+        throw new IllegalArgumentException("expected 0 <= jitter < 1, got %s".formatted(jitter));
+      }
+    }
+  }
+
+  // 2^10 times the interval is more than any sane max
+  private static final int MAX_DOUBLINGS = 10;
+
+  private final Config config;
+  private final DoubleSupplier random;
+
+  private int failures;
+  private int stable;
+
+  public AdaptiveSchedule(Config config) {
+    this(config, () -> ThreadLocalRandom.current().nextDouble());
+  }
+
+  AdaptiveSchedule(Config config, DoubleSupplier random) {
+    this.config = config;
+    this.random = random;
+  }
+
+  /** delay until the next probe, given the snapshot before and after the last probe */
+  public Duration next(ProbeSnapshot previous, ProbeSnapshot current) {
+    if (!current.up()) {
+      stable = 0;
+      failures++;
+      return jittered(doubled(config.interval(), failures - 1));
+    }
+    failures = 0;
+
+    if (changed(previous, current) || hasUnverifiedCards(current)) {
+      stable = 0;
+      return jittered(config.min());
+    }
+
+    stable++;
+    return jittered(doubled(config.interval(), stable - 1));
+  }
+
+  private static boolean changed(ProbeSnapshot previous, ProbeSnapshot current) {
+    return previous.up() != current.up() || !previous.cards().equals(current.cards());
+  }
+
+  private static boolean hasUnverifiedCards(ProbeSnapshot snapshot) {
+    return snapshot.cards().stream().anyMatch(c -> c.status() != CardStatus.VERIFIED);
+  }
+
+  private Duration doubled(Duration base, int times) {
+    var d = base.multipliedBy(1L << Math.min(times, MAX_DOUBLINGS));
+    return d.compareTo(config.max()) > 0 ? config.max() : d;
+  }
+
+  private Duration jittered(Duration d) {
+    // uniformly within [d * (1 - jitter), d * (1 + jitter)], bounded by min and max
+    var factor = 1 + config.jitter() * (2 * random.getAsDouble() - 1);
+    var jittered = Duration.ofMillis((long) (d.toMillis() * factor));
+    if (jittered.compareTo(config.min()) < 0) {
+      return config.min();
+    }
+    if (jittered.compareTo(config.max()) > 0) {
+      return config.max();
+    }
+    return jittered;
+  }
+}
@@ -0,0 +1,3 @@
+package com.oviva.konnektor.watchdog.probe;
+
+public record CardState(String handle, String holderName, String telematikId, CardStatus status) {}
@@ -0,0 +1,19 @@
+package com.oviva.konnektor.watchdog.probe;
+
+/** Status of a card as exported by the {@code card_status} gauge. */
+public enum CardStatus {
+  VERIFIED(1.0),
+  NOT_VERIFIED(0.0),
+  /** the status could not be determined, e.g. the Konnektor did not answer in time */
+  UNKNOWN(-1.0);
+
+  private final double value;
+
+  CardStatus(double value) {
+    this.value = value;
+  }
+
+  public double value() {
+    return value;
+  }
+}
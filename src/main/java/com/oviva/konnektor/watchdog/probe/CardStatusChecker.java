@@ -0,0 +1,124 @@
+package com.oviva.konnektor.watchdog.probe;
+
+import com.oviva.konnektor.watchdog.logging.RepeatingErrorLog;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+
+/**
+ * Checks the status of many cards concurrently. At most {@code parallelism} checks hit the
+ * Konnektor at the same time, each check must finish within {@code cardTimeout} and all checks
+ * together within the budget passed to {@link #check(List, Function, Duration)}. Cards that miss
+ * their deadline or fail are reported as {@link CardStatus#UNKNOWN}.
+ */
+public class CardStatusChecker {
+
+  private static final Logger logger = LoggerFactory.getLogger(CardStatusChecker.class);
+
+  private final ExecutorService executor;
+  private final int parallelism;
+  private final Duration cardTimeout;
+  private final RepeatingErrorLog cardErrors;
+
+  /**
+   * @param errorWindow how often a card that keeps failing is logged, see {@link RepeatingErrorLog}
+   */
+  public CardStatusChecker(
+      ExecutorService executor, int parallelism, Duration cardTimeout, Duration errorWindow) {
+    this.executor = executor;
+    this.parallelism = parallelism;
+    this.cardTimeout = cardTimeout;
+    this.cardErrors =
+        new RepeatingErrorLog(logger, Level.WARN, "card_handle", errorWindow, Clock.systemUTC());
+  }
+
+  public List<CardState> check(
+      List<CardState> cards, Function<String, CardStatus> statusOf, Duration budget) {
+
+    var deadline = System.nanoTime() + budget.toNanos();
+    var permits = new Semaphore(parallelism);
+
+    var pending = new ArrayList<Future<CardStatus>>(cards.size());
+    for (var card : cards) {
+      pending.add(executor.submit(() -> checkOne(card.handle(), statusOf, permits)));
+    }
+
+    var checked = new ArrayList<CardState>(cards.size());
+    for (int i = 0; i < cards.size(); i++) {
+      var card = cards.get(i);
+      var status = await(card.handle(), pending.get(i), deadline);
+      checked.add(new CardState(card.handle(), card.holderName(), card.telematikId(), status));
+    }
+    return checked;
+  }
+
+  private CardStatus checkOne(
+      String handle, Function<String, CardStatus> statusOf, Semaphore permits)
+      throws InterruptedException {
+
+    permits.acquire();
+    Future<CardStatus> call;
+    try {
+      // the permit is held until the call really returns, a call that missed its deadline
+      // still counts towards the parallelism
+      call =
+          executor.submit(
+              () -> {
+                try {
+                  return statusOf.apply(handle);
+                } finally {
+                  permits.release();
+                }
+              });
+    } catch (RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+
+    try {
+      var status = call.get(cardTimeout.toNanos(), TimeUnit.NANOSECONDS);
+      cardErrors.resolved(handle);
+      return status;
+    } catch (TimeoutException e) {
+      call.cancel(true);
+      cardErrors.log(handle, e, "status check of card {} timed out after {}", handle, cardTimeout);
+      return CardStatus.UNKNOWN;
+    } catch (ExecutionException e) {
+      cardErrors.log(handle, e.getCause(), "status check of card {} failed", handle);
+      return CardStatus.UNKNOWN;
+    } catch (InterruptedException e) {
+      // cancelled because the overall budget is exhausted
+      call.cancel(true);
+      throw e;
+    }
+  }
+
+  private CardStatus await(String handle, Future<CardStatus> future, long deadline) {
+    try {
+      var remaining = deadline - System.nanoTime();
+      return future.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException | CancellationException e) {
+      future.cancel(true);
+      cardErrors.log(handle, e, "status check of card {} exceeded the overall budget", handle);
+      return CardStatus.UNKNOWN;
+    } catch (ExecutionException e) {
+      return CardStatus.UNKNOWN;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      future.cancel(true);
+      return CardStatus.UNKNOWN;
+    }
+  }
+}
@@ -0,0 +1,125 @@
+package com.oviva.konnektor.watchdog.probe;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stops probing a Konnektor that keeps failing. After {@code failureThreshold} consecutive failures
+ * the breaker opens and calls fail fast for {@code openDuration}. Then a single trial call is let
+ * through (half-open), its outcome either closes the breaker again or re-opens it.
+ */
+public class CircuitBreaker {
+
+  private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+  public enum State {
+    CLOSED(0),
+    HALF_OPEN(1),
+    OPEN(2);
+
+    private final int value;
+
+    State(int value) {
+      this.value = value;
+    }
+  }
+
+  private final String konnektor;
+  private final int failureThreshold;
+  private final Duration openDuration;
+  private final Clock clock;
+  private final MeterRegistry registry;
+
+  private State state = State.CLOSED;
+  private int failures;
+  private Instant openUntil;
+  private boolean trialInFlight;
+
+  public CircuitBreaker(
+      String konnektor,
+      int failureThreshold,
+      Duration openDuration,
+      Clock clock,
+      MeterRegistry registry) {
+    this.konnektor = konnektor;
+    this.failureThreshold = failureThreshold;
+    this.openDuration = openDuration;
+    this.clock = clock;
+    this.registry = registry;
+
+    Gauge.builder("konnektor_circuit_state", this, b -> b.state().value)
+        .description("state of the circuit breaker, 0 closed, 1 half-open, 2 open")
+        .tag("konnektor", konnektor)
+        .register(registry);
+  }
+
+  /**
+   * @return {@code true} if a call may go to the Konnektor, must be followed by {@link
+   *     #onSuccess()} or {@link #onFailure()}
+   */
+  public synchronized boolean tryAcquire() {
+    switch (state) {
+      case CLOSED -> {
+        return true;
+      }
+      case OPEN -> {
+        if (clock.instant().isBefore(openUntil)) {
+          return false;
+        }
+        transition(State.HALF_OPEN);
+        trialInFlight = true;
+        return true;
+      }
+      case HALF_OPEN -> {
+        if (trialInFlight) {
+          return false;
+        }
+        trialInFlight = true;
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public synchronized void onSuccess() {
+    failures = 0;
+    trialInFlight = false;
+    if (state != State.CLOSED) {
+      transition(State.CLOSED);
+    }
+  }
+
+  public synchronized void onFailure() {
+    failures++;
+    trialInFlight = false;
+    if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= failureThreshold)) {
+      openUntil = clock.instant().plus(openDuration);
+      transition(State.OPEN);
+    }
+  }
+
+  public synchronized State state() {
+    return state;
+  }
+
+  private void transition(State to) {
+    logger
+        .atInfo()
+        .addKeyValue("konnektor", konnektor)
+        .log("circuit breaker of konnektor {} changed from {} to {}", konnektor, state, to);
+    state = to;
+    Counter.builder("konnektor_circuit_transitions")
+        .description("state changes of the circuit breaker, by target state")
+        .tag("konnektor", konnektor)
+        .tag("to", to.name().toLowerCase(Locale.ROOT))
+        .register(registry)
+        .increment();
+  }
+}
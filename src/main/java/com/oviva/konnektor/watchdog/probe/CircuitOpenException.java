@@ -0,0 +1,14 @@
+package com.oviva.konnektor.watchdog.probe;
+
+import java.io.Serial;
+
+/** Thrown instead of calling a Konnektor whose {@link CircuitBreaker} is open. */
+public class CircuitOpenException extends RuntimeException {
+
+  @Serial private static final long serialVersionUID = 1L;
+
+  public CircuitOpenException(String konnektor) {
+    // no stack trace, failing fast is expected and should be cheap
+    super("circuit breaker of konnektor %s is open".formatted(konnektor), null, false, false);
+  }
+}
@@ -0,0 +1,154 @@
+package com.oviva.konnektor.watchdog.probe;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Liveness and readiness of the watchdog, computed from the state the {@link ProbeEngine} already
+ * holds. Neither check calls a Konnektor, a hanging Konnektor can not make them slow.
+ *
+ * <p>The watchdog is live as long as the scheduler runs its heartbeat and no Konnektor went without
+ * a finished probe for {@code stallTimeout}. It is ready once every Konnektor has a result and at
+ * least {@code readyMinRatio} of them succeeded within {@code readyMaxAge}, never before the engine
+ * started.
+ */
+public class EngineHealth {
+
+  public static final String UP = "UP";
+  public static final String DOWN = "DOWN";
+
+  /**
+   * @param heartbeatTimeout the scheduler is considered dead if its heartbeat is older
+   * @param stallTimeout a Konnektor is considered stalled if no probe finished for this long
+   * @param readyMaxAge a Konnektor is ready if its last success is at most this old
+   * @param readyMinRatio ratio of ready Konnektors required for the watchdog to be ready
+   */
+  public record Config(
+      Duration heartbeatTimeout,
+      Duration stallTimeout,
+      Duration readyMaxAge,
+      double readyMinRatio) {
+
+    public Config {
+      if (readyMinRatio < 0 || readyMinRatio > 1) {
+        throw new IllegalArgumentException(
+            "expected 0 <= readyMinRatio <= 1, got %s".formatted(readyMinRatio));
+      }
+    }
+  }
+
+  public record Liveness(String status, Double heartbeatAgeSeconds, List<String> stalled) {
+    public boolean up() {
+      return UP.equals(status);
+    }
+  }
+
+  public record Readiness(String status, int ready, int total, List<KonnektorHealth> konnektors) {
+    public boolean up() {
+      return UP.equals(status);
+    }
+  }
+
+  /**
+   * @param status {@code pending} before the first result, else {@code up}, {@code down} or {@code
+   *     stale} for results restored after a restart
+   */
+  public record KonnektorHealth(
+      String konnektor, String status, boolean ready, String lastSuccess, Double ageSeconds) {}
+
+  private final ProbeEngine engine;
+  private final Clock clock;
+  // replaced when the probe intervals change
+  private volatile Config config;
+
+  public EngineHealth(ProbeEngine engine, Config config, Clock clock) {
+    this.engine = engine;
+    this.config = config;
+    this.clock = clock;
+  }
+
+  public void updateConfig(Config config) {
+    this.config = config;
+  }
+
+  public Liveness liveness() {
+    var config = this.config;
+    var now = clock.instant();
+    var startedAt = engine.startedAt();
+    var heartbeat = engine.heartbeat();
+    if (startedAt == null || heartbeat == null) {
+      // still booting
+      return new Liveness(UP, null, List.of());
+    }
+
+    var heartbeatAge = Duration.between(heartbeat, now);
+    var stalled = new ArrayList<String>();
+    for (var snapshot : engine.snapshots()) {
+      var finished = snapshot.stale() ? null : snapshot.probedAt();
+      var since = finished == null || finished.isBefore(startedAt) ? startedAt : finished;
+      if (Duration.between(since, now).compareTo(config.stallTimeout()) > 0) {
+        stalled.add(snapshot.konnektor());
+      }
+    }
+    stalled.sort(Comparator.naturalOrder());
+
+    var up = heartbeatAge.compareTo(config.heartbeatTimeout()) <= 0 && stalled.isEmpty();
+    return new Liveness(up ? UP : DOWN, seconds(heartbeatAge), stalled);
+  }
+
+  public Readiness readiness() {
+    if (engine.startedAt() == null) {
+      // the Konnektors are not registered yet
+      return new Readiness(DOWN, 0, 0, List.of());
+    }
+    var config = this.config;
+    var now = clock.instant();
+    var konnektors = new ArrayList<KonnektorHealth>();
+    var pending = false;
+    var ready = 0;
+    for (var snapshot : engine.snapshots()) {
+      var health = health(snapshot, now, config.readyMaxAge());
+      konnektors.add(health);
+      pending |= health.status().equals("pending");
+      if (health.ready()) {
+        ready++;
+      }
+    }
+    konnektors.sort(Comparator.comparing(KonnektorHealth::konnektor));
+
+    var total = konnektors.size();
+    var up = !pending && ready >= Math.ceil(config.readyMinRatio() * total);
+    return new Readiness(up ? UP : DOWN, ready, total, konnektors);
+  }
+
+  private static KonnektorHealth health(ProbeSnapshot snapshot, Instant now, Duration maxAge) {
+    String status;
+    if (snapshot.version() == 0) {
+      status = "pending";
+    } else if (snapshot.stale()) {
+      status = "stale";
+    } else {
+      status = snapshot.up() ? "up" : "down";
+    }
+
+    var lastSuccess = snapshot.lastSuccess();
+    if (lastSuccess == null) {
+      return new KonnektorHealth(snapshot.konnektor(), status, false, null, null);
+    }
+    var age = Duration.between(lastSuccess, now);
+    return new KonnektorHealth(
+        snapshot.konnektor(),
+        status,
+        age.compareTo(maxAge) <= 0,
+        lastSuccess.toString(),
+        seconds(age));
+  }
+
+  private static double seconds(Duration d) {
+    return d.toMillis() / 1000.0;
+  }
+}
@@ -0,0 +1,15 @@
+package com.oviva.konnektor.watchdog.probe;
+
+import java.util.List;
+
+@FunctionalInterface
+public interface Probe {
+
+  /**
+   * Checks the Konnektor and its cards, may block for as long as the Konnektor takes to respond.
+   *
+   * @return the cards currently plugged into the Konnektor
+   * @throws RuntimeException in case the Konnektor could not be probed
+   */
+  List<CardState> probe();
+}
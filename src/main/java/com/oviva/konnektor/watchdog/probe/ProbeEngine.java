@@ -0,0 +1,434 @@
+package com.oviva.konnektor.watchdog.probe;
+
+import com.oviva.konnektor.watchdog.logging.RepeatingErrorLog;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.event.Level;
+
+/**
+ * Probes a fleet of Konnektors on its own schedule and publishes the results as immutable {@link
+ * ProbeSnapshot}s. Readers never block on a Konnektor, they only see the latest snapshot.
+ *
+ * <p>Probes run on the given executor, typically virtual threads. At most {@code concurrency}
+ * probes run at the same time and every Konnektor is only probed by one thread at a time.
+ */
+public class ProbeEngine {
+
+  private static final Logger logger = LoggerFactory.getLogger(ProbeEngine.class);
+
+  static final Duration HEARTBEAT = Duration.ofSeconds(5);
+
+  private final ScheduledExecutorService scheduler;
+  private final ExecutorService probeExecutor;
+  private final Semaphore concurrency;
+  private volatile AdaptiveSchedule.Config schedule;
+  private final Clock clock;
+  private final RepeatingErrorLog probeErrors;
+
+  private final Map<String, Target> targets = new ConcurrentHashMap<>();
+  private final List<Consumer<ProbeSnapshot>> listeners = new CopyOnWriteArrayList<>();
+
+  // null until started
+  private volatile Instant startedAt;
+  private volatile Instant heartbeat;
+
+  public ProbeEngine(
+      ScheduledExecutorService scheduler,
+      ExecutorService probeExecutor,
+      int concurrency,
+      AdaptiveSchedule.Config schedule,
+      Duration errorWindow,
+      Clock clock) {
+    this.scheduler = scheduler;
+    this.probeExecutor = probeExecutor;
+    this.concurrency = new Semaphore(concurrency);
+    this.schedule = schedule;
+    this.clock = clock;
+    this.probeErrors = new RepeatingErrorLog(logger, Level.ERROR, "konnektor", errorWindow, clock);
+  }
+
+  /** adds a Konnektor, once the engine is started it is probed right away */
+  public void addTarget(String konnektor, Probe probe) {
+    var target =
+        new Target(
+            konnektor, probe, new AdaptiveSchedule(schedule), ProbeSnapshot.initial(konnektor));
+    if (targets.putIfAbsent(konnektor, target) != null) {
+      throw new IllegalArgumentException("konnektor %s already registered".formatted(konnektor));
+    }
+    if (startedAt != null) {
+      scheduleNext(target, Duration.ZERO);
+    }
+  }
+
+  /**
+   * swaps the probe of a Konnektor, e.g. because its configuration changed. The latest snapshot is
+   * kept until the new probe published one, a probe of the old one that is still running is
+   * discarded.
+   */
+  public void replaceTarget(String konnektor, Probe probe) {
+    var previous = targets.get(konnektor);
+    if (previous == null) {
+      throw new IllegalArgumentException("konnektor %s not registered".formatted(konnektor));
+    }
+    var target =
+        new Target(konnektor, probe, new AdaptiveSchedule(schedule), previous.snapshot.get());
+    targets.put(konnektor, target);
+    cancel(previous);
+    if (startedAt != null) {
+      scheduleNext(target, Duration.ZERO);
+    }
+  }
+
+  /**
+   * stops probing a Konnektor, a probe that is still running is discarded
+   *
+   * @return {@code false} if the Konnektor was not registered
+   */
+  public boolean removeTarget(String konnektor) {
+    return removeTarget(konnektor, () -> {});
+  }
+
+  /**
+   * stops probing a Konnektor, a probe that is still running is discarded
+   *
+   * @param whenIdle runs once a probe that is still running finished, e.g. to remove meters it
+   *     would register again, right away if none is running
+   * @return {@code false} if the Konnektor was not registered, {@code whenIdle} does not run then
+   */
+  public boolean removeTarget(String konnektor, Runnable whenIdle) {
+    var target = targets.remove(konnektor);
+    if (target == null) {
+      return false;
+    }
+    cancel(target);
+    target.whenIdle.add(whenIdle);
+    if (target.running.tryAcquire()) {
+      target.running.release();
+      runWhenIdle(target);
+    }
+    return true;
+  }
+
+  /**
+   * applies a new schedule to all Konnektors. Their schedules start over, probes planned later than
+   * the new interval are moved to it.
+   */
+  public void updateSchedule(AdaptiveSchedule.Config schedule) {
+    this.schedule = schedule;
+    for (var target : targets.values()) {
+      target.schedule = new AdaptiveSchedule(schedule);
+      var pending = target.next.get();
+      if (pending != null
+          && pending.getDelay(TimeUnit.MILLISECONDS) > schedule.interval().toMillis()
+          && target.next.compareAndSet(pending, null)
+          && pending.cancel(false)) {
+        scheduleNext(target, schedule.interval());
+      }
+    }
+  }
+
+  private void cancel(Target target) {
+    var scheduled = target.next.getAndSet(null);
+    if (scheduled != null) {
+      scheduled.cancel(false);
+    }
+  }
+
+  /**
+   * publishes the snapshot of a previous run as the {@link ProbeSnapshot#stale() stale} state of
+   * its Konnektor, until it is probed again. Must be called before {@link #start()}.
+   *
+   * @return {@code false} if the Konnektor is not registered (anymore)
+   */
+  public boolean restore(ProbeSnapshot snapshot) {
+    var target = targets.get(snapshot.konnektor());
+    if (target == null) {
+      return false;
+    }
+    publish(target, snapshot.asStale());
+    return true;
+  }
+
+  /**
+   * starts probing all targets, spreading their first probes evenly across the minimum interval.
+   * After that every target is probed on its own {@link AdaptiveSchedule}.
+   */
+  public void start() {
+    startedAt = clock.instant();
+    heartbeat = startedAt;
+    try {
+      scheduler.scheduleWithFixedDelay(
+          () -> heartbeat = clock.instant(),
+          HEARTBEAT.toMillis(),
+          HEARTBEAT.toMillis(),
+          TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      // shutting down
+      return;
+    }
+
+    var all = new ArrayList<>(targets.values());
+    var step = schedule.min().dividedBy(Math.max(1, all.size()));
+    for (int i = 0; i < all.size(); i++) {
+      scheduleNext(all.get(i), step.multipliedBy(i));
+    }
+  }
+
+  /**
+   * probes the Konnektor right away instead of on its schedule, e.g. because it reported a change.
+   * If it is being probed already, it is probed once more right after.
+   */
+  public void probeNow(String konnektor) {
+    var target = targets.get(konnektor);
+    if (target == null) {
+      throw new IllegalArgumentException("konnektor %s not registered".formatted(konnektor));
+    }
+    target.requested.set(true);
+    submitRequested(target);
+  }
+
+  private void submitRequested(Target target) {
+    if (!registered(target)) {
+      // removed while its probe was running
+      return;
+    }
+    cancel(target);
+    submit(target, true);
+  }
+
+  /** when {@link #start()} was called, {@code null} before */
+  public Instant startedAt() {
+    return startedAt;
+  }
+
+  /**
+   * the last time the scheduler ran the heartbeat task, every {@link #HEARTBEAT} while it is alive.
+   * {@code null} before {@link #start()}.
+   */
+  public Instant heartbeat() {
+    return heartbeat;
+  }
+
+  /** the latest published snapshot of the given Konnektor, never blocks */
+  public ProbeSnapshot snapshot(String konnektor) {
+    var target = targets.get(konnektor);
+    if (target == null) {
+      throw new IllegalArgumentException("konnektor %s not registered".formatted(konnektor));
+    }
+    return target.snapshot.get();
+  }
+
+  public List<ProbeSnapshot> snapshots() {
+    return targets.values().stream().map(t -> t.snapshot.get()).toList();
+  }
+
+  /** listeners are called on the probing thread for every newly published snapshot */
+  public void addListener(Consumer<ProbeSnapshot> listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(Consumer<ProbeSnapshot> listener) {
+    listeners.remove(listener);
+  }
+
+  private void submit(Target target, boolean requested) {
+    if (!target.running.tryAcquire()) {
+      if (requested) {
+        // the running probe submits again once it is done
+        return;
+      }
+      logger
+          .atWarn()
+          .addKeyValue("konnektor", target.konnektor)
+          .log("previous probe of konnektor {} still running, skipping", target.konnektor);
+      return;
+    }
+    try {
+      probeExecutor.execute(
+          () -> {
+            try {
+              concurrency.acquire();
+              try {
+                target.requested.set(false);
+                var delay = probeOnce(target);
+                scheduleNext(target, delay);
+              } finally {
+                concurrency.release();
+              }
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              return;
+            } finally {
+              target.running.release();
+              runWhenIdle(target);
+            }
+            if (target.requested.get()) {
+              // requested while this probe was running
+              submitRequested(target);
+            }
+          });
+    } catch (RuntimeException e) {
+      // e.g. rejected while shutting down
+      target.running.release();
+      throw e;
+    }
+  }
+
+  private void scheduleNext(Target target, Duration delay) {
+    if (!registered(target)) {
+      // removed or replaced meanwhile
+      return;
+    }
+    logger
+        .atDebug()
+        .addKeyValue("konnektor", target.konnektor)
+        .log("probing konnektor {} again in {}", target.konnektor, delay);
+    ScheduledFuture<?> scheduled;
+    try {
+      scheduled =
+          scheduler.schedule(() -> submit(target, false), delay.toMillis(), TimeUnit.MILLISECONDS);
+    } catch (RejectedExecutionException e) {
+      // shutting down
+      return;
+    }
+    // e.g. a probe that finished while the schedule was updated, only one may stay pending
+    var previous = target.next.getAndSet(scheduled);
+    if (previous != null) {
+      previous.cancel(false);
+    }
+    if (!registered(target)) {
+      // removed meanwhile
+      cancel(target);
+    }
+  }
+
+  Duration probeOnce(String konnektor) {
+    return probeOnce(targets.get(konnektor));
+  }
+
+  /**
+   * @return the delay until the target should be probed again
+   */
+  private Duration probeOnce(Target target) {
+    var konnektor = target.konnektor;
+    logger.atDebug().addKeyValue("konnektor", konnektor).log("probing konnektor {}", konnektor);
+
+    var previous = target.snapshot.get();
+    var started = clock.instant();
+    ProbeSnapshot next;
+    try {
+      var cards = target.probe.probe();
+      var now = clock.instant();
+      next =
+          new ProbeSnapshot(
+              konnektor,
+              previous.version() + 1,
+              true,
+              cards,
+              now,
+              now,
+              Duration.between(started, now));
+      probeErrors.resolved(konnektor);
+      logger
+          .atInfo()
+          .addKeyValue("konnektor", konnektor)
+          .log("updated cards of konnektor {}, found {} cards", konnektor, cards.size());
+    } catch (CircuitOpenException e) {
+      logger.atInfo().addKeyValue("konnektor", konnektor).log(e.getMessage());
+      next = failed(previous, started);
+    } catch (RuntimeException e) {
+      // anything escaping here would silently cancel the schedule, a Konnektor that is down fails
+      // every probe and its stack trace is only logged once
+      probeErrors.log(konnektor, e, "failed to probe konnektor {}", konnektor);
+      next = failed(previous, started);
+    }
+
+    publish(target, next);
+    return target.schedule.next(previous, next);
+  }
+
+  private ProbeSnapshot failed(ProbeSnapshot previous, Instant started) {
+    var now = clock.instant();
+    return new ProbeSnapshot(
+        previous.konnektor(),
+        previous.version() + 1,
+        false,
+        List.of(),
+        now,
+        previous.lastSuccess(),
+        Duration.between(started, now));
+  }
+
+  /** callbacks of a removed target, each runs once whoever sees it idle first */
+  private static void runWhenIdle(Target target) {
+    for (Runnable r; (r = target.whenIdle.poll()) != null; ) {
+      try {
+        r.run();
+      } catch (RuntimeException e) {
+        logger.atError().setCause(e).log("cleanup failed for konnektor {}", target.konnektor);
+      }
+    }
+  }
+
+  private boolean registered(Target target) {
+    return targets.get(target.konnektor) == target;
+  }
+
+  private void publish(Target target, ProbeSnapshot next) {
+    if (!registered(target)) {
+      return;
+    }
+    target.snapshot.set(next);
+    for (var listener : listeners) {
+      try {
+        listener.accept(next);
+      } catch (RuntimeException e) {
+        logger
+            .atError()
+            .setCause(e)
+            .log("snapshot listener failed for konnektor {}", target.konnektor);
+      }
+    }
+  }
+
+  private static final class Target {
+    private final String konnektor;
+    private final Probe probe;
+    private final AtomicReference<ProbeSnapshot> snapshot;
+    // replaced when the schedule is updated
+    private volatile AdaptiveSchedule schedule;
+    private final Semaphore running = new Semaphore(1);
+    // a probe was requested out of schedule
+    private final AtomicBoolean requested = new AtomicBoolean();
+    private final AtomicReference<ScheduledFuture<?>> next = new AtomicReference<>();
+    // run once the target is removed and no probe of it is running
+    private final Queue<Runnable> whenIdle = new ConcurrentLinkedQueue<>();
+
+    private Target(
+        String konnektor, Probe probe, AdaptiveSchedule schedule, ProbeSnapshot snapshot) {
+      this.konnektor = konnektor;
+      this.probe = probe;
+      this.schedule = schedule;
+      this.snapshot = new AtomicReference<>(snapshot);
+    }
+  }
+}
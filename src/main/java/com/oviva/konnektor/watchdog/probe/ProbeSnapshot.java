@@ -0,0 +1,61 @@
+package com.oviva.konnektor.watchdog.probe;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Immutable result of probing a Konnektor. Gauges only ever read the latest snapshot, a scrape
+ * never talks to the Konnektor itself.
+ *
+ * @param version increases with every published snapshot, {@code 0} means not probed yet
+ * @param up whether the last probe succeeded
+ * @param probedAt when the last probe finished, {@code null} if not probed yet
+ * @param lastSuccess when the last successful probe finished, {@code null} if never
+ * @param stale restored from a previous run, this process did not probe the Konnektor yet
+ * @param duration how long the last probe took, {@code null} if this process did not probe yet
+ */
+public record ProbeSnapshot(
+    String konnektor,
+    long version,
+    boolean up,
+    List<CardState> cards,
+    Instant probedAt,
+    Instant lastSuccess,
+    boolean stale,
+    Duration duration) {
+
+  public ProbeSnapshot {
+    cards = List.copyOf(cards);
+  }
+
+  public ProbeSnapshot(
+      String konnektor,
+      long version,
+      boolean up,
+      List<CardState> cards,
+      Instant probedAt,
+      Instant lastSuccess,
+      Duration duration) {
+    this(konnektor, version, up, cards, probedAt, lastSuccess, false, duration);
+  }
+
+  public ProbeSnapshot(
+      String konnektor,
+      long version,
+      boolean up,
+      List<CardState> cards,
+      Instant probedAt,
+      Instant lastSuccess) {
+    this(konnektor, version, up, cards, probedAt, lastSuccess, false, null);
+  }
+
+  public static ProbeSnapshot initial(String konnektor) {
+    return new ProbeSnapshot(konnektor, 0, false, List.of(), null, null);
+  }
+
+  /** this snapshot as restored after a restart, until the Konnektor is probed again */
+  public ProbeSnapshot asStale() {
+    return new ProbeSnapshot(konnektor, version, up, cards, probedAt, lastSuccess, true, null);
+  }
+}
@@ -0,0 +1,152 @@
+package com.oviva.konnektor.watchdog.probe;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the latest snapshots of all Konnektors in a small binary file, so that a restarted watchdog
+ * serves the last known card status right away instead of nothing until the first probe finished.
+ *
+ * <p>The file is always replaced as a whole, a crash while saving leaves the previous file intact.
+ * A file that can not be read, e.g. written by an incompatible version, is ignored.
+ */
+public class SnapshotStore {
+
+  private static final Logger logger = LoggerFactory.getLogger(SnapshotStore.class);
+
+  // "KWSS", konnektor watchdog snapshot store
+  private static final int MAGIC = 0x4b575353;
+  private static final int FORMAT = 1;
+  private static final long NO_INSTANT = Long.MIN_VALUE;
+  private static final CardStatus[] STATUSES = CardStatus.values();
+
+  private final Path path;
+  // the periodic save and the one on shutdown share the temporary file
+  private final ReentrantLock lock = new ReentrantLock();
+
+  public SnapshotStore(Path path) {
+    this.path = path;
+  }
+
+  /**
+   * @return the saved snapshots, empty if there are none or they can not be read
+   */
+  public List<ProbeSnapshot> load() {
+    try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT) {
+        logger.atWarn().log("ignoring snapshots in {}, unknown format", path);
+        return List.of();
+      }
+      var count = in.readInt();
+      var snapshots = new ArrayList<ProbeSnapshot>(count);
+      for (int i = 0; i < count; i++) {
+        snapshots.add(readSnapshot(in));
+      }
+      return snapshots;
+    } catch (NoSuchFileException e) {
+      return List.of();
+    } catch (IOException | RuntimeException e) {
+      logger.atWarn().setCause(e).log("ignoring unreadable snapshots in {}", path);
+      return List.of();
+    }
+  }
+
+  /** replaces the saved snapshots, Konnektors never probed are skipped */
+  public void save(List<ProbeSnapshot> snapshots) {
+    var probed = snapshots.stream().filter(s -> s.probedAt() != null).toList();
+    var tmp = path.resolveSibling(path.getFileName() + ".tmp");
+    lock.lock();
+    try {
+      try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT);
+        out.writeInt(probed.size());
+        for (var s : probed) {
+          writeSnapshot(out, s);
+        }
+      }
+      move(tmp, path);
+    } catch (IOException e) {
+      throw new UncheckedIOException("failed to save snapshots to %s".formatted(path), e);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static void move(Path from, Path to) throws IOException {
+    try {
+      Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private static void writeSnapshot(DataOutputStream out, ProbeSnapshot s) throws IOException {
+    out.writeUTF(s.konnektor());
+    out.writeLong(s.version());
+    out.writeBoolean(s.up());
+    writeInstant(out, s.probedAt());
+    writeInstant(out, s.lastSuccess());
+    out.writeInt(s.cards().size());
+    for (var card : s.cards()) {
+      writeString(out, card.handle());
+      writeString(out, card.holderName());
+      writeString(out, card.telematikId());
+      out.writeByte(card.status().ordinal());
+    }
+  }
+
+  private static ProbeSnapshot readSnapshot(DataInputStream in) throws IOException {
+    var konnektor = in.readUTF();
+    var version = in.readLong();
+    var up = in.readBoolean();
+    var probedAt = readInstant(in);
+    var lastSuccess = readInstant(in);
+    var count = in.readInt();
+    var cards = new ArrayList<CardState>(count);
+    for (int i = 0; i < count; i++) {
+      cards.add(
+          new CardState(
+              readString(in), readString(in), readString(in), STATUSES[in.readUnsignedByte()]));
+    }
+    return new ProbeSnapshot(konnektor, version, up, cards, probedAt, lastSuccess);
+  }
+
+  private static void writeInstant(DataOutputStream out, Instant instant) throws IOException {
+    out.writeLong(instant == null ? NO_INSTANT : instant.toEpochMilli());
+  }
+
+  private static Instant readInstant(DataInputStream in) throws IOException {
+    var millis = in.readLong();
+    return millis == NO_INSTANT ? null : Instant.ofEpochMilli(millis);
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    out.writeBoolean(s != null);
+    if (s != null) {
+      out.writeUTF(s);
+    }
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    if (!in.readBoolean()) {
+      return null;
+    }
+    return in.readUTF();
+  }
+}
@@ -0,0 +1,199 @@
+package com.oviva.konnektor.watchdog;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.oviva.konnektor.watchdog.probe.CardState;
+import com.oviva.konnektor.watchdog.probe.CardStatus;
+import com.oviva.konnektor.watchdog.probe.ProbeSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class CardCheckGaugesTest {
+
+  private static final String KONNEKTOR = "https://10.0.0.1:443";
+  private static final Instant NOW = Instant.parse("2024-08-09T14:13:33Z");
+
+  private static final CardState CARD_A =
+      new CardState("a", "Praxis A", "1-2-3", CardStatus.VERIFIED);
+  private static final CardState CARD_B =
+      new CardState("b", "Praxis B", "4-5-6", CardStatus.NOT_VERIFIED);
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final SeriesLimits limits =
+      new SeriesLimits("card_status", new SeriesLimits.Config(100, 100), registry);
+  private final CardCheckGauges sut = new CardCheckGauges(KONNEKTOR, registry, limits);
+
+  @Test
+  void accept_firstInventoryNotCounted() {
+
+    // when
+    sut.accept(up(CARD_A, CARD_B));
+
+    // then
+    assertEquals(1.0, status("a"));
+    assertEquals(0.0, status("b"));
+    assertEquals(0, count("card_inserted"));
+    assertEquals(0, count("card_removed"));
+  }
+
+  @Test
+  void accept_updatesInPlace() {
+
+    sut.accept(up(CARD_A, CARD_B));
+    var gauge = registry.get("card_status").tag("card_handle", "b").gauge();
+
+    // when
+    sut.accept(up(CARD_A, withStatus(CARD_B, CardStatus.VERIFIED)));
+
+    // then
+    assertSame(gauge, registry.get("card_status").tag("card_handle", "b").gauge());
+    assertEquals(1.0, status("b"));
+    assertEquals(1, registry.get("card_pin_state_changes").tag("to", "verified").counter().count());
+    assertEquals(
+        0, registry.get("card_pin_state_changes").tag("to", "not_verified").counter().count());
+  }
+
+  @Test
+  void accept_insertedAndRemoved() {
+
+    sut.accept(up(CARD_A));
+
+    // when
+    sut.accept(up(CARD_B));
+
+    // then
+    assertEquals(1, count("card_inserted"));
+    assertEquals(1, count("card_removed"));
+    assertNull(registry.find("card_status").tag("card_handle", "a").gauge());
+    assertEquals(0.0, status("b"));
+  }
+
+  @Test
+  void accept_failedProbeIsNoRemoval() {
+
+    sut.accept(up(CARD_A, CARD_B));
+
+    // when
+    sut.accept(new ProbeSnapshot(KONNEKTOR, 2, false, List.of(), NOW, NOW));
+
+    // then
+    assertTrue(registry.find("card_status").gauges().isEmpty());
+    assertEquals(0, count("card_removed"));
+
+    sut.accept(up(CARD_A, CARD_B));
+    assertEquals(0, count("card_inserted"));
+    assertEquals(1.0, status("a"));
+  }
+
+  @Test
+  void accept_otherKonnektor() {
+
+    // when
+    sut.accept(new ProbeSnapshot("https://10.0.0.2:443", 1, true, List.of(CARD_A), NOW, NOW));
+
+    // then
+    assertTrue(registry.find("card_status").gauges().isEmpty());
+  }
+
+  @Test
+  void accept_labelsNormalized() {
+
+    var holder = " Praxis " + "x".repeat(200);
+
+    // when
+    sut.accept(up(new CardState("a", holder, null, CardStatus.VERIFIED)));
+
+    // then
+    var id = registry.get("card_status").tag("card_handle", "a").gauge().getId();
+    assertEquals(SeriesLimits.MAX_LABEL_LENGTH, id.getTag("holder").length());
+    assertTrue(id.getTag("holder").startsWith("Praxis x"));
+    assertEquals("", id.getTag("telematik_id"));
+    assertSame(id.getTag("holder"), limits.label(holder));
+  }
+
+  @Test
+  void accept_overflowBeyondKonnektorLimit() {
+
+    var limits = new SeriesLimits("card_status", new SeriesLimits.Config(1, 100), registry);
+    var sut = new CardCheckGauges(KONNEKTOR, registry, limits);
+    var cardC = new CardState("c", "Praxis C", "7-8-9", CardStatus.UNKNOWN);
+
+    // when
+    sut.accept(up(CARD_A, CARD_B, cardC));
+    sut.accept(up(CARD_A, CARD_B, cardC));
+
+    // then
+    assertEquals(1.0, status("a"));
+    assertNull(registry.find("card_status").tag("card_handle", "b").gauge());
+    assertEquals(0.0, status(SeriesLimits.OVERFLOW));
+    assertEquals(2, registry.find("card_status").gauges().size());
+    assertEquals(2, count("watchdog_series_dropped"));
+    assertEquals(1, limits.used());
+  }
+
+  @Test
+  void accept_overflowPromotedOnceFree() {
+
+    var limits = new SeriesLimits("card_status", new SeriesLimits.Config(1, 100), registry);
+    var sut = new CardCheckGauges(KONNEKTOR, registry, limits);
+    sut.accept(up(CARD_A, CARD_B));
+
+    // when
+    sut.accept(up(CARD_B));
+
+    // then
+    assertEquals(0.0, status("b"));
+    assertNull(registry.find("card_status").tag("card_handle", SeriesLimits.OVERFLOW).gauge());
+    assertEquals(1, count("watchdog_series_dropped"));
+  }
+
+  @Test
+  void accept_globalLimitShared() {
+
+    var limits = new SeriesLimits("card_status", new SeriesLimits.Config(10, 2), registry);
+    var other = "https://10.0.0.2:443";
+    var first = new CardCheckGauges(KONNEKTOR, registry, limits);
+    var second = new CardCheckGauges(other, registry, limits);
+    first.accept(up(CARD_A, CARD_B));
+
+    // when
+    second.accept(new ProbeSnapshot(other, 1, true, List.of(CARD_A), NOW, NOW));
+
+    // then
+    assertNotNull(
+        registry
+            .find("card_status")
+            .tags("konnektor", other, "card_handle", SeriesLimits.OVERFLOW)
+            .gauge());
+    assertEquals(1, count("watchdog_series_dropped"));
+
+    // when
+    first.close();
+    second.accept(new ProbeSnapshot(other, 2, true, List.of(CARD_A), NOW, NOW));
+
+    // then
+    assertTrue(registry.find("card_status").tag("konnektor", KONNEKTOR).gauges().isEmpty());
+    assertEquals(
+        1.0,
+        registry.get("card_status").tags("konnektor", other, "card_handle", "a").gauge().value());
+    assertEquals(1, limits.used());
+  }
+
+  private double status(String handle) {
+    return registry.get("card_status").tag("card_handle", handle).gauge().value();
+  }
+
+  private double count(String name) {
+    return registry.get(name).counter().count();
+  }
+
+  private static ProbeSnapshot up(CardState... cards) {
+    return new ProbeSnapshot(KONNEKTOR, 1, true, List.of(cards), NOW, NOW);
+  }
+
+  private static CardState withStatus(CardState card, CardStatus status) {
+    return new CardState(card.handle(), card.holderName(), card.telematikId(), status);
+  }
+}
@@ -0,0 +1,133 @@
+package com.oviva.konnektor.watchdog;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.oviva.epa.client.KonnektorService;
+import com.oviva.epa.client.konn.KonnektorConnection;
+import com.oviva.epa.client.konn.KonnektorConnectionFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ConnectionCacheTest {
+
+  private static final String KONNEKTOR = "https://10.0.0.1:443";
+  private static final Instant NOW = Instant.parse("2024-08-09T14:13:33Z");
+
+  private final KonnektorConnectionFactory factory = mock(KonnektorConnectionFactory.class);
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final Clock clock = mock(Clock.class);
+
+  private ConnectionCache sut;
+
+  @BeforeEach
+  void beforeEach() {
+    when(clock.instant()).thenReturn(NOW);
+    when(factory.connect()).thenAnswer(i -> mock(KonnektorConnection.class));
+    sut =
+        new ConnectionCache(
+            KONNEKTOR,
+            factory,
+            conn -> mock(KonnektorService.class),
+            Duration.ofMinutes(30),
+            clock,
+            new OperationMetrics(
+                KONNEKTOR, new OperationMetrics.Config(List.of(), false), registry),
+            registry);
+  }
+
+  @Test
+  void service_reused() {
+
+    var first = sut.service();
+    var second = sut.service();
+
+    assertSame(first, second);
+    verify(factory, times(1)).connect();
+    assertEquals(1, registry.get("konnektor_connection_cache_hits").counter().count());
+    assertEquals(
+        1,
+        registry
+            .get("konnektor_connection_cache_rebuilds")
+            .tag("reason", "initial")
+            .counter()
+            .count());
+  }
+
+  @Test
+  void service_rebuiltAfterFailure() {
+
+    var first = sut.service();
+
+    // when
+    sut.invalidate();
+    var second = sut.service();
+
+    // then
+    assertNotSame(first, second);
+    assertEquals(
+        1,
+        registry
+            .get("konnektor_connection_cache_rebuilds")
+            .tag("reason", "failure")
+            .counter()
+            .count());
+  }
+
+  @Test
+  void service_rebuiltWhenExpired() {
+
+    var first = sut.service();
+
+    // when
+    when(clock.instant()).thenReturn(NOW.plus(Duration.ofMinutes(30)));
+    var second = sut.service();
+
+    // then
+    assertNotSame(first, second);
+    assertEquals(
+        1,
+        registry
+            .get("konnektor_connection_cache_rebuilds")
+            .tag("reason", "expired")
+            .counter()
+            .count());
+  }
+
+  @Test
+  void service_rebuiltAfterKeysRotated() {
+
+    var first = sut.service();
+
+    // when
+    sut.keysRotated();
+    var second = sut.service();
+
+    // then
+    assertNotSame(first, second);
+    assertSame(second, sut.service());
+    assertEquals(
+        1,
+        registry
+            .get("konnektor_connection_cache_rebuilds")
+            .tag("reason", "credentials")
+            .counter()
+            .count());
+  }
+
+  @Test
+  void service_connectFails() {
+
+    when(factory.connect()).thenThrow(new IllegalStateException("down"));
+
+    assertThrows(IllegalStateException.class, sut::service);
+    assertThrows(IllegalStateException.class, sut::service);
+
+    verify(factory, times(2)).connect();
+  }
+}
@@ -0,0 +1,58 @@
+package com.oviva.konnektor.watchdog;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.oviva.epa.client.konn.KonnektorConnection;
+import com.oviva.epa.client.konn.KonnektorConnectionFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class DeferredConnectionFactoryTest {
+
+  @Test
+  void connect_buildsOnce() {
+
+    var built = new AtomicInteger();
+    var factory = mock(KonnektorConnectionFactory.class);
+    var connection = mock(KonnektorConnection.class);
+    when(factory.connect()).thenReturn(connection);
+
+    // when
+    var sut =
+        new DeferredConnectionFactory(
+            () -> {
+              built.incrementAndGet();
+              return factory;
+            });
+
+    // then
+    assertEquals(0, built.get());
+    assertSame(connection, sut.connect());
+    assertSame(connection, sut.connect());
+    assertEquals(1, built.get());
+  }
+
+  @Test
+  void connect_retriesFailedBuild() {
+
+    var built = new AtomicInteger();
+    var factory = mock(KonnektorConnectionFactory.class);
+    var sut =
+        new DeferredConnectionFactory(
+            () -> {
+              if (built.incrementAndGet() == 1) {
+                throw new IllegalStateException("keys not loaded");
+              }
+              return factory;
+            });
+
+    // when
+    assertThrows(IllegalStateException.class, sut::connect);
+    sut.connect();
+
+    // then
+    assertEquals(2, built.get());
+    verify(factory).connect();
+  }
+}
@@ -0,0 +1,464 @@
+package com.oviva.konnektor.watchdog;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.oviva.konnektor.watchdog.stub.StubCollector;
+import com.oviva.konnektor.watchdog.stub.StubKonnektor;
+import com.oviva.konnektor.watchdog.stub.StubKonnektor.Card;
+import com.oviva.konnektor.watchdog.stub.StubKonnektor.Fault;
+import com.oviva.konnektor.watchdog.stub.StubKonnektor.Operation;
+import com.oviva.konnektor.watchdog.stub.StubProxy;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import telematik.ws.conn.cardservice.xsd.v8_1.PinStatusEnum;
+
+/** Runs the whole watchdog against a {@link StubKonnektor} reached through a CONNECT proxy. */
+class MainEndToEndTest {
+
+  private static final Duration TIMEOUT = Duration.ofSeconds(30);
+  private static final Duration POLL = Duration.ofMillis(50);
+
+  private final HttpClient client = HttpClient.newHttpClient();
+
+  private StubKonnektor konnektor;
+  private StubProxy proxy;
+  private Main app;
+  private int port;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    konnektor = StubKonnektor.start();
+    proxy = StubProxy.start();
+    try (var s = new ServerSocket(0)) {
+      port = s.getLocalPort();
+    }
+  }
+
+  @AfterEach
+  void tearDown() {
+    if (app != null) {
+      app.close();
+    }
+    proxy.close();
+    konnektor.close();
+  }
+
+  @Test
+  void metrics_cardStatus() throws Exception {
+
+    konnektor
+        .insert(new Card("card-a", "Praxis A", "1-2-3", PinStatusEnum.VERIFIED))
+        .insert(new Card("card-b", "Praxis B", "4-5-6", PinStatusEnum.TRANSPORT_PIN));
+
+    // when
+    boot(Map.of());
+
+    // then
+    awaitMetrics(
+        cardStatus("card-a", "1.0"),
+        cardStatus("card-b", "0.0"),
+        konnektorUp("1.0"),
+        outcome("list_cards", "success"));
+    assertTrue(proxy.tunnels() > 0, "konnektor must be reached through the proxy");
+    assertEquals(1, konnektor.requests(Operation.GET_CARDS));
+  }
+
+  @Test
+  void metrics_pinVerifiedLater() throws Exception {
+
+    konnektor.insert(new Card("card-a", "Praxis A", "1-2-3", PinStatusEnum.VERIFIABLE));
+    boot(Map.of());
+    awaitMetrics(cardStatus("card-a", "0.0"));
+
+    // when
+    konnektor.pinStatus("card-a", PinStatusEnum.VERIFIED);
+
+    // then
+    awaitMetrics(cardStatus("card-a", "1.0"));
+    assertEquals(1, konnektor.requests(Operation.GET_CARDS));
+  }
+
+  @Test
+  void metrics_konnektorHangs() throws Exception {
+
+    konnektor.insertCards(2).fault(Operation.GET_CARDS, Fault.HANG);
+
+    // when
+    boot(Map.of("timeout.read", "PT0.5S"));
+
+    // then
+    awaitMetrics(outcome("list_cards", "failure"), konnektorUp("0.0"));
+  }
+
+  @Test
+  void metrics_soapFault() throws Exception {
+
+    konnektor.insertCards(1).fault(Operation.READ_CARD_CERTIFICATE, Fault.SOAP_FAULT);
+
+    // when
+    boot(Map.of());
+
+    // then
+    awaitMetrics(outcome("list_cards", "failure"), konnektorUp("0.0"));
+    assertTrue(konnektor.requests(Operation.READ_CARD_CERTIFICATE) > 0);
+  }
+
+  @Test
+  void metrics_connectionReset() throws Exception {
+
+    konnektor.insertCards(1).fault(Operation.SDS, Fault.RESET);
+
+    // when
+    boot(Map.of());
+
+    // then
+    awaitMetrics(outcome("connect", "failure"), konnektorUp("0.0"));
+    assertEquals(0, konnektor.requests(Operation.GET_CARDS));
+  }
+
+  @Test
+  void metrics_restoredAfterRestart(@TempDir Path dir) throws Exception {
+
+    var state = Map.of("state.path", dir.resolve("state.bin").toString());
+    konnektor.insert(new Card("card-a", "Praxis A", "1-2-3", PinStatusEnum.VERIFIED));
+    boot(state);
+    awaitMetrics(cardStatus("card-a", "1.0"));
+    app.close();
+
+    // when
+    konnektor.fault(Operation.GET_CARDS, Fault.HANG);
+    boot(state);
+
+    // then
+    var metrics = fetchMetrics();
+    assertTrue(
+        matchesAll(metrics, cardStatus("card-a", "1.0"), snapshotStale("1.0")),
+        "expected the restored card status, got:\n" + metrics);
+  }
+
+  @Test
+  void metrics_cardEvents() throws Exception {
+
+    int eventPort;
+    try (var s = new ServerSocket(0)) {
+      eventPort = s.getLocalPort();
+    }
+    konnektor.insert(new Card("card-a", "Praxis A", "1-2-3", PinStatusEnum.VERIFIED));
+    boot(
+        Map.of(
+            "events.enabled", "true",
+            "events.address", "127.0.0.1",
+            "events.port", Integer.toString(eventPort),
+            "events.callback_address", "127.0.0.1",
+            "events.reconcile_interval", "PT1M"));
+    awaitMetrics(cardStatus("card-a", "1.0"), outcome("subscribe", "success"));
+
+    // when
+    konnektor.insert(new Card("card-b", "Praxis B", "4-5-6", PinStatusEnum.VERIFIED));
+    konnektor.emit("CARD/INSERTED", "card-b");
+
+    // then
+    awaitMetrics(cardStatus("card-b", "1.0"));
+
+    // when
+    konnektor.pinStatus("card-a", PinStatusEnum.VERIFIABLE);
+    konnektor.emit("CARD/PIN/CHANGE_FINISHED", "card-a");
+
+    // then
+    awaitMetrics(cardStatus("card-a", "0.0"));
+    assertEquals(2, konnektor.requests(Operation.GET_CARDS));
+  }
+
+  @Test
+  void health_readyOnceProbed() throws Exception {
+
+    konnektor.insert(new Card("card-a", "Praxis A", "1-2-3", PinStatusEnum.VERIFIED));
+    boot(Map.of());
+
+    // when
+    awaitMetrics(konnektorUp("1.0"));
+
+    // then
+    var ready = get("/health/ready");
+    assertEquals(200, ready.statusCode());
+    assertTrue(ready.body().contains("\"status\":\"UP\""), ready.body());
+    assertTrue(ready.body().contains(konnektor.uri().toString()), ready.body());
+    assertEquals(200, get("/health/live").statusCode());
+    assertEquals(200, get("/health").statusCode());
+  }
+
+  @Test
+  void metrics_startupPhases() throws Exception {
+
+    boot(Map.of());
+
+    // when
+    var metrics = awaitMetrics(startupPhase("ready"));
+
+    // then
+    for (var phase : List.of("http", "keystores", "client", "initialized")) {
+      assertTrue(startupPhase(phase).matcher(metrics).find(), phase);
+    }
+  }
+
+  @Test
+  void config_reloaded(@TempDir Path dir) throws Exception {
+
+    konnektor.insert(new Card("card-a", "Praxis A", "1-2-3", PinStatusEnum.VERIFIED));
+    var file = dir.resolve("watchdog.properties");
+    Files.writeString(file, "");
+    boot(Map.of("config.file", file.toString()));
+    awaitMetrics(konnektorUp("1.0"));
+
+    try (var other = StubKonnektor.start()) {
+      other.insert(new Card("card-b", "Praxis B", "4-5-6", PinStatusEnum.VERIFIED));
+      var otherUri = Pattern.quote(other.uri().toString());
+
+      // when
+      Files.writeString(
+          file,
+          """
+          konnektors=a,b
+          konnektors.a.konnektor.uri=%s
+          konnektors.b.konnektor.uri=%s
+          konnektors.b.credentials.path=%s
+          """
+              .formatted(
+                  konnektor.uri(),
+                  other.uri(),
+                  other.clientKeyStore().toString().replace("\\", "/")));
+
+      // then
+      awaitMetrics(
+          konnektorUp("1.0"),
+          Pattern.compile("konnektor_status\\{konnektor=\"%s\"} 1.0".formatted(otherUri)),
+          cardStatus("card-b", "1.0"));
+
+      // when
+      Files.writeString(
+          file, "konnektors=a\nkonnektors.a.konnektor.uri=%s\n".formatted(konnektor.uri()));
+
+      // then
+      await(
+          "konnektor b no longer reported", () -> !fetchMetrics().contains(other.uri().toString()));
+      // the unchanged konnektor kept its connection
+      var metrics = awaitMetrics(konnektorUp("1.0"), cardStatus("card-a", "1.0"));
+      var rebuilds =
+          Pattern.compile(
+              "konnektor_connection_cache_rebuilds_total\\{konnektor=\"%s\",reason=\"(\\w+)\"} (\\S+)"
+                  .formatted(Pattern.quote(konnektor.uri().toString())));
+      var m = rebuilds.matcher(metrics);
+      while (m.find()) {
+        assertEquals(m.group(1).equals("initial") ? "1.0" : "0.0", m.group(2), m.group());
+      }
+    }
+
+    // when
+    Files.writeString(
+        file,
+        """
+        konnektors=a
+        konnektors.a.konnektor.uri=%s
+        probe.interval=PT1H
+        probe.interval.max=PT1H
+        health.live.stall_timeout=PT1S
+        """
+            .formatted(konnektor.uri()));
+
+    // then, the health timeouts follow the probe intervals
+    await("konnektor reported stalled", () -> get("/health/live").statusCode() == 503);
+    var live = get("/health/live");
+    assertTrue(live.body().contains(konnektor.uri().toString()), live.body());
+  }
+
+  @Test
+  void credentials_rotated() throws Exception {
+
+    konnektor.insert(new Card("card-a", "Praxis A", "1-2-3", PinStatusEnum.VERIFIED));
+    boot(Map.of("credentials.check_interval", "PT0.2S"));
+    var expiry =
+        Pattern.compile(
+            "client_certificate_not_after_timestamp_seconds\\{alias=\"key\",keystore=\"[^\"]+\"} (\\S+)");
+    awaitMetrics(konnektorUp("1.0"), expiry);
+    var first = konnektor.lastClientCertificate();
+
+    // when
+    var rotated = konnektor.rotateClientKeys();
+
+    // then
+    await("rotated certificate presented", () -> rotated.equals(konnektor.lastClientCertificate()));
+    assertNotEquals(first, rotated);
+    var metrics = awaitMetrics(konnektorUp("1.0"), cardStatus("card-a", "1.0"));
+    var m = expiry.matcher(metrics);
+    assertTrue(m.find(), metrics);
+    assertEquals(rotated.getNotAfter().getTime() / 1000.0, Double.parseDouble(m.group(1)), 1.0);
+    assertTrue(
+        Pattern.compile(
+                "konnektor_connection_cache_rebuilds_total\\{[^}]*reason=\"credentials\"} 1.0")
+            .matcher(metrics)
+            .find(),
+        metrics);
+  }
+
+  @Test
+  void status_history() throws Exception {
+
+    konnektor.insert(new Card("card-a", "Praxis A", "1-2-3", PinStatusEnum.VERIFIED));
+    boot(Map.of());
+    awaitMetrics(
+        Pattern.compile(
+            "konnektor_availability_ratio\\{konnektor=\"%s\",window=\"5m\"} 1.0"
+                .formatted(Pattern.quote(konnektor.uri().toString()))));
+
+    // when
+    var res = get("/status");
+
+    // then
+    assertEquals(200, res.statusCode());
+    assertTrue(res.body().contains("\"konnektor\":\"%s\"".formatted(konnektor.uri())), res.body());
+    assertTrue(res.body().contains("\"handle\":\"card-a\""), res.body());
+    assertTrue(res.body().contains("\"30d\":{\"availability\":1.0"), res.body());
+  }
+
+  @Test
+  void otlp_pushed() throws Exception {
+
+    konnektor.insert(new Card("card-a", "Praxis A", "1-2-3", PinStatusEnum.VERIFIED));
+    try (var collector = StubCollector.start()) {
+
+      // when
+      boot(
+          Map.of(
+              "otlp.endpoint", collector.uri().toString(),
+              "otlp.interval", "PT0.2S",
+              "otlp.resource_attributes", "site=praxis-a"));
+
+      // then
+      await(
+          "card_status pushed",
+          () -> collector.accepted().stream().anyMatch(r -> r.toString().contains("card-a")));
+      var pushed = collector.accepted().get(collector.accepted().size() - 1).toString();
+      assertTrue(pushed.contains("\"praxis-a\""), pushed);
+      assertTrue(pushed.contains("\"card_status\""), pushed);
+    }
+  }
+
+  private void boot(Map<String, String> overrides) {
+    var config = new HashMap<String, String>();
+    config.put("address", "127.0.0.1");
+    config.put("port", Integer.toString(port));
+    config.put("konnektor.uri", konnektor.uri().toString());
+    config.put("proxy.address", "127.0.0.1");
+    config.put("proxy.port", Integer.toString(proxy.port()));
+    config.put("credentials.path", konnektor.clientKeyStore().toString());
+    config.put("credentials.password", StubKonnektor.CLIENT_KEYSTORE_PASSWORD);
+    config.put("probe.interval.min", "PT0.2S");
+    config.put("probe.interval", "PT1S");
+    config.put("probe.interval.max", "PT2S");
+    config.put("metrics.max_age", "PT0.1S");
+    config.putAll(overrides);
+
+    app = new Main(k -> Optional.ofNullable(config.get(k)));
+    app.run();
+  }
+
+  private String awaitMetrics(Pattern... patterns) throws Exception {
+    var metrics = new AtomicReference<>("");
+    await(
+        () ->
+            "metrics to match all of %s, got:\n%s"
+                .formatted(Arrays.toString(patterns), metrics.get()),
+        () -> {
+          metrics.set(fetchMetrics());
+          return matchesAll(metrics.get(), patterns);
+        });
+    return metrics.get();
+  }
+
+  private static void await(String what, Callable<Boolean> condition) throws Exception {
+    await(() -> what, condition);
+  }
+
+  /** polls {@code condition} until it holds, failing after {@link #TIMEOUT} */
+  private static void await(Supplier<String> what, Callable<Boolean> condition) throws Exception {
+    var deadline = Instant.now().plus(TIMEOUT);
+    while (!condition.call()) {
+      if (!Instant.now().isBefore(deadline)) {
+        fail("timed out waiting for " + what.get());
+      }
+      Thread.sleep(POLL.toMillis());
+    }
+  }
+
+  private static boolean matchesAll(String metrics, Pattern... patterns) {
+    for (var p : patterns) {
+      if (!p.matcher(metrics).find()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+    var req =
+        HttpRequest.newBuilder(URI.create("http://127.0.0.1:%d%s".formatted(port, path))).build();
+    return client.send(req, HttpResponse.BodyHandlers.ofString());
+  }
+
+  private String fetchMetrics() throws IOException, InterruptedException {
+    var req =
+        HttpRequest.newBuilder(URI.create("http://127.0.0.1:%d/metrics".formatted(port))).build();
+    var res = client.send(req, HttpResponse.BodyHandlers.ofString());
+    assertEquals(200, res.statusCode());
+    return res.body();
+  }
+
+  private Pattern cardStatus(String handle, String value) {
+    return Pattern.compile(
+        "card_status\\{card_handle=\"%s\",[^}]*} %s".formatted(handle, Pattern.quote(value)));
+  }
+
+  private Pattern outcome(String operation, String outcome) {
+    return Pattern.compile(
+        "konnektor_operation_outcomes_total\\{[^}]*operation=\"%s\",outcome=\"%s\"}"
+            .formatted(operation, outcome));
+  }
+
+  private Pattern snapshotStale(String value) {
+    return Pattern.compile(
+        "konnektor_snapshot_stale\\{konnektor=\"%s\"} %s"
+            .formatted(Pattern.quote(konnektor.uri().toString()), Pattern.quote(value)));
+  }
+
+  private Pattern startupPhase(String phase) {
+    return Pattern.compile(
+        "watchdog_startup_seconds\\{phase=\"%s\"} \\d".formatted(Pattern.quote(phase)));
+  }
+
+  private Pattern konnektorUp(String value) {
+    return Pattern.compile(
+        "konnektor_status\\{konnektor=\"%s\"} %s"
+            .formatted(Pattern.quote(konnektor.uri().toString()), Pattern.quote(value)));
+  }
+}
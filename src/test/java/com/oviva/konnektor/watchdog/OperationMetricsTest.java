@@ -0,0 +1,105 @@
+package com.oviva.konnektor.watchdog;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.oviva.epa.client.model.KonnektorException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class OperationMetricsTest {
+
+  private static final String KONNEKTOR = "https://10.0.0.1:443";
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  private final OperationMetrics sut =
+      new OperationMetrics(
+          KONNEKTOR, new OperationMetrics.Config(List.of(Duration.ofSeconds(1)), false), registry);
+
+  @Test
+  void record_success() {
+
+    // when
+    var res = sut.record(OperationMetrics.LIST_CARDS, () -> "cards");
+
+    // then
+    assertEquals("cards", res);
+    assertEquals(
+        1,
+        registry
+            .get("konnektor_operation")
+            .tags("konnektor", KONNEKTOR, "operation", "list_cards")
+            .timer()
+            .count());
+    assertEquals(
+        1,
+        registry
+            .get("konnektor_operation_outcomes")
+            .tags("operation", "list_cards", "outcome", "success", "exception", "none")
+            .counter()
+            .count());
+  }
+
+  @Test
+  void record_failure() {
+
+    // when
+    assertThrows(
+        KonnektorException.class,
+        () ->
+            sut.record(
+                OperationMetrics.PIN_STATUS,
+                () -> {
+                  throw new KonnektorException("down");
+                }));
+
+    // then
+    assertEquals(
+        1, registry.get("konnektor_operation").tags("operation", "pin_status").timer().count());
+    assertEquals(
+        1,
+        registry
+            .get("konnektor_operation_outcomes")
+            .tags(
+                "operation", "pin_status", "outcome", "failure", "exception", "KonnektorException")
+            .counter()
+            .count());
+  }
+
+  @Test
+  void close_callStillRunning_notRecorded() throws Exception {
+
+    var started = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      var call =
+          executor.submit(
+              () ->
+                  sut.record(
+                      OperationMetrics.LIST_CARDS,
+                      () -> {
+                        started.countDown();
+                        try {
+                          release.await();
+                        } catch (InterruptedException e) {
+                          Thread.currentThread().interrupt();
+                        }
+                        return "cards";
+                      }));
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+
+      // when
+      sut.close();
+      release.countDown();
+
+      // then
+      assertEquals("cards", call.get(5, TimeUnit.SECONDS));
+      assertTrue(registry.getMeters().isEmpty());
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package com.oviva.konnektor.watchdog;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.oviva.konnektor.watchdog.stub.StubCertificates;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.cert.X509Certificate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ReloadingKeyManagerTest {
+
+  private static final String PASSWORD = "0000";
+
+  @TempDir Path dir;
+  private Path keystore;
+
+  @BeforeEach
+  void setUp() {
+    keystore = dir.resolve("credentials.p12");
+  }
+
+  @Test
+  void reload_unchanged() throws Exception {
+
+    var certificate = write();
+    var sut = ReloadingKeyManager.load(keystore, PASSWORD);
+
+    // when
+    var swapped = sut.reload();
+
+    // then
+    assertFalse(swapped);
+    assertEquals(certificate, sut.certificates().get("key"));
+  }
+
+  @Test
+  void reload_swapsKeys() throws Exception {
+
+    var first = write();
+    var sut = ReloadingKeyManager.load(keystore, PASSWORD);
+    var chosenBefore = sut.chooseClientAlias(new String[] {"EC"}, null, null);
+
+    // when
+    var second = write();
+    var swapped = sut.reload();
+
+    // then
+    assertTrue(swapped);
+    assertEquals(second, sut.certificates().get("key"));
+    var chosenAfter = sut.chooseClientAlias(new String[] {"EC"}, null, null);
+    assertEquals(second, sut.getCertificateChain(chosenAfter)[0]);
+    assertNotNull(sut.getPrivateKey(chosenAfter));
+    // a handshake that chose its alias before the swap still gets the matching key
+    assertEquals(first, sut.getCertificateChain(chosenBefore)[0]);
+  }
+
+  @Test
+  void reload_brokenKeystoreKeepsKeys() throws Exception {
+
+    var certificate = write();
+    var sut = ReloadingKeyManager.load(keystore, PASSWORD);
+
+    // when
+    Files.write(keystore, new byte[] {1, 2, 3});
+
+    // then
+    assertThrows(IllegalStateException.class, sut::reload);
+    assertEquals(certificate, sut.certificates().get("key"));
+    var alias = sut.chooseClientAlias(new String[] {"EC"}, null, null);
+    assertEquals(certificate, sut.getCertificateChain(alias)[0]);
+  }
+
+  @Test
+  void load_missingKeystore() {
+    assertThrows(IllegalStateException.class, () -> ReloadingKeyManager.load(keystore, PASSWORD));
+  }
+
+  private X509Certificate write() throws Exception {
+    var keys = StubCertificates.keyPair();
+    var certificate = StubCertificates.selfSigned(keys, "watchdog", null);
+    try (var out = Files.newOutputStream(keystore)) {
+      StubCertificates.keyStore(keys, certificate, PASSWORD).store(out, PASSWORD.toCharArray());
+    }
+    return certificate;
+  }
+}
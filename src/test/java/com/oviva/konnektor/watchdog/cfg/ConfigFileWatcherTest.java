@@ -0,0 +1,106 @@
+package com.oviva.konnektor.watchdog.cfg;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.LoggerFactory;
+
+class ConfigFileWatcherTest {
+
+  private static final Duration SETTLE = Duration.ofMillis(50);
+
+  @Test
+  void open_loadsFile(@TempDir Path dir) throws Exception {
+
+    var file = dir.resolve("watchdog.properties");
+    Files.writeString(file, "konnektors.lab.konnektor.uri = https://10.0.0.1:443\n");
+
+    try (var sut = ConfigFileWatcher.open(file, SETTLE)) {
+
+      assertEquals(
+          Optional.of("https://10.0.0.1:443"), sut.loaded().get("konnektors.lab.konnektor.uri"));
+    }
+  }
+
+  @Test
+  void open_missingFile(@TempDir Path dir) {
+
+    var file = dir.resolve("watchdog.properties");
+
+    assertThrows(IllegalStateException.class, () -> ConfigFileWatcher.open(file, SETTLE));
+  }
+
+  @Test
+  void start_changes(@TempDir Path dir) throws Exception {
+
+    var file = dir.resolve("watchdog.properties");
+    Files.writeString(file, "probe.interval=PT3M\n");
+    var changes = new LinkedBlockingQueue<ConfigProvider>();
+
+    try (var sut = ConfigFileWatcher.open(file, SETTLE)) {
+      sut.start(changes::add);
+
+      // when
+      Files.writeString(file, "probe.interval=PT1M\n");
+
+      // then
+      var changed = changes.poll(30, TimeUnit.SECONDS);
+      assertNotNull(changed);
+      assertEquals(Optional.of("PT1M"), changed.get("probe.interval"));
+
+      // not a change
+      Files.writeString(dir.resolve("other.txt"), "x");
+      Files.writeString(file, "probe.interval=PT1M\n");
+      assertNull(changes.poll(1, TimeUnit.SECONDS));
+    }
+  }
+
+  @Test
+  void start_invalidFileIgnored(@TempDir Path dir) throws Exception {
+
+    var file = dir.resolve("watchdog.properties");
+    Files.writeString(file, "probe.interval=PT3M\n");
+    var changes = new LinkedBlockingQueue<ConfigProvider>();
+
+    var logger = (Logger) LoggerFactory.getLogger(ConfigFileWatcher.class);
+    var errors = new LinkedBlockingQueue<ILoggingEvent>();
+    var appender =
+        new AppenderBase<ILoggingEvent>() {
+          @Override
+          protected void append(ILoggingEvent event) {
+            if (event.getLevel() == Level.ERROR) {
+              errors.add(event);
+            }
+          }
+        };
+    appender.start();
+    logger.addAppender(appender);
+
+    try (var sut = ConfigFileWatcher.open(file, SETTLE)) {
+      sut.start(changes::add);
+
+      // when
+      Files.writeString(file, "probe.interval=\\u00zz\n");
+      assertNotNull(errors.poll(30, TimeUnit.SECONDS), "invalid file not noticed");
+      Files.writeString(file, "probe.interval=PT2M\n");
+
+      // then
+      var changed = changes.poll(30, TimeUnit.SECONDS);
+      assertNotNull(changed);
+      assertEquals(Optional.of("PT2M"), changed.get("probe.interval"));
+    } finally {
+      logger.detachAppender(appender);
+    }
+  }
+}
@@ -0,0 +1,33 @@
+package com.oviva.konnektor.watchdog.cfg;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+class LayeredConfigProviderTest {
+
+  private final Map<String, String> file = Map.of("probe.interval", "PT1M");
+  private final Map<String, String> env = Map.of("probe.interval", "PT3M", "proxy.port", "3128");
+
+  private final LayeredConfigProvider sut =
+      new LayeredConfigProvider(
+          List.of(k -> Optional.ofNullable(file.get(k)), k -> Optional.ofNullable(env.get(k))));
+
+  @Test
+  void get_firstLayerWins() {
+    assertEquals(Optional.of("PT1M"), sut.get("probe.interval"));
+  }
+
+  @Test
+  void get_fallback() {
+    assertEquals(Optional.of("3128"), sut.get("proxy.port"));
+  }
+
+  @Test
+  void get_missing() {
+    assertEquals(Optional.empty(), sut.get("konnektor.uri"));
+  }
+}
@@ -0,0 +1,34 @@
+package com.oviva.konnektor.watchdog.cfg;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Map;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+
+class ScopedConfigProviderTest {
+
+  private final Map<String, String> config =
+      Map.of(
+          "konnektors.lab.proxy.address", "10.0.0.2",
+          "proxy.address", "10.0.0.1",
+          "proxy.port", "3128");
+
+  private final ScopedConfigProvider sut =
+      new ScopedConfigProvider("konnektors.lab", k -> Optional.ofNullable(config.get(k)));
+
+  @Test
+  void get_scoped() {
+    assertEquals(Optional.of("10.0.0.2"), sut.get("proxy.address"));
+  }
+
+  @Test
+  void get_fallback() {
+    assertEquals(Optional.of("3128"), sut.get("proxy.port"));
+  }
+
+  @Test
+  void get_missing() {
+    assertEquals(Optional.empty(), sut.get("konnektor.uri"));
+  }
+}
@@ -0,0 +1,129 @@
+package com.oviva.konnektor.watchdog.events;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class CetpReceiverTest {
+
+  private static final String EVENT =
+      """
+      <?xml version="1.0" encoding="UTF-8"?>
+      <EVT:Event xmlns:EVT="http://ws.gematik.de/conn/EventService/v7.2">
+        <EVT:Topic>CARD/INSERTED</EVT:Topic>
+        <EVT:Type>Operation</EVT:Type>
+        <EVT:Severity>Info</EVT:Severity>
+        <EVT:SubscriptionID>sub-1</EVT:SubscriptionID>
+        <EVT:Message>
+          <EVT:Parameter><EVT:Key>CardHandle</EVT:Key><EVT:Value>card-a</EVT:Value></EVT:Parameter>
+          <EVT:Parameter><EVT:Key>CardType</EVT:Key><EVT:Value>SMC-B</EVT:Value></EVT:Parameter>
+        </EVT:Message>
+      </EVT:Event>
+      """;
+
+  @Test
+  void receive_event() throws Exception {
+
+    var received = new LinkedBlockingQueue<CardEvent>();
+    var executor = Executors.newCachedThreadPool();
+    try (var sut = CetpReceiver.start("127.0.0.1", 0, executor, received::add);
+        var socket = new Socket("127.0.0.1", sut.port())) {
+
+      // when
+      socket.getOutputStream().write(frame(eventPayload()));
+      socket.getOutputStream().write(frame(eventPayload()));
+
+      // then
+      var expected = new CardEvent("sub-1", "CARD/INSERTED", "card-a", "SMC-B");
+      assertEquals(expected, received.poll(5, TimeUnit.SECONDS));
+      assertEquals(expected, received.poll(5, TimeUnit.SECONDS));
+      assertTrue(expected.isInventoryChange());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void accept_failing_backsOff() throws Exception {
+
+    var attempts = new CopyOnWriteArrayList<Long>();
+    var failed = new CountDownLatch(3);
+    var socket =
+        new ServerSocket() {
+          @Override
+          public Socket accept() throws IOException {
+            attempts.add(System.nanoTime());
+            failed.countDown();
+            throw new IOException("Too many open files");
+          }
+        };
+    var executor = Executors.newCachedThreadPool();
+    try (var sut = CetpReceiver.start(socket, executor, e -> {})) {
+
+      // when
+      assertTrue(failed.await(5, TimeUnit.SECONDS));
+
+      // then, waits 100ms and 200ms in between instead of spinning
+      var waited = Duration.ofNanos(attempts.get(2) - attempts.get(0));
+      assertTrue(
+          waited.compareTo(CetpReceiver.ACCEPT_BACKOFF.multipliedBy(3)) >= 0, waited.toString());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void readFrame_endOfStream() throws IOException {
+
+    var in = new DataInputStream(new ByteArrayInputStream(new byte[0]));
+
+    assertNull(CetpReceiver.readFrame(in));
+  }
+
+  @Test
+  void readFrame_wrongMagic() {
+
+    var in = new DataInputStream(new ByteArrayInputStream("HTTP/1.1 200 OK".getBytes()));
+
+    assertThrows(IOException.class, () -> CetpReceiver.readFrame(in));
+  }
+
+  @Test
+  void readFrame_tooLarge() throws IOException {
+
+    var bytes = new ByteArrayOutputStream();
+    var out = new DataOutputStream(bytes);
+    out.writeBytes("CETP");
+    out.writeInt(Integer.MAX_VALUE);
+    var in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+
+    assertThrows(IOException.class, () -> CetpReceiver.readFrame(in));
+  }
+
+  private static byte[] eventPayload() {
+    return EVENT.strip().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] frame(byte[] payload) throws IOException {
+    var bytes = new ByteArrayOutputStream();
+    var out = new DataOutputStream(bytes);
+    out.writeBytes("CETP");
+    out.writeInt(payload.length);
+    out.write(payload);
+    return bytes.toByteArray();
+  }
+}
@@ -0,0 +1,53 @@
+package com.oviva.konnektor.watchdog.handlers;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ExpositionFormatTest {
+
+  @Test
+  void negotiate_prometheusProtobufScrape() {
+
+    var accept =
+        "application/vnd.google.protobuf;proto=io.prometheus.client.MetricFamily;encoding=delimited;q=0.7,"
+            + "text/plain;version=0.0.4;q=0.3,*/*;q=0.2";
+
+    assertEquals(ExpositionFormat.PROTOBUF, ExpositionFormat.negotiate(List.of(accept)));
+  }
+
+  @Test
+  void negotiate_prometheusOpenMetricsScrape() {
+
+    var accept =
+        "application/openmetrics-text;version=1.0.0;q=0.5,"
+            + "application/openmetrics-text;version=0.0.1;q=0.4,"
+            + "text/plain;version=0.0.4;q=0.3,*/*;q=0.2";
+
+    assertEquals(ExpositionFormat.OPENMETRICS, ExpositionFormat.negotiate(List.of(accept)));
+  }
+
+  @Test
+  void negotiate_protobufWithoutProto_ignored() {
+
+    var accept = "application/vnd.google.protobuf;q=0.9,text/plain;q=0.1";
+
+    assertEquals(ExpositionFormat.TEXT, ExpositionFormat.negotiate(List.of(accept)));
+  }
+
+  @Test
+  void negotiate_tie_firstListedWins() {
+
+    var accept = "application/openmetrics-text, text/plain";
+
+    assertEquals(ExpositionFormat.OPENMETRICS, ExpositionFormat.negotiate(List.of(accept)));
+  }
+
+  @Test
+  void negotiate_fallbackText() {
+    assertEquals(ExpositionFormat.TEXT, ExpositionFormat.negotiate(null));
+    assertEquals(ExpositionFormat.TEXT, ExpositionFormat.negotiate(List.of("*/*")));
+    assertEquals(ExpositionFormat.TEXT, ExpositionFormat.negotiate(List.of("application/json")));
+  }
+}
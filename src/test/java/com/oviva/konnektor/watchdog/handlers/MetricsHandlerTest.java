@@ -0,0 +1,28 @@
+package com.oviva.konnektor.watchdog.handlers;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class MetricsHandlerTest {
+
+  @Test
+  void acceptsGzip() {
+    assertTrue(MetricsHandler.acceptsGzip(List.of("gzip")));
+    assertTrue(MetricsHandler.acceptsGzip(List.of("deflate, GZIP;q=0.5")));
+    assertTrue(MetricsHandler.acceptsGzip(List.of("*")));
+    assertFalse(MetricsHandler.acceptsGzip(List.of("gzip;q=0")));
+    assertFalse(MetricsHandler.acceptsGzip(List.of("identity")));
+    assertFalse(MetricsHandler.acceptsGzip(null));
+  }
+
+  @Test
+  void matches() {
+    assertTrue(MetricsHandler.matches(List.of("\"a-1\""), "\"a-1\""));
+    assertTrue(MetricsHandler.matches(List.of("\"b-2\", W/\"a-1\""), "\"a-1\""));
+    assertTrue(MetricsHandler.matches(List.of("*"), "\"a-1\""));
+    assertFalse(MetricsHandler.matches(List.of("\"a-1-gzip\""), "\"a-1\""));
+    assertFalse(MetricsHandler.matches(null, "\"a-1\""));
+  }
+}
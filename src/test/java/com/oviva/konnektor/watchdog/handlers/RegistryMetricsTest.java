@@ -0,0 +1,50 @@
+package com.oviva.konnektor.watchdog.handlers;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RegistryMetricsTest {
+
+  private RegistryMetrics sut;
+
+  @BeforeEach
+  void beforeEach() {
+    var registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    registry.counter("konnektor_connection_cache_hits", "konnektor", "k1").increment();
+    sut = new RegistryMetrics(registry.getPrometheusRegistry());
+  }
+
+  @Test
+  void scrape_text() {
+
+    var text = new String(sut.scrape(ExpositionFormat.TEXT), StandardCharsets.UTF_8);
+
+    assertTrue(text.contains("konnektor_connection_cache_hits_total{konnektor=\"k1\"} 1.0"));
+    assertFalse(text.contains("_created"));
+  }
+
+  @Test
+  void scrape_openMetrics() {
+
+    var text = new String(sut.scrape(ExpositionFormat.OPENMETRICS), StandardCharsets.UTF_8);
+
+    assertTrue(text.contains("konnektor_connection_cache_hits_total{konnektor=\"k1\"} 1.0"));
+    assertTrue(text.contains("konnektor_connection_cache_hits_created{konnektor=\"k1\"}"));
+    assertTrue(text.endsWith("# EOF\n"));
+  }
+
+  @Test
+  void scrape_protobuf() {
+
+    var bytes = sut.scrape(ExpositionFormat.PROTOBUF);
+
+    assertTrue(bytes.length > 0);
+    assertTrue(
+        new String(bytes, StandardCharsets.ISO_8859_1).contains("konnektor_connection_cache_hits"));
+  }
+}
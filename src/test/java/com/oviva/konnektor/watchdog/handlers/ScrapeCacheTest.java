@@ -0,0 +1,244 @@
+package com.oviva.konnektor.watchdog.handlers;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ScrapeCacheTest {
+
+  private static final Instant NOW = Instant.parse("2024-08-09T14:13:33Z");
+
+  private final Clock clock = mock(Clock.class);
+  private final AtomicLong generation = new AtomicLong();
+  private final AtomicInteger renders = new AtomicInteger();
+
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+  private ScrapeCache sut;
+
+  @BeforeEach
+  void beforeEach() {
+    when(clock.instant()).thenReturn(NOW);
+    sut =
+        new ScrapeCache(
+            format ->
+                ("konnektor_status 1.0 # " + renders.incrementAndGet() + "\n")
+                    .getBytes(StandardCharsets.UTF_8),
+            generation::get,
+            Duration.ofSeconds(15),
+            clock);
+  }
+
+  @AfterEach
+  void afterEach() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void get_unchanged_reusesPayload() {
+
+    var first = sut.get(ExpositionFormat.TEXT);
+
+    // when
+    var second = sut.get(ExpositionFormat.TEXT);
+
+    // then
+    assertSame(first, second);
+    assertEquals(1, renders.get());
+  }
+
+  @Test
+  void get_newGeneration_renders() {
+
+    var first = sut.get(ExpositionFormat.TEXT);
+
+    // when
+    generation.incrementAndGet();
+    var second = sut.get(ExpositionFormat.TEXT);
+
+    // then
+    assertEquals(2, renders.get());
+    assertNotEquals(first.etag(), second.etag());
+  }
+
+  @Test
+  void get_expired_renders() {
+
+    sut.get(ExpositionFormat.TEXT);
+
+    // when
+    when(clock.instant()).thenReturn(NOW.plusSeconds(15));
+    sut.get(ExpositionFormat.TEXT);
+
+    // then
+    assertEquals(2, renders.get());
+  }
+
+  @Test
+  void get_perFormat() {
+
+    var text = sut.get(ExpositionFormat.TEXT);
+
+    // when
+    var openMetrics = sut.get(ExpositionFormat.OPENMETRICS);
+
+    // then
+    assertEquals(2, renders.get());
+    assertNotEquals(text.etag(), openMetrics.etag());
+    assertSame(text, sut.get(ExpositionFormat.TEXT));
+  }
+
+  @Test
+  void get_gzipMatchesPlain() throws IOException {
+
+    // when
+    var payload = sut.get(ExpositionFormat.TEXT);
+
+    // then
+    try (var in = new GZIPInputStream(new ByteArrayInputStream(payload.gzip()))) {
+      assertArrayEquals(payload.plain(), in.readAllBytes());
+    }
+    assertEquals("konnektor_status 1.0 # 1\n", new String(payload.plain(), StandardCharsets.UTF_8));
+    assertNotEquals(payload.etag(), payload.gzipEtag());
+  }
+
+  @Test
+  void get_concurrentScrapesShareRender() throws Exception {
+
+    var started = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    var sut = blocking(started, release);
+
+    // when
+    var first = executor.submit(() -> plain(sut));
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    var others = new ArrayList<Future<String>>();
+    for (int i = 0; i < 5; i++) {
+      others.add(executor.submit(() -> plain(sut)));
+    }
+    awaitWaiting(sut, 5);
+    release.countDown();
+
+    // then
+    assertEquals("render-1", first.get(5, TimeUnit.SECONDS));
+    for (var f : others) {
+      assertEquals("render-1", f.get(5, TimeUnit.SECONDS));
+    }
+    assertEquals(1, renders.get());
+  }
+
+  @Test
+  void get_newGenerationWhileRendering_doesNotJoinStaleRender() throws Exception {
+
+    var started = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    var sut = blocking(started, release);
+
+    var stale = executor.submit(() -> plain(sut));
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+
+    // when
+    generation.incrementAndGet();
+    var fresh = plain(sut);
+    release.countDown();
+
+    // then
+    assertEquals("render-1", stale.get(5, TimeUnit.SECONDS));
+    assertEquals("render-2", fresh);
+    // the stale render finished last, the cache keeps the fresh one
+    assertEquals("render-2", plain(sut));
+    assertEquals(2, renders.get());
+  }
+
+  @Test
+  void get_failureIsShared_nextScrapeRetries() throws Exception {
+
+    var started = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    var sut =
+        new ScrapeCache(
+            format -> {
+              if (renders.incrementAndGet() == 1) {
+                started.countDown();
+                await(release);
+                throw new IllegalStateException("boom");
+              }
+              return "ok".getBytes(StandardCharsets.UTF_8);
+            },
+            generation::get,
+            Duration.ofSeconds(15),
+            clock);
+
+    // when
+    var first = executor.submit(() -> plain(sut));
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    var second = executor.submit(() -> plain(sut));
+    awaitWaiting(sut, 1);
+    release.countDown();
+
+    // then
+    var e1 = assertThrows(Exception.class, () -> first.get(5, TimeUnit.SECONDS));
+    assertInstanceOf(IllegalStateException.class, e1.getCause());
+    var e2 = assertThrows(Exception.class, () -> second.get(5, TimeUnit.SECONDS));
+    assertInstanceOf(IllegalStateException.class, e2.getCause());
+    assertEquals("ok", plain(sut));
+  }
+
+  /** renders {@code render-<n>}, the first render waits for {@code release} */
+  private ScrapeCache blocking(CountDownLatch started, CountDownLatch release) {
+    return new ScrapeCache(
+        format -> {
+          var n = renders.incrementAndGet();
+          if (n == 1) {
+            started.countDown();
+            await(release);
+          }
+          return ("render-" + n).getBytes(StandardCharsets.UTF_8);
+        },
+        generation::get,
+        Duration.ofSeconds(15),
+        clock);
+  }
+
+  /** until {@code n} scrapes joined the render in flight */
+  private static void awaitWaiting(ScrapeCache sut, int n) throws InterruptedException {
+    var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (sut.waiting(ExpositionFormat.TEXT) < n) {
+      assertTrue(System.nanoTime() < deadline, "scrapes did not join the render");
+      Thread.sleep(10);
+    }
+  }
+
+  private static String plain(ScrapeCache sut) {
+    return new String(sut.get(ExpositionFormat.TEXT).plain(), StandardCharsets.UTF_8);
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package com.oviva.konnektor.watchdog.handlers;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.undertow.Undertow;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class StatusHandlerTest {
+
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+  private final HttpClient client = HttpClient.newHttpClient();
+  private Undertow server;
+
+  @AfterEach
+  void afterEach() {
+    if (server != null) {
+      server.stop();
+    }
+    executor.shutdownNow();
+  }
+
+  @Test
+  void handleRequest_rendersOnExecutor() throws Exception {
+
+    var uri = start(() -> Map.of("virtual", Thread.currentThread().isVirtual()));
+
+    // when
+    var res =
+        client.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString());
+
+    // then
+    assertEquals(200, res.statusCode());
+    assertEquals("application/json", res.headers().firstValue("Content-Type").orElseThrow());
+    assertEquals("{\"virtual\":true}", res.body());
+  }
+
+  @Test
+  void handleRequest_failure_500() throws Exception {
+
+    var uri =
+        start(
+            () -> {
+              throw new IllegalStateException("boom");
+            });
+
+    // when
+    var res =
+        client.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString());
+
+    // then
+    assertEquals(500, res.statusCode());
+  }
+
+  private URI start(Supplier<?> status) {
+    server =
+        Undertow.builder()
+            .addHttpListener(0, "127.0.0.1")
+            .setHandler(new StatusHandler(status, executor))
+            .build();
+    server.start();
+    var port = ((InetSocketAddress) server.getListenerInfo().get(0).getAddress()).getPort();
+    return URI.create("http://127.0.0.1:%d/status".formatted(port));
+  }
+}
@@ -0,0 +1,163 @@
+package com.oviva.konnektor.watchdog.history;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import com.oviva.konnektor.watchdog.probe.CardState;
+import com.oviva.konnektor.watchdog.probe.CardStatus;
+import com.oviva.konnektor.watchdog.probe.ProbeSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ProbeHistoryTest {
+
+  private static final String KONNEKTOR = "https://10.0.0.1:443";
+  private static final Instant NOW = Instant.parse("2024-08-09T14:13:33Z");
+
+  private static final CardState CARD_A =
+      new CardState("a", "Praxis A", "1-2-3", CardStatus.VERIFIED);
+  private static final CardState CARD_B =
+      new CardState("b", "Praxis B", "4-5-6", CardStatus.NOT_VERIFIED);
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final Clock clock = mock(Clock.class);
+  private final ProbeHistory sut =
+      new ProbeHistory(new ProbeHistory.Config(8, 0.9, 1), registry, clock);
+
+  @BeforeEach
+  void setUp() {
+    when(clock.millis()).thenReturn(NOW.toEpochMilli());
+    sut.add(KONNEKTOR);
+  }
+
+  @Test
+  void accept_availabilityAndBurnRate() {
+
+    // when
+    sut.accept(up(NOW.minusSeconds(60), CARD_A));
+    sut.accept(up(NOW.minusSeconds(40), CARD_A));
+    sut.accept(down(NOW.minusSeconds(20)));
+    sut.accept(up(NOW.minusSeconds(10), CARD_A));
+
+    // then, 30 of the last 50 seconds up
+    assertEquals(0.6, gauge("konnektor_availability_ratio", "5m"), 0.001);
+    assertEquals(4.0, gauge("konnektor_error_budget_burn_rate", "5m"), 0.01);
+    assertEquals(0.6, gauge("konnektor_availability_ratio", "24h"), 0.001);
+    assertEquals(0.6, gauge("konnektor_availability_ratio", "30d"), 0.001);
+  }
+
+  @Test
+  void accept_weightedByTimeBetweenProbes() {
+
+    // up probed every 10 seconds, down backing off to every minute
+    var at = NOW.minusSeconds(290);
+    sut.accept(up(at));
+    for (int i = 0; i < 10; i++) {
+      at = at.plusSeconds(10);
+      sut.accept(up(at));
+    }
+    for (int i = 0; i < 3; i++) {
+      at = at.plusSeconds(60);
+      sut.accept(down(at));
+    }
+
+    // when
+    var window = sut.status().konnektors().get(0).windows().get("5m");
+
+    // then, 100 seconds up and 180 down rather than 11 probes up and 3 down
+    assertEquals(100.0 / 280, window.availability(), 0.001);
+    assertEquals(14, window.probes());
+  }
+
+  @Test
+  void accept_staleIgnored() {
+
+    // when
+    sut.accept(up(NOW, CARD_A).asStale());
+
+    // then
+    assertTrue(Double.isNaN(gauge("konnektor_availability_ratio", "5m")));
+    assertTrue(sut.status().konnektors().get(0).latest().isEmpty());
+  }
+
+  @Test
+  void status_latestProbesAndCards() {
+
+    sut.accept(up(NOW.minusSeconds(20), CARD_A, CARD_B));
+    sut.accept(down(NOW.minusSeconds(10)));
+
+    // when
+    var status = sut.status();
+
+    // then
+    assertEquals(0.9, status.slo());
+    var konnektor = status.konnektors().get(0);
+    assertEquals(KONNEKTOR, konnektor.konnektor());
+    assertEquals(
+        List.of(
+            new ProbeHistory.Probe(NOW.minusSeconds(10).toString(), false, 250),
+            new ProbeHistory.Probe(NOW.minusSeconds(20).toString(), true, 250)),
+        konnektor.latest());
+    // the first probe stands for a millisecond, the down one for the 10 seconds since
+    var hour = konnektor.windows().get("1h");
+    assertEquals(0.0, hour.availability(), 0.001);
+    assertEquals(10.0, hour.burnRate(), 0.01);
+    assertEquals(2, hour.probes());
+
+    // one card tracked at most
+    assertEquals(1, konnektor.cards().size());
+    var card = konnektor.cards().get(0);
+    assertEquals("a", card.handle());
+    assertEquals(
+        List.of(new ProbeHistory.CardProbe(NOW.minusSeconds(20).toString(), "verified")),
+        card.latest());
+    assertEquals(new ProbeHistory.WindowStatus(1.0, 0.0, 1), card.windows().get("5m"));
+  }
+
+  @Test
+  void accept_removedCardForgotten() {
+
+    sut.accept(up(NOW.minusSeconds(20), CARD_A));
+
+    // when
+    sut.accept(up(NOW.minusSeconds(10), CARD_B));
+
+    // then
+    var cards = sut.status().konnektors().get(0).cards();
+    assertEquals(List.of("b"), cards.stream().map(ProbeHistory.CardHistory::handle).toList());
+  }
+
+  @Test
+  void remove_dropsGauges() {
+
+    // when
+    sut.remove(KONNEKTOR);
+
+    // then
+    assertTrue(registry.find("konnektor_availability_ratio").gauges().isEmpty());
+    assertTrue(sut.status().konnektors().isEmpty());
+  }
+
+  @Test
+  void bytes() {
+    assertEquals(8 * 13 + 4 * 720, sut.bytesPerKonnektor());
+    assertEquals(8 * 9 + 4 * 720, sut.bytesPerCard());
+  }
+
+  private double gauge(String name, String window) {
+    return registry.get(name).tag("konnektor", KONNEKTOR).tag("window", window).gauge().value();
+  }
+
+  private static ProbeSnapshot up(Instant at, CardState... cards) {
+    return new ProbeSnapshot(KONNEKTOR, 1, true, List.of(cards), at, at, Duration.ofMillis(250));
+  }
+
+  private static ProbeSnapshot down(Instant at) {
+    return new ProbeSnapshot(KONNEKTOR, 1, false, List.of(), at, null, Duration.ofMillis(250));
+  }
+}
@@ -0,0 +1,47 @@
+package com.oviva.konnektor.watchdog.history;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ProbeRingTest {
+
+  @Test
+  void latest_newestFirst() {
+
+    var sut = new ProbeRing(4, true);
+
+    // when
+    sut.add(1, (byte) 1, 10);
+    sut.add(2, (byte) 0, 20);
+
+    // then
+    assertEquals(
+        List.of(new ProbeRing.Entry(2, (byte) 0, 20), new ProbeRing.Entry(1, (byte) 1, 10)),
+        sut.latest(10));
+  }
+
+  @Test
+  void add_overwritesOldest() {
+
+    var sut = new ProbeRing(2, false);
+
+    // when
+    sut.add(1, (byte) 1, 10);
+    sut.add(2, (byte) 1, 20);
+    sut.add(3, (byte) -1, 30);
+
+    // then
+    assertEquals(2, sut.size());
+    assertEquals(
+        List.of(new ProbeRing.Entry(3, (byte) -1, -1), new ProbeRing.Entry(2, (byte) 1, -1)),
+        sut.latest(10));
+  }
+
+  @Test
+  void bytes() {
+    assertEquals(64 * 13, ProbeRing.bytes(64, true));
+    assertEquals(64 * 9, ProbeRing.bytes(64, false));
+  }
+}
@@ -0,0 +1,88 @@
+package com.oviva.konnektor.watchdog.history;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class SlidingWindowTest {
+
+  // 60 buckets of one second
+  private final SlidingWindow sut = new SlidingWindow(Duration.ofMinutes(1));
+
+  @Test
+  void ratio_withoutProbes() {
+    assertTrue(Double.isNaN(sut.ratio(1_000)));
+    assertEquals(0, sut.total(1_000));
+  }
+
+  @Test
+  void ratio_upOverObservedTime() {
+
+    // when
+    sut.record(1_000, 2_000, true);
+    sut.record(2_000, 3_000, true);
+    sut.record(3_000, 3_500, false);
+    sut.record(3_500, 4_000, true);
+
+    // then
+    assertEquals(2_500.0 / 3_000, sut.ratio(4_000), 0.0001);
+    assertEquals(4, sut.total(4_000));
+  }
+
+  @Test
+  void record_spreadAcrossBuckets() {
+
+    sut.record(0, 10_000, true);
+
+    // when
+    var ratio = sut.ratio(64_000);
+
+    // then, the first 5 seconds expired
+    assertEquals(1.0, ratio);
+    assertEquals(1, sut.total(64_000));
+    assertTrue(Double.isNaN(sut.ratio(70_000)));
+  }
+
+  @Test
+  void ratio_oldBucketsExpire() {
+
+    sut.record(0, 1_000, false);
+    sut.record(29_000, 30_000, true);
+
+    // when
+    var ratio = sut.ratio(61_000);
+
+    // then
+    assertEquals(1.0, ratio);
+    assertEquals(1, sut.total(61_000));
+    assertTrue(Double.isNaN(sut.ratio(90_000)));
+  }
+
+  @Test
+  void record_afterLongPause() {
+
+    sut.record(0, 1_000, false);
+
+    // when
+    var now = Duration.ofDays(3).toMillis();
+    sut.record(1_000, now, true);
+
+    // then, only the window is accounted for
+    assertEquals(1.0, sut.ratio(now));
+    assertEquals(1, sut.total(now));
+  }
+
+  @Test
+  void record_olderThanWindowIgnored() {
+
+    sut.record(119_000, 120_000, true);
+
+    // when
+    sut.record(0, 1_000, false);
+
+    // then
+    assertEquals(1, sut.total(120_000));
+    assertEquals(1.0, sut.ratio(120_000));
+  }
+}
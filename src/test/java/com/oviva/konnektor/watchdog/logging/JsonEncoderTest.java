@@ -10,11 +10,15 @@ import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.opentelemetry.sdk.testing.junit5.OpenTelemetryExtension;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -158,6 +162,92 @@ class JsonEncoderTest {
         msg);
   }
 
+  @Test
+  void encode_sourceLocation() {
+
+    var e = mockEvent();
+    when(e.getLevel()).thenReturn(Level.ERROR);
+    when(e.getFormattedMessage()).thenReturn("what a terrible failure");
+    when(e.getCallerData())
+        .thenReturn(
+            new StackTraceElement[] {
+              new StackTraceElement("com.example.Probe", "probeOnce", "Probe.java", 42)
+            });
+
+    var msg = encoder.encode(e);
+
+    assertMatchesJson(
+        """
+          {"@type":"type.googleapis.com/google.devtools.clouderrorreporting.v1beta1.ReportedErrorEvent","logger":"com.example.MyLogger","logging.googleapis.com/sourceLocation":{"file":"Probe.java","function":"com.example.Probe.probeOnce","line":"42"},"message":"what a terrible failure","severity":"ERROR","thread_name":"main","time":"2024-08-09T14:13:33Z"}
+          """,
+        msg);
+  }
+
+  @Test
+  void encode_timestampLikeIsoInstant() {
+
+    for (var instant :
+        List.of(
+            Instant.parse("2024-08-09T14:13:33.100Z"),
+            Instant.parse("2024-08-09T14:13:33.123456Z"),
+            Instant.parse("2024-08-09T14:13:33.000000001Z"),
+            Instant.parse("2024-08-09T14:13:34Z"),
+            Instant.parse("1969-12-31T23:59:59.5Z"))) {
+      var e = mockEvent();
+      when(e.getInstant()).thenReturn(instant);
+
+      var json = new String(encoder.encode(e), StandardCharsets.UTF_8);
+
+      assertTrue(
+          json.contains("\"time\":\"%s\"".formatted(DateTimeFormatter.ISO_INSTANT.format(instant))),
+          json);
+    }
+  }
+
+  @Test
+  void encode_reusesBuffers() {
+
+    var first = mockEvent();
+    when(first.getFormattedMessage()).thenReturn("a rather long first message".repeat(100));
+    var second = mockEvent();
+    when(second.getFormattedMessage()).thenReturn("short");
+
+    encoder.encode(first);
+    var msg = encoder.encode(second);
+
+    // nothing left over from the first event, no separator before the second
+    assertEquals('{', msg[0]);
+    assertEquals('\n', msg[msg.length - 1]);
+    assertMatchesJson(
+        """
+          {"logger":"com.example.MyLogger","message":"short","severity":"INFO","thread_name":"main","time":"2024-08-09T14:13:33Z"}
+          """,
+        msg);
+  }
+
+  @Test
+  void encode_sink() throws IOException {
+
+    var e = mockEvent();
+    when(e.getFormattedMessage()).thenReturn("Hello World!");
+    var expected = encoder.encode(e);
+
+    var out = new ByteArrayOutputStream();
+    var writes = new AtomicInteger();
+
+    // when
+    encoder.encode(
+        e,
+        (bytes, offset, length) -> {
+          writes.incrementAndGet();
+          out.write(bytes, offset, length);
+        });
+
+    // then
+    assertEquals(1, writes.get());
+    assertArrayEquals(expected, out.toByteArray());
+  }
+
   private ILoggingEvent mockEvent() {
 
     var e = mock(ILoggingEvent.class);
@@ -0,0 +1,148 @@
+package com.oviva.konnektor.watchdog.logging;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.util.LogbackMDCAdapter;
+import ch.qos.logback.core.read.ListAppender;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.event.Level;
+
+class RepeatingErrorLogTest {
+
+  private static final Instant NOW = Instant.parse("2024-08-09T14:13:33Z");
+  private static final String KONNEKTOR = "https://10.0.0.1:443";
+  private static final String TEMPLATE = "failed to probe konnektor {}";
+
+  private final Clock clock = mock(Clock.class);
+  private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+  private RepeatingErrorLog sut;
+
+  @BeforeEach
+  void setUp() {
+    var context = new LoggerContext();
+    context.setMDCAdapter(new LogbackMDCAdapter());
+    appender.setContext(context);
+    appender.start();
+    var logger = context.getLogger("test");
+    logger.addAppender(appender);
+
+    when(clock.instant()).thenReturn(NOW);
+    sut = new RepeatingErrorLog(logger, Level.ERROR, "konnektor", Duration.ofMinutes(10), clock);
+  }
+
+  @Test
+  void log_firstInFull_thenSuppressed() {
+
+    // when
+    for (int i = 0; i < 5; i++) {
+      sut.log(KONNEKTOR, new IOException("down"), TEMPLATE, KONNEKTOR);
+    }
+
+    // then
+    assertEquals(1, appender.list.size());
+    var event = appender.list.get(0);
+    assertEquals("failed to probe konnektor " + KONNEKTOR, event.getFormattedMessage());
+    assertNotNull(event.getThrowableProxy());
+  }
+
+  @Test
+  void log_reportsCallerAsSourceLocation() throws IOException {
+
+    // the caller is captured by the appender the application logs through
+    var context = new LoggerContext();
+    context.setMDCAdapter(new LogbackMDCAdapter());
+    var written = new ListAppender<ILoggingEvent>();
+    written.setContext(context);
+    written.start();
+    var ringBuffer =
+        new RingBufferAppender(written, 16, RingBufferAppender.OverflowPolicy.DROP_INFO);
+    ringBuffer.setContext(context);
+    ringBuffer.start();
+    var logger = context.getLogger("test");
+    logger.addAppender(ringBuffer);
+    sut = new RepeatingErrorLog(logger, Level.ERROR, "konnektor", Duration.ofMinutes(10), clock);
+
+    // when
+    sut.log(KONNEKTOR, new IOException("down"), TEMPLATE, KONNEKTOR);
+    sut.log(KONNEKTOR, new IOException("down"), TEMPLATE, KONNEKTOR);
+    when(clock.instant()).thenReturn(NOW.plus(Duration.ofMinutes(10)));
+    sut.log(KONNEKTOR, new IOException("down"), TEMPLATE, KONNEKTOR);
+    ringBuffer.stop();
+
+    // then, in full and summarized
+    assertEquals(2, written.list.size());
+    var encoder = new JsonEncoder();
+    encoder.headerBytes();
+    for (var event : written.list) {
+      var json =
+          JsonMapper.builder()
+              .build()
+              .readTree(new String(encoder.encode(event), StandardCharsets.UTF_8));
+      assertEquals(
+          RepeatingErrorLogTest.class.getName() + ".log_reportsCallerAsSourceLocation",
+          json.at("/logging.googleapis.com~1sourceLocation/function").asText());
+    }
+  }
+
+  @Test
+  void log_summaryAfterWindow() {
+
+    for (int i = 0; i < 5; i++) {
+      sut.log(KONNEKTOR, new IOException("down"), TEMPLATE, KONNEKTOR);
+    }
+
+    // when
+    when(clock.instant()).thenReturn(NOW.plus(Duration.ofMinutes(10)));
+    sut.log(KONNEKTOR, new IOException("down"), TEMPLATE, KONNEKTOR);
+
+    // then
+    assertEquals(2, appender.list.size());
+    var summary = appender.list.get(1);
+    assertEquals(
+        "failed to probe konnektor %s: java.io.IOException: down, suppressed 4 identical errors in the last PT10M"
+            .formatted(KONNEKTOR),
+        summary.getFormattedMessage());
+    assertNull(summary.getThrowableProxy(), "stack trace must not be rendered again");
+  }
+
+  @Test
+  void log_distinctKeys() {
+
+    // when
+    sut.log(KONNEKTOR, new IOException("down"), TEMPLATE, KONNEKTOR);
+    sut.log(KONNEKTOR, new SocketTimeoutException("slow"), TEMPLATE, KONNEKTOR);
+    sut.log("https://10.0.0.2:443", new IOException("down"), TEMPLATE, "https://10.0.0.2:443");
+
+    // then
+    assertEquals(3, appender.list.size());
+  }
+
+  @Test
+  void resolved_logsInFullAgain() {
+
+    sut.log(KONNEKTOR, new IOException("down"), TEMPLATE, KONNEKTOR);
+    sut.log(KONNEKTOR, new IOException("down"), TEMPLATE, KONNEKTOR);
+
+    // when
+    sut.resolved(KONNEKTOR);
+    sut.log(KONNEKTOR, new IOException("down"), TEMPLATE, KONNEKTOR);
+
+    // then
+    assertEquals(3, appender.list.size());
+    assertEquals(
+        "%s recovered, suppressed 1 identical errors since the last report".formatted(KONNEKTOR),
+        appender.list.get(1).getFormattedMessage());
+    assertNotNull(appender.list.get(2).getThrowableProxy());
+  }
+}
@@ -0,0 +1,222 @@
+package com.oviva.konnektor.watchdog.logging;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.AppenderBase;
+import com.oviva.konnektor.watchdog.logging.RingBufferAppender.OverflowPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class RingBufferAppenderTest {
+
+  private static final int CAPACITY = 16;
+
+  private final BlockingAppender delegate = new BlockingAppender();
+  private RingBufferAppender appender;
+
+  @AfterEach
+  void tearDown() {
+    delegate.release();
+    if (appender != null) {
+      appender.stop();
+    }
+  }
+
+  @Test
+  void append_writtenByDelegate() throws Exception {
+
+    delegate.release();
+    start(OverflowPolicy.DROP_ALL);
+
+    // when
+    appender.doAppend(event(Level.INFO));
+    appender.doAppend(event(Level.ERROR));
+
+    // then
+    awaitWritten(2);
+    assertEquals(
+        List.of(Level.INFO, Level.ERROR),
+        delegate.events.stream().map(ILoggingEvent::getLevel).toList());
+  }
+
+  @Test
+  void append_dropInfo_keepsWarningsWhenAlmostFull() {
+
+    start(OverflowPolicy.DROP_INFO);
+    // the writer takes the first event and blocks on it, the rest stays buffered
+    appender.doAppend(event(Level.INFO));
+    awaitDepth(0);
+    for (int i = 0; i < CAPACITY - CAPACITY / 5; i++) {
+      appender.doAppend(event(Level.WARN));
+    }
+
+    // when
+    appender.doAppend(event(Level.INFO));
+    appender.doAppend(event(Level.DEBUG));
+    appender.doAppend(event(Level.ERROR));
+
+    // then
+    assertEquals(1, appender.dropped(Level.INFO));
+    assertEquals(1, appender.dropped(Level.DEBUG));
+    assertEquals(0, appender.dropped(Level.ERROR));
+    assertEquals(CAPACITY - CAPACITY / 5 + 1, appender.depth());
+  }
+
+  @Test
+  void append_dropAll_whenFull() {
+
+    start(OverflowPolicy.DROP_ALL);
+    appender.doAppend(event(Level.INFO));
+    awaitDepth(0);
+    for (int i = 0; i < CAPACITY; i++) {
+      appender.doAppend(event(Level.INFO));
+    }
+
+    // when
+    appender.doAppend(event(Level.ERROR));
+
+    // then
+    assertEquals(1, appender.dropped(Level.ERROR));
+    assertEquals(0, appender.dropped(Level.INFO));
+    assertEquals(CAPACITY, appender.depth());
+  }
+
+  @Test
+  void append_block_waitsForSpace() throws Exception {
+
+    start(OverflowPolicy.BLOCK);
+    appender.doAppend(event(Level.INFO));
+    awaitDepth(0);
+    for (int i = 0; i < CAPACITY; i++) {
+      appender.doAppend(event(Level.INFO));
+    }
+
+    try (var executor = Executors.newSingleThreadExecutor()) {
+      var event = event(Level.INFO);
+      var appending = new AtomicReference<Thread>();
+      var blocked =
+          executor.submit(
+              () -> {
+                appending.set(Thread.currentThread());
+                appender.doAppend(event);
+              });
+      await(() -> appending.get() != null && parked(appending.get()));
+      assertFalse(blocked.isDone());
+
+      // when
+      delegate.release();
+
+      // then
+      blocked.get(5, TimeUnit.SECONDS);
+    }
+    awaitWritten(CAPACITY + 2);
+    assertEquals(0, appender.dropped(Level.INFO));
+  }
+
+  @Test
+  void stop_drainsBuffer() {
+
+    start(OverflowPolicy.BLOCK);
+    for (int i = 0; i < 10; i++) {
+      appender.doAppend(event(Level.INFO));
+    }
+    delegate.release();
+
+    // when
+    appender.stop();
+
+    // then
+    assertEquals(10, delegate.events.size());
+    assertFalse(delegate.isStarted());
+  }
+
+  @Test
+  void bindTo_metrics() {
+
+    var registry = new SimpleMeterRegistry();
+    start(OverflowPolicy.DROP_ALL);
+    appender.doAppend(event(Level.INFO));
+    awaitDepth(0);
+    for (int i = 0; i <= CAPACITY; i++) {
+      appender.doAppend(event(Level.WARN));
+    }
+
+    // when
+    LogMetrics.bindTo(registry, appender);
+
+    // then
+    assertEquals(CAPACITY, registry.get("log_queue_depth").gauge().value());
+    assertEquals(CAPACITY, registry.get("log_queue_capacity").gauge().value());
+    assertEquals(
+        1, registry.get("log_events_dropped").tag("level", "warn").functionCounter().count());
+    assertEquals(
+        0, registry.get("log_events_dropped").tag("level", "info").functionCounter().count());
+  }
+
+  private void start(OverflowPolicy policy) {
+    delegate.start();
+    appender = new RingBufferAppender(delegate, CAPACITY, policy);
+    appender.start();
+  }
+
+  private void awaitDepth(int depth) {
+    await(() -> appender.depth() == depth);
+  }
+
+  private void awaitWritten(int count) {
+    await(() -> delegate.events.size() == count);
+  }
+
+  private static void await(BooleanSupplier condition) {
+    var deadline = Instant.now().plus(Duration.ofSeconds(5));
+    while (!condition.getAsBoolean()) {
+      assertTrue(Instant.now().isBefore(deadline), "condition not met in time");
+      Thread.yield();
+    }
+  }
+
+  private static boolean parked(Thread thread) {
+    var state = thread.getState();
+    return state == Thread.State.WAITING || state == Thread.State.TIMED_WAITING;
+  }
+
+  private static ILoggingEvent event(Level level) {
+    var e = mock(ILoggingEvent.class);
+    when(e.getLevel()).thenReturn(level);
+    return e;
+  }
+
+  /** stands in for a stdout nobody reads, until released */
+  private static class BlockingAppender extends AppenderBase<ILoggingEvent> {
+
+    private final CountDownLatch released = new CountDownLatch(1);
+    final List<ILoggingEvent> events = new CopyOnWriteArrayList<>();
+
+    void release() {
+      released.countDown();
+    }
+
+    @Override
+    protected void append(ILoggingEvent event) {
+      try {
+        released.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      events.add(event);
+    }
+  }
+}
@@ -0,0 +1,96 @@
+package com.oviva.konnektor.watchdog.logging;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.Test;
+
+class RingBufferTest {
+
+  @Test
+  void offer_full() {
+
+    var buffer = new RingBuffer<Integer>(4);
+    for (int i = 0; i < 4; i++) {
+      assertTrue(buffer.offer(i));
+    }
+
+    // when
+    var accepted = buffer.offer(4);
+
+    // then
+    assertFalse(accepted);
+    assertEquals(4, buffer.size());
+  }
+
+  @Test
+  void poll_fifoAcrossWrapAround() {
+
+    var buffer = new RingBuffer<Integer>(4);
+    var polled = new ArrayList<Integer>();
+
+    // when
+    for (int i = 0; i < 10; i++) {
+      assertTrue(buffer.offer(i));
+      assertTrue(buffer.offer(i + 100));
+      polled.add(buffer.poll());
+      polled.add(buffer.poll());
+    }
+
+    // then
+    assertNull(buffer.poll());
+    assertEquals(0, buffer.size());
+    for (int i = 0; i < 10; i++) {
+      assertEquals(i, polled.get(2 * i));
+      assertEquals(i + 100, polled.get(2 * i + 1));
+    }
+  }
+
+  @Test
+  void new_capacityNotPowerOfTwo() {
+    assertThrows(IllegalArgumentException.class, () -> new RingBuffer<>(1000));
+  }
+
+  @Test
+  void offer_concurrentProducers() throws Exception {
+
+    var producers = 4;
+    var perProducer = 2_000;
+    var buffer = new RingBuffer<Integer>(64);
+    var start = new CountDownLatch(1);
+
+    // when
+    var seen = new HashSet<Integer>();
+    try (var executor = Executors.newFixedThreadPool(producers)) {
+      for (int p = 0; p < producers; p++) {
+        var offset = p * perProducer;
+        executor.execute(
+            () -> {
+              try {
+                start.await();
+              } catch (InterruptedException e) {
+                return;
+              }
+              for (int i = 0; i < perProducer; i++) {
+                while (!buffer.offer(offset + i)) {
+                  Thread.yield();
+                }
+              }
+            });
+      }
+      start.countDown();
+      while (seen.size() < producers * perProducer) {
+        var e = buffer.poll();
+        if (e != null) {
+          assertTrue(seen.add(e), "duplicate element " + e);
+        }
+      }
+    }
+
+    // then
+    assertNull(buffer.poll());
+  }
+}
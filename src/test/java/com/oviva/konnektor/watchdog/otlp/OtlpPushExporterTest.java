@@ -0,0 +1,194 @@
+package com.oviva.konnektor.watchdog.otlp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.oviva.konnektor.watchdog.stub.StubCollector;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class OtlpPushExporterTest {
+
+  private static final Instant NOW = Instant.parse("2024-08-09T14:13:33Z");
+  private static final String KONNEKTOR = "https://10.0.0.1:443";
+
+  private final StubCollector collector = StubCollector.start();
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+  @AfterEach
+  void tearDown() {
+    collector.close();
+    scheduler.shutdownNow();
+    executor.shutdownNow();
+  }
+
+  @Test
+  void drain_sendsGzippedOtlpJson() {
+
+    Gauge.builder("card_status", () -> 1.0)
+        .tags("konnektor", KONNEKTOR, "card_handle", "a")
+        .register(registry);
+    Counter.builder("card_inserted").tag("konnektor", KONNEKTOR).register(registry).increment(2);
+    Timer.builder("konnektor_operation")
+        .serviceLevelObjectives(Duration.ofMillis(100), Duration.ofSeconds(1))
+        .register(registry)
+        .record(Duration.ofMillis(500));
+    var sut = exporter(10, Duration.ofSeconds(5));
+
+    // when
+    sut.collect();
+    sut.drain();
+
+    // then
+    assertEquals(1, collector.accepted().size());
+    var resource = collector.accepted().get(0).get("resourceMetrics").get(0);
+    assertEquals("site-a", attribute(resource.get("resource").get("attributes"), "site").asText());
+
+    var metrics = resource.get("scopeMetrics").get(0).get("metrics");
+    var status = metric(metrics, "card_status").get("gauge").get("dataPoints").get(0);
+    assertEquals(1.0, status.get("asDouble").asDouble());
+    assertEquals(KONNEKTOR, attribute(status.get("attributes"), "konnektor").asText());
+    assertEquals("1723212813000000000", status.get("timeUnixNano").asText());
+
+    var inserted = metric(metrics, "card_inserted").get("sum");
+    assertTrue(inserted.get("isMonotonic").asBoolean());
+    assertEquals(2.0, inserted.get("dataPoints").get(0).get("asDouble").asDouble());
+
+    var operation =
+        metric(metrics, "konnektor_operation").get("histogram").get("dataPoints").get(0);
+    assertEquals("1", operation.get("count").asText());
+    assertEquals(0.5, operation.get("sum").asDouble(), 0.001);
+    assertEquals("[\"0\",\"1\",\"0\"]", operation.get("bucketCounts").toString());
+    assertEquals("[0.1,1.0]", operation.get("explicitBounds").toString());
+    assertEquals(0, sut.queued());
+  }
+
+  @Test
+  void drain_keepsBatchWhileCollectorBusy() {
+
+    collector.respond(503);
+    var sut = exporter(10, Duration.ofSeconds(5));
+    sut.collect();
+
+    // when
+    sut.drain();
+
+    // then
+    assertEquals(0, collector.accepted().size());
+    assertEquals(1, sut.queued());
+    assertEquals(1, batches("retried"));
+
+    // when
+    sut.drain();
+
+    // then
+    assertEquals(1, collector.accepted().size());
+    assertEquals(0, sut.queued());
+  }
+
+  @Test
+  void drain_slowCollectorTimesOut() {
+
+    collector.latency(Duration.ofSeconds(2));
+    var sut = exporter(10, Duration.ofMillis(200));
+    sut.collect();
+
+    // when
+    sut.drain();
+
+    // then
+    assertEquals(1, sut.queued());
+    assertEquals(1, batches("retried"));
+  }
+
+  @Test
+  void drain_dropsRejectedBatch() {
+
+    collector.respond(400);
+    var sut = exporter(10, Duration.ofSeconds(5));
+    sut.collect();
+    sut.collect();
+
+    // when
+    sut.drain();
+
+    // then
+    assertEquals(1, collector.accepted().size());
+    assertEquals(1, batches("rejected"));
+    assertEquals(1, batches("sent"));
+    assertEquals(0, sut.queued());
+  }
+
+  @Test
+  void collect_dropsOldestOnceFull() {
+
+    var sut = exporter(2, Duration.ofSeconds(5));
+
+    // when
+    sut.collect();
+    sut.collect();
+    sut.collect();
+
+    // then
+    assertEquals(2, sut.queued());
+    assertEquals(1, batches("dropped"));
+
+    sut.drain();
+    assertEquals(2, collector.accepted().size());
+    assertEquals(2, collector.requests());
+  }
+
+  private OtlpPushExporter exporter(int queueSize, Duration timeout) {
+    var config =
+        new OtlpPushExporter.Config(
+            collector.uri(),
+            Duration.ofMinutes(1),
+            timeout,
+            queueSize,
+            Map.of("Authorization", "Bearer t0ken"),
+            Map.of("site", "site-a"));
+    return new OtlpPushExporter(
+        config,
+        registry,
+        scheduler,
+        executor,
+        Duration.ofMinutes(10),
+        Clock.fixed(NOW, ZoneOffset.UTC));
+  }
+
+  private double batches(String outcome) {
+    return registry.get("watchdog_otlp_batches").tag("outcome", outcome).counter().count();
+  }
+
+  private static JsonNode metric(JsonNode metrics, String name) {
+    for (var metric : metrics) {
+      if (metric.get("name").asText().equals(name)) {
+        return metric;
+      }
+    }
+    throw new AssertionError("metric %s not found".formatted(name));
+  }
+
+  private static JsonNode attribute(JsonNode attributes, String key) {
+    for (var attribute : attributes) {
+      if (attribute.get("key").asText().equals(key)) {
+        return attribute.get("value").get("stringValue");
+      }
+    }
+    throw new AssertionError("attribute %s not found".formatted(key));
+  }
+}
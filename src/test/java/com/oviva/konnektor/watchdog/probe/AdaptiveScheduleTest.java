@@ -0,0 +1,111 @@
+package com.oviva.konnektor.watchdog.probe;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class AdaptiveScheduleTest {
+
+  private static final String KONNEKTOR = "https://10.0.0.1:443";
+  private static final Instant NOW = Instant.parse("2024-08-09T14:13:33Z");
+
+  private static final AdaptiveSchedule.Config CONFIG =
+      new AdaptiveSchedule.Config(
+          Duration.ofMinutes(3), Duration.ofSeconds(30), Duration.ofMinutes(15), 0.2);
+
+  private static final CardState VERIFIED =
+      new CardState("h1", "Dr. Who", "1-2-3", CardStatus.VERIFIED);
+  private static final CardState NOT_VERIFIED =
+      new CardState("h1", "Dr. Who", "1-2-3", CardStatus.NOT_VERIFIED);
+
+  @Test
+  void next_stableBacksOff() {
+
+    // no jitter, random is right in the middle
+    var sut = new AdaptiveSchedule(CONFIG, () -> 0.5);
+
+    var s = up(VERIFIED);
+
+    assertEquals(Duration.ofMinutes(3), sut.next(s, s));
+    assertEquals(Duration.ofMinutes(6), sut.next(s, s));
+    assertEquals(Duration.ofMinutes(12), sut.next(s, s));
+    assertEquals(Duration.ofMinutes(15), sut.next(s, s));
+    assertEquals(Duration.ofMinutes(15), sut.next(s, s));
+  }
+
+  @Test
+  void next_changeProbesSoon() {
+
+    var sut = new AdaptiveSchedule(CONFIG, () -> 0.5);
+
+    var s = up(VERIFIED);
+    sut.next(s, s);
+    sut.next(s, s);
+
+    // when
+    var next = sut.next(s, up());
+
+    // then
+    assertEquals(Duration.ofSeconds(30), next);
+    assertEquals(Duration.ofMinutes(3), sut.next(up(), up()));
+  }
+
+  @Test
+  void next_unverifiedProbesSoon() {
+
+    var sut = new AdaptiveSchedule(CONFIG, () -> 0.5);
+
+    var s = up(NOT_VERIFIED);
+
+    assertEquals(Duration.ofSeconds(30), sut.next(s, s));
+    assertEquals(Duration.ofSeconds(30), sut.next(s, s));
+  }
+
+  @Test
+  void next_failureBacksOffExponentially() {
+
+    var sut = new AdaptiveSchedule(CONFIG, () -> 0.5);
+
+    var s = down();
+
+    assertEquals(Duration.ofMinutes(3), sut.next(s, s));
+    assertEquals(Duration.ofMinutes(6), sut.next(s, s));
+    assertEquals(Duration.ofMinutes(12), sut.next(s, s));
+    assertEquals(Duration.ofMinutes(15), sut.next(s, s));
+
+    // recovers
+    assertEquals(Duration.ofSeconds(30), sut.next(s, up(VERIFIED)));
+  }
+
+  @Test
+  void next_jitter() {
+
+    var low = new AdaptiveSchedule(CONFIG, () -> 0.0);
+    var high = new AdaptiveSchedule(CONFIG, () -> 0.999);
+
+    var s = down();
+
+    assertEquals(Duration.ofSeconds(144), low.next(s, s));
+    assertTrue(high.next(s, s).compareTo(Duration.ofSeconds(215)) > 0);
+  }
+
+  @Test
+  void config_invalid() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            new AdaptiveSchedule.Config(
+                Duration.ofSeconds(30), Duration.ofMinutes(3), Duration.ofMinutes(15), 0.2));
+  }
+
+  private static ProbeSnapshot up(CardState... cards) {
+    return new ProbeSnapshot(KONNEKTOR, 1, true, List.of(cards), NOW, NOW);
+  }
+
+  private static ProbeSnapshot down() {
+    return new ProbeSnapshot(KONNEKTOR, 1, false, List.of(), NOW, null);
+  }
+}
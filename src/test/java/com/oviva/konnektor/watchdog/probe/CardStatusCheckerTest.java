@@ -0,0 +1,192 @@
+package com.oviva.konnektor.watchdog.probe;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+class CardStatusCheckerTest {
+
+  private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+  @AfterEach
+  void afterEach() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void check_allVerified() {
+
+    var sut = new CardStatusChecker(executor, 2, Duration.ofSeconds(5), Duration.ofMinutes(10));
+
+    var cards = cards(5);
+
+    // when
+    var checked = sut.check(cards, h -> CardStatus.VERIFIED, Duration.ofSeconds(5));
+
+    // then
+    assertEquals(cards.stream().map(CardState::handle).toList(), handles(checked));
+    assertTrue(checked.stream().allMatch(c -> c.status() == CardStatus.VERIFIED));
+  }
+
+  @Test
+  void check_boundedParallelism() {
+
+    var sut = new CardStatusChecker(executor, 3, Duration.ofSeconds(5), Duration.ofMinutes(10));
+
+    var running = new AtomicInteger();
+    var maxRunning = new AtomicInteger();
+
+    // when
+    sut.check(
+        cards(20),
+        h -> {
+          maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+          sleep(Duration.ofMillis(20));
+          running.decrementAndGet();
+          return CardStatus.VERIFIED;
+        },
+        Duration.ofSeconds(5));
+
+    // then
+    assertTrue(maxRunning.get() <= 3, "at most 3 checks expected, got " + maxRunning.get());
+  }
+
+  @Test
+  void check_cardTimeout() {
+
+    var sut = new CardStatusChecker(executor, 4, Duration.ofMillis(50), Duration.ofMinutes(10));
+
+    var hang = new CountDownLatch(1);
+
+    // when
+    var checked =
+        sut.check(
+            cards(2),
+            h -> {
+              if (h.equals("h0")) {
+                await(hang);
+              }
+              return CardStatus.NOT_VERIFIED;
+            },
+            Duration.ofSeconds(5));
+
+    // then
+    assertEquals(CardStatus.UNKNOWN, checked.get(0).status());
+    assertEquals(CardStatus.NOT_VERIFIED, checked.get(1).status());
+  }
+
+  @Test
+  void check_cardTimeout_loggedOnce() {
+
+    var sut = new CardStatusChecker(executor, 4, Duration.ofMillis(50), Duration.ofMinutes(10));
+    var logger = (Logger) LoggerFactory.getLogger(CardStatusChecker.class);
+    var appender = new ListAppender<ILoggingEvent>();
+    appender.start();
+    logger.addAppender(appender);
+    var hang = new CountDownLatch(1);
+
+    try {
+      // when
+      for (int i = 0; i < 3; i++) {
+        sut.check(
+            cards(1),
+            h -> {
+              await(hang);
+              return CardStatus.VERIFIED;
+            },
+            Duration.ofSeconds(5));
+      }
+
+      // then, the repetitions are only counted
+      var timedOut =
+          appender.list.stream()
+              .filter(e -> e.getFormattedMessage().contains("timed out"))
+              .toList();
+      assertEquals(1, timedOut.size(), timedOut.toString());
+    } finally {
+      logger.detachAppender(appender);
+      hang.countDown();
+    }
+  }
+
+  @Test
+  void check_overallBudget() {
+
+    var sut = new CardStatusChecker(executor, 1, Duration.ofSeconds(5), Duration.ofMinutes(10));
+
+    // when
+    var start = System.nanoTime();
+    var checked =
+        sut.check(
+            cards(10),
+            h -> {
+              sleep(Duration.ofMillis(50));
+              return CardStatus.VERIFIED;
+            },
+            Duration.ofMillis(120));
+    var elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+    // then
+    assertTrue(elapsed.compareTo(Duration.ofSeconds(1)) < 0, "took " + elapsed);
+    assertEquals(CardStatus.VERIFIED, checked.get(0).status());
+    assertEquals(CardStatus.UNKNOWN, checked.get(9).status());
+  }
+
+  @Test
+  void check_failure() {
+
+    var sut = new CardStatusChecker(executor, 1, Duration.ofSeconds(5), Duration.ofMinutes(10));
+
+    // when
+    var checked =
+        sut.check(
+            cards(1),
+            h -> {
+              throw new IllegalStateException("no such card");
+            },
+            Duration.ofSeconds(5));
+
+    // then
+    assertEquals(CardStatus.UNKNOWN, checked.get(0).status());
+  }
+
+  private static List<CardState> cards(int n) {
+    return IntStream.range(0, n)
+        .mapToObj(i -> new CardState("h" + i, "holder " + i, "t" + i, CardStatus.NOT_VERIFIED))
+        .toList();
+  }
+
+  private static List<String> handles(List<CardState> cards) {
+    return cards.stream().map(CardState::handle).toList();
+  }
+
+  private static void sleep(Duration d) {
+    try {
+      Thread.sleep(d);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,104 @@
+package com.oviva.konnektor.watchdog.probe;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CircuitBreakerTest {
+
+  private static final String KONNEKTOR = "https://10.0.0.1:443";
+  private static final Instant NOW = Instant.parse("2024-08-09T14:13:33Z");
+
+  private final Clock clock = mock(Clock.class);
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+  private CircuitBreaker sut;
+
+  @BeforeEach
+  void beforeEach() {
+    when(clock.instant()).thenReturn(NOW);
+    sut = new CircuitBreaker(KONNEKTOR, 2, Duration.ofMinutes(5), clock, registry);
+  }
+
+  @Test
+  void opensAfterThreshold() {
+
+    fail(2);
+
+    assertEquals(CircuitBreaker.State.OPEN, sut.state());
+    assertFalse(sut.tryAcquire());
+    assertEquals(2.0, registry.get("konnektor_circuit_state").gauge().value());
+  }
+
+  @Test
+  void successResetsFailures() {
+
+    fail(1);
+    assertTrue(sut.tryAcquire());
+    sut.onSuccess();
+    fail(1);
+
+    assertEquals(CircuitBreaker.State.CLOSED, sut.state());
+  }
+
+  @Test
+  void halfOpenAfterDuration_singleTrial() {
+
+    fail(2);
+
+    // when
+    when(clock.instant()).thenReturn(NOW.plus(Duration.ofMinutes(5)));
+
+    // then
+    assertTrue(sut.tryAcquire());
+    assertEquals(CircuitBreaker.State.HALF_OPEN, sut.state());
+    assertFalse(sut.tryAcquire());
+  }
+
+  @Test
+  void halfOpen_successCloses() {
+
+    fail(2);
+    when(clock.instant()).thenReturn(NOW.plus(Duration.ofMinutes(5)));
+    sut.tryAcquire();
+
+    // when
+    sut.onSuccess();
+
+    // then
+    assertEquals(CircuitBreaker.State.CLOSED, sut.state());
+    assertEquals(
+        1, registry.get("konnektor_circuit_transitions").tag("to", "closed").counter().count());
+  }
+
+  @Test
+  void halfOpen_failureReopens() {
+
+    fail(2);
+    when(clock.instant()).thenReturn(NOW.plus(Duration.ofMinutes(5)));
+    sut.tryAcquire();
+
+    // when
+    sut.onFailure();
+
+    // then
+    assertEquals(CircuitBreaker.State.OPEN, sut.state());
+    assertFalse(sut.tryAcquire());
+    assertEquals(
+        2, registry.get("konnektor_circuit_transitions").tag("to", "open").counter().count());
+  }
+
+  private void fail(int times) {
+    for (int i = 0; i < times; i++) {
+      assertTrue(sut.tryAcquire());
+      sut.onFailure();
+    }
+  }
+}
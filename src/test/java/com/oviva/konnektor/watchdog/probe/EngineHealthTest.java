@@ -0,0 +1,185 @@
+package com.oviva.konnektor.watchdog.probe;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class EngineHealthTest {
+
+  private static final String KONNEKTOR_A = "https://10.0.0.1:443";
+  private static final String KONNEKTOR_B = "https://10.0.0.2:443";
+  private static final Instant NOW = Instant.parse("2024-08-09T14:13:33Z");
+
+  private final Clock clock = mock(Clock.class);
+  private final AtomicBoolean failB = new AtomicBoolean();
+  private ProbeEngine engine;
+
+  @BeforeEach
+  void setUp() {
+    when(clock.instant()).thenReturn(NOW);
+    engine =
+        new ProbeEngine(
+            mock(ScheduledExecutorService.class),
+            mock(ExecutorService.class),
+            1,
+            new AdaptiveSchedule.Config(
+                Duration.ofMinutes(3), Duration.ofSeconds(30), Duration.ofMinutes(15), 0.2),
+            Duration.ofMinutes(10),
+            clock);
+    engine.addTarget(KONNEKTOR_A, List::of);
+    engine.addTarget(
+        KONNEKTOR_B,
+        () -> {
+          if (failB.get()) {
+            throw new IllegalStateException("konnektor down");
+          }
+          return List.of();
+        });
+  }
+
+  @Test
+  void readiness_pendingUntilAllProbed() {
+
+    var sut = newHealth(0.0);
+    engine.start();
+    engine.probeOnce(KONNEKTOR_A);
+
+    // when
+    var readiness = sut.readiness();
+
+    // then
+    assertFalse(readiness.up());
+    assertEquals(1, readiness.ready());
+    assertEquals("pending", readiness.konnektors().get(1).status());
+
+    engine.probeOnce(KONNEKTOR_B);
+    assertTrue(sut.readiness().up());
+  }
+
+  @Test
+  void readiness_minRatio() {
+
+    var sut = newHealth(1.0);
+    engine.start();
+    engine.probeOnce(KONNEKTOR_A);
+    failB.set(true);
+    engine.probeOnce(KONNEKTOR_B);
+
+    // when
+    var readiness = sut.readiness();
+
+    // then
+    assertFalse(readiness.up());
+    assertEquals(1, readiness.ready());
+    assertEquals(2, readiness.total());
+    var b = readiness.konnektors().get(1);
+    assertEquals(KONNEKTOR_B, b.konnektor());
+    assertEquals("down", b.status());
+    assertFalse(b.ready());
+
+    assertTrue(newHealth(0.5).readiness().up());
+  }
+
+  @Test
+  void readiness_lastSuccessTooOld() {
+
+    var sut = newHealth(1.0);
+    engine.start();
+    engine.probeOnce(KONNEKTOR_A);
+    engine.probeOnce(KONNEKTOR_B);
+
+    // when
+    when(clock.instant()).thenReturn(NOW.plus(Duration.ofMinutes(31)));
+    var readiness = sut.readiness();
+
+    // then
+    assertFalse(readiness.up());
+    assertEquals(0, readiness.ready());
+    assertEquals(31 * 60.0, readiness.konnektors().get(0).ageSeconds());
+  }
+
+  @Test
+  void readiness_beforeStart() {
+
+    var sut = newHealth(0.0);
+
+    var readiness = sut.readiness();
+    assertFalse(readiness.up());
+    assertEquals(0, readiness.total());
+  }
+
+  @Test
+  void liveness_beforeStart() {
+
+    var sut = newHealth(0.0);
+
+    assertTrue(sut.liveness().up());
+  }
+
+  @Test
+  void liveness_heartbeatMissing() {
+
+    var sut = newHealth(0.0);
+    engine.start();
+
+    // when
+    when(clock.instant()).thenReturn(NOW.plus(Duration.ofMinutes(2)));
+    var liveness = sut.liveness();
+
+    // then
+    assertFalse(liveness.up());
+    assertEquals(120.0, liveness.heartbeatAgeSeconds());
+  }
+
+  @Test
+  void liveness_stalledKonnektor() {
+
+    var sut = newHealth(0.0);
+    engine.start();
+    var later = NOW.plus(Duration.ofMinutes(25));
+    when(clock.instant()).thenReturn(later);
+    engine.probeOnce(KONNEKTOR_A);
+
+    // when
+    var liveness = sut.liveness();
+
+    // then
+    assertFalse(liveness.up());
+    assertEquals(List.of(KONNEKTOR_B), liveness.stalled());
+  }
+
+  @Test
+  void updateConfig_longerStallTimeout() {
+
+    var sut = newHealth(0.0);
+    engine.start();
+    var later = NOW.plus(Duration.ofMinutes(25));
+    when(clock.instant()).thenReturn(later);
+    engine.probeOnce(KONNEKTOR_A);
+
+    // when
+    sut.updateConfig(
+        new EngineHealth.Config(
+            Duration.ofMinutes(1), Duration.ofMinutes(30), Duration.ofMinutes(60), 0.0));
+
+    // then
+    assertEquals(List.of(), sut.liveness().stalled());
+  }
+
+  private EngineHealth newHealth(double readyMinRatio) {
+    return new EngineHealth(
+        engine,
+        new EngineHealth.Config(
+            Duration.ofMinutes(1), Duration.ofMinutes(20), Duration.ofMinutes(30), readyMinRatio),
+        clock);
+  }
+}
@@ -0,0 +1,407 @@
+package com.oviva.konnektor.watchdog.probe;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+
+class ProbeEngineTest {
+
+  private static final String KONNEKTOR = "https://10.0.0.1:443";
+  private static final Instant NOW = Instant.parse("2024-08-09T14:13:33Z");
+
+  private final Clock clock = Clock.fixed(NOW, ZoneOffset.UTC);
+
+  @Test
+  void snapshot_initial() {
+
+    var sut = newEngine(List::of);
+
+    var snapshot = sut.snapshot(KONNEKTOR);
+
+    assertEquals(0, snapshot.version());
+    assertFalse(snapshot.up());
+    assertNull(snapshot.lastSuccess());
+  }
+
+  @Test
+  void probeOnce_publishesCards() {
+
+    var card = new CardState("h1", "Dr. Who", "1-2-3", CardStatus.VERIFIED);
+    var sut = newEngine(() -> List.of(card));
+
+    var published = new AtomicReference<ProbeSnapshot>();
+    sut.addListener(published::set);
+
+    // when
+    sut.probeOnce(KONNEKTOR);
+
+    // then
+    var snapshot = sut.snapshot(KONNEKTOR);
+    assertEquals(1, snapshot.version());
+    assertTrue(snapshot.up());
+    assertEquals(List.of(card), snapshot.cards());
+    assertEquals(NOW, snapshot.lastSuccess());
+    assertSame(snapshot, published.get());
+  }
+
+  @Test
+  void restore_staleUntilProbed() {
+
+    var card = new CardState("h1", "Dr. Who", "1-2-3", CardStatus.VERIFIED);
+    var sut = newEngine(() -> List.of(card));
+    var saved =
+        new ProbeSnapshot(
+            KONNEKTOR, 7, true, List.of(card), NOW.minusSeconds(60), NOW.minusSeconds(60));
+
+    // when
+    var restored = sut.restore(saved);
+
+    // then
+    assertTrue(restored);
+    var snapshot = sut.snapshot(KONNEKTOR);
+    assertTrue(snapshot.stale());
+    assertEquals(List.of(card), snapshot.cards());
+
+    sut.probeOnce(KONNEKTOR);
+    snapshot = sut.snapshot(KONNEKTOR);
+    assertFalse(snapshot.stale());
+    assertEquals(8, snapshot.version());
+  }
+
+  @Test
+  void restore_unknownKonnektor() {
+
+    var sut = newEngine(List::of);
+
+    // when
+    var restored = sut.restore(ProbeSnapshot.initial("https://10.0.0.9:443"));
+
+    // then
+    assertFalse(restored);
+  }
+
+  @Test
+  void probeOnce_failureKeepsLastSuccess() {
+
+    var fail = new AtomicReference<RuntimeException>();
+    var sut =
+        newEngine(
+            () -> {
+              if (fail.get() != null) {
+                throw fail.get();
+              }
+              return List.of(new CardState("h1", "Dr. Who", "1-2-3", CardStatus.VERIFIED));
+            });
+    sut.probeOnce(KONNEKTOR);
+
+    // when
+    fail.set(new IllegalStateException("konnektor down"));
+    sut.probeOnce(KONNEKTOR);
+
+    // then
+    var snapshot = sut.snapshot(KONNEKTOR);
+    assertEquals(2, snapshot.version());
+    assertFalse(snapshot.up());
+    assertTrue(snapshot.cards().isEmpty());
+    assertEquals(NOW, snapshot.lastSuccess());
+  }
+
+  @Test
+  void addTarget_duplicate() {
+
+    var sut = newEngine(List::of);
+
+    assertThrows(IllegalArgumentException.class, () -> sut.addTarget(KONNEKTOR, List::of));
+  }
+
+  @Test
+  void snapshots_allTargets() {
+
+    var sut = newEngine(List::of);
+    sut.addTarget("https://10.0.0.2:443", List::of);
+
+    var konnektors = sut.snapshots().stream().map(ProbeSnapshot::konnektor).sorted().toList();
+
+    assertEquals(List.of(KONNEKTOR, "https://10.0.0.2:443"), konnektors);
+  }
+
+  @Test
+  void probeNow_probesOutOfSchedule() throws Exception {
+
+    var scheduler = Executors.newSingleThreadScheduledExecutor();
+    var executor = Executors.newSingleThreadExecutor();
+    try {
+      var sut = newEngine(List::of, scheduler, executor);
+
+      // when
+      sut.probeNow(KONNEKTOR);
+
+      // then
+      awaitVersion(sut, 1);
+    } finally {
+      scheduler.shutdownNow();
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void probeNow_whileProbing_probesAgain() throws Exception {
+
+    var scheduler = Executors.newSingleThreadScheduledExecutor();
+    var executor = Executors.newSingleThreadExecutor();
+    var started = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    try {
+      var sut =
+          newEngine(
+              () -> {
+                started.countDown();
+                try {
+                  release.await();
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+                return List.of();
+              },
+              scheduler,
+              executor);
+      sut.probeNow(KONNEKTOR);
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+
+      // when
+      sut.probeNow(KONNEKTOR);
+      release.countDown();
+
+      // then
+      awaitVersion(sut, 2);
+    } finally {
+      scheduler.shutdownNow();
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void probeNow_unknownKonnektor() {
+
+    var sut = newEngine(List::of);
+
+    assertThrows(IllegalArgumentException.class, () -> sut.probeNow("https://10.0.0.9:443"));
+  }
+
+  @Test
+  void replaceTarget_keepsSnapshot() {
+
+    var sut =
+        newEngine(() -> List.of(new CardState("h1", "Dr. Who", "1-2-3", CardStatus.VERIFIED)));
+    sut.probeOnce(KONNEKTOR);
+    var before = sut.snapshot(KONNEKTOR);
+
+    // when
+    sut.replaceTarget(KONNEKTOR, List::of);
+
+    // then
+    assertSame(before, sut.snapshot(KONNEKTOR));
+    sut.probeOnce(KONNEKTOR);
+    assertEquals(2, sut.snapshot(KONNEKTOR).version());
+    assertEquals(List.of(), sut.snapshot(KONNEKTOR).cards());
+  }
+
+  @Test
+  void removeTarget_discardsRunningProbe() throws Exception {
+
+    var scheduler = Executors.newSingleThreadScheduledExecutor();
+    var executor = Executors.newSingleThreadExecutor();
+    var started = new CountDownLatch(1);
+    var release = new CountDownLatch(1);
+    try {
+      var sut =
+          newEngine(
+              () -> {
+                started.countDown();
+                try {
+                  release.await();
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
+                return List.of();
+              },
+              scheduler,
+              executor);
+      var published = new CountDownLatch(1);
+      sut.addListener(s -> published.countDown());
+      sut.probeNow(KONNEKTOR);
+      assertTrue(started.await(5, TimeUnit.SECONDS));
+
+      // when
+      var idle = new CountDownLatch(1);
+      assertTrue(sut.removeTarget(KONNEKTOR, idle::countDown));
+      assertEquals(1, idle.getCount(), "probe still running");
+      release.countDown();
+
+      // then
+      assertTrue(idle.await(5, TimeUnit.SECONDS));
+      assertEquals(1, published.getCount());
+      assertTrue(sut.snapshots().isEmpty());
+      assertFalse(sut.removeTarget(KONNEKTOR));
+    } finally {
+      scheduler.shutdownNow();
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void updateSchedule_racingProbe_leavesOnePending() {
+
+    var scheduler = mock(ScheduledExecutorService.class);
+    var executor = mock(ExecutorService.class);
+    doAnswer(
+            inv -> {
+              inv.<Runnable>getArgument(0).run();
+              return null;
+            })
+        .when(executor)
+        .execute(any());
+    var sut = newEngine(List::of, scheduler, executor);
+
+    var scheduled = new ArrayList<ScheduledFuture<?>>();
+    var race = new AtomicBoolean();
+    when(scheduler.schedule(any(Runnable.class), anyLong(), any()))
+        .thenAnswer(
+            inv -> {
+              if (race.getAndSet(false)) {
+                // a probe finishes and schedules its successor meanwhile
+                sut.probeNow(KONNEKTOR);
+              }
+              var future = mock(ScheduledFuture.class);
+              when(future.getDelay(TimeUnit.MILLISECONDS))
+                  .thenReturn(Duration.ofHours(1).toMillis());
+              when(future.cancel(false)).thenReturn(true);
+              scheduled.add(future);
+              return future;
+            });
+    sut.start();
+
+    // when
+    race.set(true);
+    sut.updateSchedule(
+        new AdaptiveSchedule.Config(
+            Duration.ofMinutes(1), Duration.ofSeconds(30), Duration.ofMinutes(15), 0.2));
+
+    // then, the initial one and the probe's are cancelled, the schedule's stays
+    assertEquals(3, scheduled.size());
+    verify(scheduled.get(0)).cancel(false);
+    verify(scheduled.get(1)).cancel(false);
+    verify(scheduled.get(2), never()).cancel(false);
+  }
+
+  @Test
+  void removeTarget_idle_runsRightAway() {
+
+    var sut = newEngine(List::of);
+    var idle = new AtomicBoolean();
+
+    // when
+    assertTrue(sut.removeTarget(KONNEKTOR, () -> idle.set(true)));
+
+    // then
+    assertTrue(idle.get());
+  }
+
+  @Test
+  void addTarget_afterStart_probesRightAway() throws Exception {
+
+    var scheduler = Executors.newSingleThreadScheduledExecutor();
+    var executor = Executors.newSingleThreadExecutor();
+    try {
+      var sut = newEngine(List::of, scheduler, executor);
+      sut.removeTarget(KONNEKTOR);
+      sut.start();
+
+      // when
+      sut.addTarget(KONNEKTOR, List::of);
+
+      // then
+      awaitVersion(sut, 1);
+    } finally {
+      scheduler.shutdownNow();
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void updateSchedule_movesLaterProbes() throws Exception {
+
+    var scheduler = Executors.newSingleThreadScheduledExecutor();
+    var executor = Executors.newSingleThreadExecutor();
+    try {
+      var sut = newEngine(List::of, scheduler, executor);
+      sut.start();
+      awaitVersion(sut, 1);
+
+      // when
+      sut.updateSchedule(
+          new AdaptiveSchedule.Config(
+              Duration.ofMillis(50), Duration.ofMillis(10), Duration.ofMillis(100), 0.2));
+
+      // then
+      awaitVersion(sut, 3);
+    } finally {
+      scheduler.shutdownNow();
+      executor.shutdownNow();
+    }
+  }
+
+  private static void awaitVersion(ProbeEngine engine, long version) throws InterruptedException {
+    var reached = new CountDownLatch(1);
+    engine.addListener(
+        s -> {
+          if (s.konnektor().equals(KONNEKTOR) && s.version() >= version) {
+            reached.countDown();
+          }
+        });
+    if (engine.snapshot(KONNEKTOR).version() >= version) {
+      return;
+    }
+    assertTrue(reached.await(5, TimeUnit.SECONDS), "timed out waiting for version " + version);
+  }
+
+  private ProbeEngine newEngine(Probe probe) {
+    return newEngine(probe, mock(ScheduledExecutorService.class), mock(ExecutorService.class));
+  }
+
+  private ProbeEngine newEngine(
+      Probe probe, ScheduledExecutorService scheduler, ExecutorService executor) {
+    var engine =
+        new ProbeEngine(
+            scheduler,
+            executor,
+            1,
+            new AdaptiveSchedule.Config(
+                Duration.ofMinutes(3), Duration.ofSeconds(30), Duration.ofMinutes(15), 0.2),
+            Duration.ofMinutes(10),
+            clock);
+    engine.addTarget(KONNEKTOR, probe);
+    return engine;
+  }
+}
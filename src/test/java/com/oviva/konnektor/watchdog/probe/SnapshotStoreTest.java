@@ -0,0 +1,66 @@
+package com.oviva.konnektor.watchdog.probe;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SnapshotStoreTest {
+
+  private static final Instant NOW = Instant.parse("2024-08-09T14:13:33Z");
+
+  @TempDir Path dir;
+
+  @Test
+  void save_load() {
+
+    var sut = new SnapshotStore(dir.resolve("state.bin"));
+    var up =
+        new ProbeSnapshot(
+            "https://10.0.0.1:443",
+            3,
+            true,
+            List.of(
+                new CardState("h1", "Dr. Who", "1-2-3", CardStatus.VERIFIED),
+                new CardState("h2", null, null, CardStatus.UNKNOWN)),
+            NOW,
+            NOW);
+    var down = new ProbeSnapshot("https://10.0.0.2:443", 5, false, List.of(), NOW, null);
+
+    // when
+    sut.save(List.of(up, down, ProbeSnapshot.initial("https://10.0.0.3:443")));
+
+    // then
+    assertEquals(List.of(up, down), sut.load());
+  }
+
+  @Test
+  void load_missing() {
+
+    var sut = new SnapshotStore(dir.resolve("state.bin"));
+
+    assertEquals(List.of(), sut.load());
+  }
+
+  @Test
+  void load_corrupt() throws IOException {
+
+    var path = dir.resolve("state.bin");
+    var sut = new SnapshotStore(path);
+    sut.save(List.of(new ProbeSnapshot("https://10.0.0.1:443", 1, true, List.of(), NOW, NOW)));
+    var bytes = Files.readAllBytes(path);
+    Files.write(path, Arrays.copyOf(bytes, bytes.length - 4));
+
+    // when
+    var loaded = sut.load();
+
+    // then
+    assertEquals(List.of(), loaded);
+  }
+}
@@ -0,0 +1,124 @@
+package com.oviva.konnektor.watchdog.stub;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.Signature;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.DERBitString;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.isismtt.ISISMTTObjectIdentifiers;
+import org.bouncycastle.asn1.isismtt.x509.AdmissionSyntax;
+import org.bouncycastle.asn1.isismtt.x509.Admissions;
+import org.bouncycastle.asn1.isismtt.x509.ProfessionInfo;
+import org.bouncycastle.asn1.x500.DirectoryString;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.asn1.x509.Time;
+import org.bouncycastle.asn1.x509.V3TBSCertificateGenerator;
+import org.bouncycastle.asn1.x9.X9ObjectIdentifiers;
+
+/** Self-signed EC certificates for the stub, only bcprov is on the classpath, no bcpkix. */
+public final class StubCertificates {
+
+  // gematik profession OID of a medical practice, the exact value does not matter to the watchdog
+  private static final ASN1ObjectIdentifier PROFESSION_OID =
+      new ASN1ObjectIdentifier("1.2.276.0.76.4.50");
+
+  private static final AtomicLong serials = new AtomicLong(System.currentTimeMillis());
+
+  private StubCertificates() {}
+
+  public static KeyPair keyPair() {
+    try {
+      var generator = KeyPairGenerator.getInstance("EC");
+      generator.initialize(new ECGenParameterSpec("secp256r1"));
+      return generator.generateKeyPair();
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * @param telematikId if not {@code null} written into the admission extension, as on a SMC-B
+   */
+  public static X509Certificate selfSigned(KeyPair keyPair, String commonName, String telematikId) {
+    try {
+      var signatureAlgorithm = new AlgorithmIdentifier(X9ObjectIdentifiers.ecdsa_with_SHA256);
+      var name = new X500Name("CN=" + commonName);
+      var now = Instant.now();
+
+      var tbs = new V3TBSCertificateGenerator();
+      tbs.setSerialNumber(new ASN1Integer(BigInteger.valueOf(serials.incrementAndGet())));
+      tbs.setSignature(signatureAlgorithm);
+      tbs.setIssuer(name);
+      tbs.setSubject(name);
+      tbs.setStartDate(new Time(Date.from(now.minus(Duration.ofDays(1)))));
+      tbs.setEndDate(new Time(Date.from(now.plus(Duration.ofDays(365)))));
+      tbs.setSubjectPublicKeyInfo(
+          SubjectPublicKeyInfo.getInstance(keyPair.getPublic().getEncoded()));
+      if (telematikId != null) {
+        tbs.setExtensions(new Extensions(admission(telematikId)));
+      }
+      var tbsCertificate = tbs.generateTBSCertificate();
+
+      var signature = Signature.getInstance("SHA256withECDSA");
+      signature.initSign(keyPair.getPrivate());
+      signature.update(tbsCertificate.getEncoded());
+
+      var certificate = new ASN1EncodableVector();
+      certificate.add(tbsCertificate);
+      certificate.add(signatureAlgorithm);
+      certificate.add(new DERBitString(signature.sign()));
+
+      return (X509Certificate)
+          CertificateFactory.getInstance("X.509")
+              .generateCertificate(
+                  new ByteArrayInputStream(new DERSequence(certificate).getEncoded()));
+    } catch (GeneralSecurityException | IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public static KeyStore keyStore(KeyPair keyPair, X509Certificate certificate, String password) {
+    try {
+      var ks = KeyStore.getInstance("PKCS12");
+      ks.load(null, null);
+      ks.setKeyEntry(
+          "key", keyPair.getPrivate(), password.toCharArray(), new X509Certificate[] {certificate});
+      return ks;
+    } catch (GeneralSecurityException | IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static Extension admission(String telematikId) throws IOException {
+    var professionInfo =
+        new ProfessionInfo(
+            null,
+            new DirectoryString[] {new DirectoryString("Betriebsstätte Arzt")},
+            new ASN1ObjectIdentifier[] {PROFESSION_OID},
+            telematikId,
+            null);
+    var admissions = new Admissions(null, null, new ProfessionInfo[] {professionInfo});
+    var syntax = new AdmissionSyntax(null, new DERSequence(admissions));
+    return new Extension(
+        ISISMTTObjectIdentifiers.id_isismtt_at_admission, false, syntax.getEncoded());
+  }
+}
@@ -0,0 +1,111 @@
+package com.oviva.konnektor.watchdog.stub;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.undertow.Undertow;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A stand-in for the OTLP/HTTP metrics endpoint of an OpenTelemetry collector. Every request it
+ * accepted is kept decoded, answers can be scripted by status code.
+ */
+public final class StubCollector implements AutoCloseable {
+
+  public static final String PATH = "/v1/metrics";
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final List<JsonNode> accepted = new CopyOnWriteArrayList<>();
+  private final ConcurrentLinkedQueue<Integer> statuses = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger requests = new AtomicInteger();
+  private volatile Duration latency = Duration.ZERO;
+
+  private final Undertow server;
+  private final int port;
+
+  private StubCollector() {
+    server =
+        Undertow.builder().addHttpListener(0, "127.0.0.1").setHandler(this::handleRequest).build();
+    server.start();
+    port = ((InetSocketAddress) server.getListenerInfo().get(0).getAddress()).getPort();
+  }
+
+  public static StubCollector start() {
+    return new StubCollector();
+  }
+
+  public URI uri() {
+    return URI.create("http://127.0.0.1:%d%s".formatted(port, PATH));
+  }
+
+  /** answers the next requests with these status codes, then with 200 again */
+  public StubCollector respond(int... statuses) {
+    for (var status : statuses) {
+      this.statuses.add(status);
+    }
+    return this;
+  }
+
+  public StubCollector latency(Duration latency) {
+    this.latency = latency;
+    return this;
+  }
+
+  /** the decoded {@code ExportMetricsServiceRequest}s answered with 200 */
+  public List<JsonNode> accepted() {
+    return List.copyOf(accepted);
+  }
+
+  public int requests() {
+    return requests.get();
+  }
+
+  private void handleRequest(HttpServerExchange exchange) throws Exception {
+    if (exchange.isInIoThread()) {
+      exchange.dispatch(this::handleRequest);
+      return;
+    }
+    requests.incrementAndGet();
+    exchange.startBlocking();
+    var body = exchange.getInputStream().readAllBytes();
+    Thread.sleep(latency.toMillis());
+
+    if (!PATH.equals(exchange.getRequestPath())
+        || !"gzip".equals(exchange.getRequestHeaders().getFirst(Headers.CONTENT_ENCODING))) {
+      exchange.setStatusCode(400);
+      return;
+    }
+    var status = statuses.poll();
+    if (status != null && status != 200) {
+      exchange.setStatusCode(status);
+      return;
+    }
+    accepted.add(decode(body));
+    exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "application/json");
+    exchange.getResponseSender().send("{}");
+  }
+
+  private JsonNode decode(byte[] body) {
+    try (var gzip = new GZIPInputStream(new ByteArrayInputStream(body))) {
+      return mapper.readTree(gzip);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void close() {
+    server.stop();
+  }
+}
@@ -0,0 +1,628 @@
+package com.oviva.konnektor.watchdog.stub;
+
+import io.undertow.Undertow;
+import io.undertow.server.HttpServerExchange;
+import io.undertow.util.Headers;
+import io.undertow.util.Methods;
+import jakarta.xml.bind.JAXBContext;
+import jakarta.xml.bind.JAXBException;
+import jakarta.xml.bind.Marshaller;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.EnumMap;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import javax.xml.datatype.DatatypeFactory;
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import org.w3c.dom.Element;
+import org.xml.sax.SAXException;
+import org.xnio.Options;
+import org.xnio.SslClientAuthMode;
+import telematik.ws.conn.cardservice.xsd.v8_1.CardInfoType;
+import telematik.ws.conn.cardservice.xsd.v8_1.Cards;
+import telematik.ws.conn.cardservice.xsd.v8_1.GetPinStatusResponse;
+import telematik.ws.conn.cardservice.xsd.v8_1.PinStatusEnum;
+import telematik.ws.conn.cardservicecommon.xsd.v2_0.CardTypeType;
+import telematik.ws.conn.certificateservice.xsd.v6_0.ReadCardCertificateResponse;
+import telematik.ws.conn.certificateservicecommon.xsd.v2_0.CertRefEnum;
+import telematik.ws.conn.certificateservicecommon.xsd.v2_0.X509DataInfoListType;
+import telematik.ws.conn.connectorcommon.xsd.v5_0.Status;
+import telematik.ws.conn.eventservice.xsd.v6_1.Event;
+import telematik.ws.conn.eventservice.xsd.v6_1.GetCardsResponse;
+import telematik.ws.conn.eventservice.xsd.v6_1.RenewSubscriptionsResponse;
+import telematik.ws.conn.eventservice.xsd.v6_1.SubscribeResponse;
+import telematik.ws.conn.eventservice.xsd.v6_1.SubscriptionRenewal;
+import telematik.ws.conn.eventservice.xsd.v6_1.UnsubscribeResponse;
+import telematik.ws.conn.servicedirectory.xsd.v3_1.ConnectorServices;
+import telematik.ws.conn.serviceinformation.xsd.v2_0.EndpointType;
+import telematik.ws.conn.serviceinformation.xsd.v2_0.ServiceType;
+import telematik.ws.conn.serviceinformation.xsd.v2_0.ServicesType;
+import telematik.ws.conn.serviceinformation.xsd.v2_0.VersionType;
+import telematik.ws.conn.serviceinformation.xsd.v2_0.VersionsType;
+
+/**
+ * An in-process Konnektor for integration and load tests. It speaks just enough of the real
+ * protocol for the watchdog: the service directory {@code /connector.sds} and the SOAP operations
+ * {@code GetCards}, {@code ReadCardCertificate} and {@code GetPinStatus}, all over mutual TLS.
+ * Subscriptions for events are accepted, tests {@link #emit(String, String) emit} events to all
+ * subscribers over CETP.
+ *
+ * <p>Tests script the inventory, PIN states, latency and faults per {@link Operation} while the
+ * stub is running. Every card gets a self-signed certificate carrying its telematik ID, the same
+ * certificate is returned for RSA and ECC requests.
+ */
+public final class StubKonnektor implements AutoCloseable {
+
+  public enum Operation {
+    SDS,
+    GET_CARDS,
+    READ_CARD_CERTIFICATE,
+    GET_PIN_STATUS,
+    SUBSCRIBE,
+    RENEW_SUBSCRIPTIONS,
+    UNSUBSCRIBE
+  }
+
+  public enum Fault {
+    NONE,
+    /** drops the connection without a response */
+    RESET,
+    /** answers with HTTP 500 and a SOAP fault */
+    SOAP_FAULT,
+    /** never answers, until the stub is closed */
+    HANG
+  }
+
+  public record Card(String handle, String holderName, String telematikId, PinStatusEnum pin) {}
+
+  private record Latency(Duration min, Duration max) {}
+
+  public static final String CLIENT_KEYSTORE_PASSWORD = "0000";
+
+  private static final String SOAP_NS = "http://schemas.xmlsoap.org/soap/envelope/";
+
+  private static final Map<String, Operation> SOAP_OPERATIONS =
+      Map.of(
+          "GetCards", Operation.GET_CARDS,
+          "ReadCardCertificate", Operation.READ_CARD_CERTIFICATE,
+          "GetPinStatus", Operation.GET_PIN_STATUS,
+          "Subscribe", Operation.SUBSCRIBE,
+          "RenewSubscriptions", Operation.RENEW_SUBSCRIPTIONS,
+          "Unsubscribe", Operation.UNSUBSCRIBE);
+
+  private static final Duration SUBSCRIPTION_DURATION = Duration.ofHours(1);
+
+  private final JAXBContext jaxb;
+  private final Path clientKeyStore;
+  // platform threads, the watchdog's virtual threads pin carriers while waiting on the stub
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final CountDownLatch closing = new CountDownLatch(1);
+  private final Undertow server;
+  private final int port;
+
+  // a client certificate stays trusted after it was rotated, as with a real Konnektor
+  private final List<X509Certificate> trustedClients = new CopyOnWriteArrayList<>();
+  private volatile X509Certificate lastClientCertificate;
+
+  private final Map<String, Card> cards = new ConcurrentHashMap<>();
+  private final Map<String, X509Certificate> certificates = new ConcurrentHashMap<>();
+  private final AtomicInteger generated = new AtomicInteger();
+  private final Map<Operation, Latency> latencies = new ConcurrentHashMap<>();
+  private final Map<Operation, Fault> faults = new ConcurrentHashMap<>();
+  private final Map<Operation, LongAdder> requests = new EnumMap<>(Operation.class);
+  // subscription ID to the URI events are sent to
+  private final Map<String, URI> subscriptions = new ConcurrentHashMap<>();
+
+  private StubKonnektor() throws JAXBException, IOException, GeneralSecurityException {
+    for (var op : Operation.values()) {
+      requests.put(op, new LongAdder());
+    }
+    jaxb =
+        JAXBContext.newInstance(
+            ConnectorServices.class,
+            GetCardsResponse.class,
+            GetPinStatusResponse.class,
+            ReadCardCertificateResponse.class,
+            SubscribeResponse.class,
+            RenewSubscriptionsResponse.class,
+            UnsubscribeResponse.class,
+            Event.class);
+
+    clientKeyStore = Files.createTempFile("stub-konnektor-client", ".p12");
+    rotateClientKeys();
+
+    server =
+        Undertow.builder()
+            .addHttpsListener(0, "127.0.0.1", sslContext(trustedClients))
+            .setSocketOption(Options.SSL_CLIENT_AUTH_MODE, SslClientAuthMode.REQUIRED)
+            .setHandler(this::handleRequest)
+            .build();
+    server.start();
+    port = ((InetSocketAddress) server.getListenerInfo().get(0).getAddress()).getPort();
+  }
+
+  public static StubKonnektor start() {
+    try {
+      return new StubKonnektor();
+    } catch (JAXBException | IOException | GeneralSecurityException e) {
+      throw new IllegalStateException("failed to start stub konnektor", e);
+    }
+  }
+
+  public URI uri() {
+    return URI.create("https://127.0.0.1:%d".formatted(port));
+  }
+
+  /** PKCS12 keystore with the client key the stub accepts, see {@link #CLIENT_KEYSTORE_PASSWORD} */
+  public Path clientKeyStore() {
+    return clientKeyStore;
+  }
+
+  /**
+   * writes a new client key to {@link #clientKeyStore()}, replacing the file in one step like a
+   * secret mount does
+   *
+   * @return the new certificate
+   */
+  public X509Certificate rotateClientKeys() {
+    var keys = StubCertificates.keyPair();
+    var certificate = StubCertificates.selfSigned(keys, "watchdog", null);
+    trustedClients.add(certificate);
+    try {
+      var next = Files.createTempFile(clientKeyStore.getParent(), "stub-konnektor-client", ".p12");
+      try (var out = Files.newOutputStream(next)) {
+        StubCertificates.keyStore(keys, certificate, CLIENT_KEYSTORE_PASSWORD)
+            .store(out, CLIENT_KEYSTORE_PASSWORD.toCharArray());
+      }
+      Files.move(
+          next,
+          clientKeyStore,
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException | GeneralSecurityException e) {
+      throw new IllegalStateException("failed to write client keystore", e);
+    }
+    return certificate;
+  }
+
+  /** the certificate the client presented on the last request */
+  public X509Certificate lastClientCertificate() {
+    return lastClientCertificate;
+  }
+
+  public StubKonnektor insert(Card card) {
+    cards.put(card.handle(), card);
+    return this;
+  }
+
+  /** inserts {@code count} SMC-B cards with verified PINs, e.g. to load-test a large fleet */
+  public StubKonnektor insertCards(int count) {
+    for (int i = 0; i < count; i++) {
+      var n = generated.incrementAndGet();
+      insert(
+          new Card(
+              "card-%d".formatted(n),
+              "Praxis %d".formatted(n),
+              "1-SMC-B-Testkarte-%d".formatted(n),
+              PinStatusEnum.VERIFIED));
+    }
+    return this;
+  }
+
+  public StubKonnektor remove(String handle) {
+    cards.remove(handle);
+    return this;
+  }
+
+  public StubKonnektor pinStatus(String handle, PinStatusEnum pin) {
+    cards.computeIfPresent(
+        handle, (h, c) -> new Card(c.handle(), c.holderName(), c.telematikId(), pin));
+    return this;
+  }
+
+  public StubKonnektor latency(Operation operation, Duration latency) {
+    return latency(operation, latency, latency);
+  }
+
+  /** every call of {@code operation} is delayed uniformly between {@code min} and {@code max} */
+  public StubKonnektor latency(Operation operation, Duration min, Duration max) {
+    latencies.put(operation, new Latency(min, max));
+    return this;
+  }
+
+  public StubKonnektor fault(Operation operation, Fault fault) {
+    faults.put(operation, fault);
+    return this;
+  }
+
+  public long requests(Operation operation) {
+    return requests.get(operation).sum();
+  }
+
+  /** sends an event about an SMC-B to all subscribers, e.g. {@code CARD/INSERTED} */
+  public void emit(String topic, String cardHandle) {
+    for (var subscription : Map.copyOf(subscriptions).entrySet()) {
+      var message = new Event.Message();
+      message
+          .getParameter()
+          .add(new Event.Message.Parameter().withKey("CardHandle").withValue(cardHandle));
+      message
+          .getParameter()
+          .add(new Event.Message.Parameter().withKey("CardType").withValue("SMC-B"));
+      var event = new Event();
+      event.setTopic(topic);
+      event.setSubscriptionID(subscription.getKey());
+      event.setMessage(message);
+
+      var to = subscription.getValue();
+      try (var socket = new Socket(to.getHost(), to.getPort());
+          var out = new DataOutputStream(socket.getOutputStream())) {
+        var payload = marshal(event).getBytes(StandardCharsets.UTF_8);
+        out.writeBytes("CETP");
+        out.writeInt(payload.length);
+        out.write(payload);
+      } catch (IOException | JAXBException e) {
+        throw new IllegalStateException("failed to emit event to %s".formatted(to), e);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    closing.countDown();
+    server.stop();
+    executor.shutdownNow();
+    try {
+      Files.deleteIfExists(clientKeyStore);
+    } catch (IOException e) {
+      // a leftover temp file is fine
+    }
+  }
+
+  private void handleRequest(HttpServerExchange exchange) throws Exception {
+    if (exchange.isInIoThread()) {
+      exchange.dispatch(executor, this::handleRequest);
+      return;
+    }
+    exchange.startBlocking();
+    var peer = exchange.getConnection().getSslSessionInfo().getPeerCertificates();
+    lastClientCertificate = (X509Certificate) peer[0];
+
+    Operation operation;
+    Element request = null;
+    if (Methods.GET.equals(exchange.getRequestMethod())
+        && "/connector.sds".equals(exchange.getRequestPath())) {
+      operation = Operation.SDS;
+    } else if (Methods.POST.equals(exchange.getRequestMethod())) {
+      request = soapRequest(exchange);
+      operation = request == null ? null : SOAP_OPERATIONS.get(request.getLocalName());
+    } else {
+      operation = null;
+    }
+
+    if (operation == null) {
+      exchange.setStatusCode(404);
+      exchange.endExchange();
+      return;
+    }
+
+    requests.get(operation).increment();
+    delay(operation);
+
+    switch (faults.getOrDefault(operation, Fault.NONE)) {
+      case RESET -> {
+        exchange.getConnection().close();
+        return;
+      }
+      case HANG -> {
+        closing.await();
+        exchange.getConnection().close();
+        return;
+      }
+      case SOAP_FAULT -> {
+        soapFault(exchange, "stub fault for %s".formatted(operation));
+        return;
+      }
+      case NONE -> {}
+    }
+
+    if (operation == Operation.SDS) {
+      exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "text/xml; charset=utf-8");
+      exchange.getResponseSender().send(marshal(serviceDirectory()), StandardCharsets.UTF_8);
+      return;
+    }
+
+    var response =
+        switch (operation) {
+          case GET_CARDS -> getCards();
+          case READ_CARD_CERTIFICATE -> readCardCertificate(cardHandle(request));
+          case GET_PIN_STATUS -> getPinStatus(cardHandle(request));
+          case SUBSCRIBE -> subscribe(request);
+          case RENEW_SUBSCRIPTIONS -> renewSubscriptions(request);
+          case UNSUBSCRIBE -> unsubscribe(request);
+          default -> throw new IllegalStateException("unexpected operation " + operation);
+        };
+    if (response == null) {
+      soapFault(exchange, "unknown card handle %s".formatted(cardHandle(request)));
+      return;
+    }
+    soapResponse(exchange, 200, marshal(response));
+  }
+
+  private ConnectorServices serviceDirectory() {
+    var services = new ServicesType();
+    services.getService().add(service("EventService", "7.2.0"));
+    services.getService().add(service("CardService", "8.1.2"));
+    services.getService().add(service("CertificateService", "6.0.1"));
+    services.getService().add(service("AuthSignatureService", "7.4.1"));
+
+    var directory = new ConnectorServices();
+    directory.setTLSMandatory(true);
+    directory.setClientAutMandatory(true);
+    directory.setServiceInformation(services);
+    return directory;
+  }
+
+  private ServiceType service(String name, String version) {
+    var endpoint = new EndpointType();
+    endpoint.setLocation("%s/ws/%s".formatted(uri(), name));
+
+    var v = new VersionType();
+    v.setVersion(version);
+    v.setEndpointTLS(endpoint);
+
+    var versions = new VersionsType();
+    versions.getVersion().add(v);
+
+    var service = new ServiceType();
+    service.setName(name);
+    service.setVersions(versions);
+    return service;
+  }
+
+  private GetCardsResponse getCards() {
+    var list = new Cards();
+    var slot = 0;
+    for (var card : List.copyOf(cards.values())) {
+      var info = new CardInfoType();
+      info.setCardHandle(card.handle());
+      info.setCardType(CardTypeType.SMC_B);
+      info.setCardHolderName(card.holderName());
+      info.setCtId("CT1");
+      info.setSlotId(BigInteger.valueOf(++slot));
+      info.setIccsn("80276%015d".formatted(Math.abs((long) card.handle().hashCode())));
+      list.getCard().add(info);
+    }
+
+    var response = new GetCardsResponse();
+    response.setStatus(ok());
+    response.setCards(list);
+    return response;
+  }
+
+  private ReadCardCertificateResponse readCardCertificate(String handle) throws Exception {
+    var card = cards.get(handle);
+    if (card == null) {
+      return null;
+    }
+    var certificate =
+        certificates.computeIfAbsent(
+            handle,
+            h ->
+                StubCertificates.selfSigned(
+                    StubCertificates.keyPair(), card.holderName(), card.telematikId()));
+
+    var data = new X509DataInfoListType.X509DataInfo.X509Data();
+    data.setX509Certificate(certificate.getEncoded());
+    var info = new X509DataInfoListType.X509DataInfo();
+    info.setCertRef(CertRefEnum.C_AUT);
+    info.setX509Data(data);
+    var list = new X509DataInfoListType();
+    list.getX509DataInfo().add(info);
+
+    var response = new ReadCardCertificateResponse();
+    response.setStatus(ok());
+    response.setX509DataInfoList(list);
+    return response;
+  }
+
+  private GetPinStatusResponse getPinStatus(String handle) {
+    var card = cards.get(handle);
+    if (card == null) {
+      return null;
+    }
+    var response = new GetPinStatusResponse();
+    response.setStatus(ok());
+    response.setPinStatus(card.pin());
+    response.setLeftTries(BigInteger.valueOf(3));
+    return response;
+  }
+
+  private SubscribeResponse subscribe(Element request) {
+    var eventTo = text(request, "EventTo");
+    if (eventTo == null) {
+      return null;
+    }
+    var id = UUID.randomUUID().toString();
+    subscriptions.put(id, URI.create(eventTo));
+
+    var response = new SubscribeResponse();
+    response.setStatus(ok());
+    response.setSubscriptionID(id);
+    response.setTerminationTime(terminationTime());
+    return response;
+  }
+
+  private RenewSubscriptionsResponse renewSubscriptions(Element request) {
+    var renewals = new RenewSubscriptionsResponse.SubscribeRenewals();
+    var ids = request.getElementsByTagNameNS("*", "SubscriptionID");
+    for (int i = 0; i < ids.getLength(); i++) {
+      var id = ids.item(i).getTextContent().strip();
+      if (subscriptions.containsKey(id)) {
+        var renewal = new SubscriptionRenewal();
+        renewal.setSubscriptionID(id);
+        renewal.setTerminationTime(terminationTime());
+        renewals.getSubscriptionRenewal().add(renewal);
+      }
+    }
+    var response = new RenewSubscriptionsResponse();
+    response.setStatus(ok());
+    response.setSubscribeRenewals(renewals);
+    return response;
+  }
+
+  private UnsubscribeResponse unsubscribe(Element request) {
+    var id = text(request, "SubscriptionID");
+    if (id != null) {
+      subscriptions.remove(id);
+    }
+    var response = new UnsubscribeResponse();
+    response.setStatus(ok());
+    return response;
+  }
+
+  private static XMLGregorianCalendar terminationTime() {
+    var terminates = GregorianCalendar.from(ZonedDateTime.now().plus(SUBSCRIPTION_DURATION));
+    return DatatypeFactory.newDefaultInstance().newXMLGregorianCalendar(terminates);
+  }
+
+  private static Status ok() {
+    var status = new Status();
+    status.setResult("OK");
+    return status;
+  }
+
+  private void delay(Operation operation) throws InterruptedException {
+    var latency = latencies.get(operation);
+    if (latency == null) {
+      return;
+    }
+    var min = latency.min().toMillis();
+    var max = latency.max().toMillis();
+    Thread.sleep(min >= max ? min : ThreadLocalRandom.current().nextLong(min, max + 1));
+  }
+
+  private static Element soapRequest(HttpServerExchange exchange)
+      throws IOException, ParserConfigurationException {
+    var factory = DocumentBuilderFactory.newInstance();
+    factory.setNamespaceAware(true);
+    try {
+      var document = factory.newDocumentBuilder().parse(exchange.getInputStream());
+      var bodies = document.getElementsByTagNameNS(SOAP_NS, "Body");
+      if (bodies.getLength() == 0) {
+        return null;
+      }
+      for (var n = bodies.item(0).getFirstChild(); n != null; n = n.getNextSibling()) {
+        if (n instanceof Element e) {
+          return e;
+        }
+      }
+      return null;
+    } catch (SAXException e) {
+      return null;
+    }
+  }
+
+  private static String cardHandle(Element request) {
+    return text(request, "CardHandle");
+  }
+
+  private static String text(Element request, String localName) {
+    var elements = request.getElementsByTagNameNS("*", localName);
+    return elements.getLength() == 0 ? null : elements.item(0).getTextContent().strip();
+  }
+
+  private String marshal(Object jaxbElement) throws JAXBException {
+    var marshaller = jaxb.createMarshaller();
+    marshaller.setProperty(Marshaller.JAXB_FRAGMENT, true);
+    var out = new StringWriter();
+    marshaller.marshal(jaxbElement, out);
+    return out.toString();
+  }
+
+  private static void soapFault(HttpServerExchange exchange, String message) {
+    soapResponse(
+        exchange,
+        500,
+        """
+        <soap:Fault><faultcode>soap:Server</faultcode><faultstring>%s</faultstring></soap:Fault>"""
+            .formatted(message));
+  }
+
+  private static void soapResponse(HttpServerExchange exchange, int status, String body) {
+    exchange.setStatusCode(status);
+    exchange.getResponseHeaders().put(Headers.CONTENT_TYPE, "text/xml; charset=utf-8");
+    exchange
+        .getResponseSender()
+        .send(
+            """
+            <?xml version="1.0" encoding="UTF-8"?><soap:Envelope xmlns:soap="%s"><soap:Body>%s</soap:Body></soap:Envelope>"""
+                .formatted(SOAP_NS, body),
+            StandardCharsets.UTF_8);
+  }
+
+  private static SSLContext sslContext(List<X509Certificate> trustedClients)
+      throws GeneralSecurityException {
+    var keys = StubCertificates.keyPair();
+    var certificate = StubCertificates.selfSigned(keys, "127.0.0.1", null);
+
+    var keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+    keyManagers.init(StubCertificates.keyStore(keys, certificate, "stub"), "stub".toCharArray());
+
+    var trustManager =
+        new X509TrustManager() {
+          @Override
+          public void checkClientTrusted(X509Certificate[] chain, String authType)
+              throws CertificateException {
+            if (!trustedClients.contains(chain[0])) {
+              throw new CertificateException("client certificate not trusted");
+            }
+          }
+
+          @Override
+          public void checkServerTrusted(X509Certificate[] chain, String authType)
+              throws CertificateException {
+            throw new CertificateException("not a client");
+          }
+
+          @Override
+          public X509Certificate[] getAcceptedIssuers() {
+            return trustedClients.toArray(X509Certificate[]::new);
+          }
+        };
+
+    var context = SSLContext.getInstance("TLS");
+    context.init(keyManagers.getKeyManagers(), new TrustManager[] {trustManager}, null);
+    return context;
+  }
+}
@@ -0,0 +1,124 @@
+package com.oviva.konnektor.watchdog.stub;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A minimal forward proxy that only understands {@code CONNECT}, like the proxies in front of
+ * Konnektors in production. Every tunnel is piped on its own threads until either side closes.
+ */
+public final class StubProxy implements AutoCloseable {
+
+  private final ServerSocket socket;
+  // platform threads, the watchdog's virtual threads pin carriers while waiting on this proxy
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final LongAdder tunnels = new LongAdder();
+
+  private StubProxy() throws IOException {
+    socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    executor.execute(this::accept);
+  }
+
+  public static StubProxy start() {
+    try {
+      return new StubProxy();
+    } catch (IOException e) {
+      throw new UncheckedIOException("failed to start stub proxy", e);
+    }
+  }
+
+  public int port() {
+    return socket.getLocalPort();
+  }
+
+  /** number of tunnels established so far */
+  public long tunnels() {
+    return tunnels.sum();
+  }
+
+  @Override
+  public void close() {
+    try {
+      socket.close();
+    } catch (IOException e) {
+      // closing anyway
+    }
+    executor.shutdownNow();
+  }
+
+  private void accept() {
+    while (!socket.isClosed()) {
+      try {
+        var client = socket.accept();
+        executor.execute(() -> tunnel(client));
+      } catch (IOException e) {
+        // closed
+      }
+    }
+  }
+
+  private void tunnel(Socket client) {
+    try (client) {
+      var in = client.getInputStream();
+      var out = client.getOutputStream();
+
+      var request = readHead(in).split("\r\n", 2)[0].split(" ");
+      if (request.length != 3 || !"CONNECT".equals(request[0])) {
+        out.write("HTTP/1.1 405 Method Not Allowed\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+        return;
+      }
+      var target = request[1];
+      var colon = target.lastIndexOf(':');
+
+      try (var upstream =
+          new Socket(target.substring(0, colon), Integer.parseInt(target.substring(colon + 1)))) {
+        out.write(
+            "HTTP/1.1 200 Connection established\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+        tunnels.increment();
+
+        var upstreamIn = upstream.getInputStream();
+        var upstreamOut = upstream.getOutputStream();
+        var toClient = executor.submit(() -> pipe(upstreamIn, out, client));
+        pipe(in, upstreamOut, upstream);
+        toClient.get();
+      }
+    } catch (Exception e) {
+      // tunnel torn down, nothing to do
+    }
+  }
+
+  private static Void pipe(InputStream from, OutputStream to, Socket target) {
+    try {
+      from.transferTo(to);
+      target.shutdownOutput();
+    } catch (IOException e) {
+      // either side went away
+    }
+    return null;
+  }
+
+  private static String readHead(InputStream in) throws IOException {
+    var head = new ByteArrayOutputStream();
+    int matched = 0;
+    while (matched < 4) {
+      var b = in.read();
+      if (b < 0) {
+        throw new IOException("connection closed before end of request head");
+      }
+      head.write(b);
+      matched = (b == (matched % 2 == 0 ? '\r' : '\n')) ? matched + 1 : (b == '\r' ? 1 : 0);
+    }
+    return head.toString(StandardCharsets.US_ASCII);
+  }
+}